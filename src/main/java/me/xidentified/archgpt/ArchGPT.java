@@ -7,14 +7,14 @@ import de.cubbossa.tinytranslations.persistent.YamlMessageStorage;
 import de.cubbossa.tinytranslations.persistent.YamlStyleStorage;
 import lombok.Getter;
 import me.xidentified.archgpt.context.ContextManager;
+import me.xidentified.archgpt.context.PoiRegistry;
 import me.xidentified.archgpt.commands.AdminReportCommandExecutor;
 import me.xidentified.archgpt.commands.ArchGPTCommand;
 import me.xidentified.archgpt.commands.ReportTypeCommandExecutor;
 import me.xidentified.archgpt.listeners.NPCEventListener;
 import me.xidentified.archgpt.reports.*;
+import me.xidentified.archgpt.storage.StorageManager;
 import me.xidentified.archgpt.storage.dao.ConversationDAO;
-import me.xidentified.archgpt.storage.dao.MySQLConversationDAO;
-import me.xidentified.archgpt.storage.dao.SQLiteConversationDAO;
 import me.xidentified.archgpt.utils.*;
 import net.citizensnpcs.api.npc.NPC;
 import net.kyori.adventure.identity.Identity;
@@ -28,40 +28,36 @@ import org.bukkit.event.HandlerList;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
-import java.net.http.HttpClient;
-import java.time.Duration;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.*;
 import java.util.concurrent.*;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.util.logging.Level;
 
 @Getter
 public class ArchGPT extends JavaPlugin {
     // Maps
-    private final Cache<UUID, List<String>> npcChatStatesCache = CacheBuilder.newBuilder()
-            .expireAfterWrite(ArchGPTConstants.CACHE_EXPIRATION_MINUTES, TimeUnit.MINUTES)
-            .build();
-    private final Map<UUID, Boolean> activeConversations = new ConcurrentHashMap<>();
     private final Map<UUID, Long> playerCooldowns = new ConcurrentHashMap<>();
-    public final ConcurrentHashMap<UUID, Semaphore> playerSemaphores = new ConcurrentHashMap<>();
+    public final ConcurrentHashMap<UUID, CompletableFuture<?>> playerRequestChains = new ConcurrentHashMap<>();
     private final Map<UUID, AtomicInteger> conversationTokenCounters = new ConcurrentHashMap<>();
 
-    private final HttpClient httpClient = HttpClient.newBuilder()
-            .version(HttpClient.Version.HTTP_2)
-            .connectTimeout(Duration.ofSeconds(10))
-            .build();
+    // Network
+    private ExecutorService asyncExecutor;
+    private ExecutorService httpExecutor;
+    private HttpTransport httpTransport;
 
     // Managers
     private ArchGPTConfig configHandler;
     private ContextManager contextManager;
+    private PoiRegistry poiRegistry;
     private HologramManager hologramManager;
     private ReportManager reportManager;
     private TranslationService translationService;
     private NPCConversationManager conversationManager;
     private NPCEventListener npcEventListener;
+    private NPCSpatialIndex npcSpatialIndex;
+    private StorageManager storageManager;
     private ConversationDAO conversationDAO;
     private BukkitAudiences audiences;
     Translator translations;
@@ -77,8 +73,26 @@ public class ArchGPT extends JavaPlugin {
             }
 
             this.configHandler = new ArchGPTConfig(this);
+
+            // Plugin-owned worker pool for MCP traffic, so in-flight requests never tie up the common pool
+            this.asyncExecutor = Executors.newFixedThreadPool(configHandler.getMcpExecutorThreads(),
+                    new ThreadFactoryBuilder().setNameFormat("ArchGPT-Worker-%d").setDaemon(true).build());
+            // One HTTP client for the MCP server, translations and provider checks, so connections are reused
+            this.httpExecutor = configHandler.getHttpExecutorThreads() > 0
+                    ? Executors.newFixedThreadPool(configHandler.getHttpExecutorThreads(),
+                            new ThreadFactoryBuilder().setNameFormat("ArchGPT-Http-%d").setDaemon(true).build())
+                    : asyncExecutor;
+            this.httpTransport = new HttpTransport(httpExecutor, configHandler.getHttpConnectTimeoutMillis(),
+                    configHandler.getHttpRequestTimeoutMillis());
+
             this.contextManager = new ContextManager(this);
+            this.poiRegistry = new PoiRegistry(this);
+            poiRegistry.reload();
             this.hologramManager = new HologramManager(this);
+
+            // Open storage once, all DAOs share its connections
+            this.storageManager = new StorageManager(this);
+            this.conversationDAO = storageManager.getConversationDAO();
             this.reportManager = new ReportManager(this);
             this.audiences = BukkitAudiences.create(this);
             
@@ -114,10 +128,15 @@ public class ArchGPT extends JavaPlugin {
 
             // Initialize TranslationService for API responses
             String libreTranslateAPIEndpoint = getConfig().getString("translation.libre_endpoint");
-            this.translationService = new TranslationService(libreTranslateAPIEndpoint, this.getLogger());
+            this.translationService = new TranslationService(libreTranslateAPIEndpoint, this.getLogger(), configHandler,
+                    httpTransport, new File(getDataFolder(), "translation-cache.json"));
 
             // Register the event listeners
             this.conversationManager = new NPCConversationManager(this, configHandler);
+            storageManager.startRetention(conversationManager.getMemoryContext()::summarizeConversations);
+            conversationManager.getMemoryContext().getDigests().start();
+            this.npcSpatialIndex = new NPCSpatialIndex(this);
+            npcSpatialIndex.start();
             this.npcEventListener = new NPCEventListener(this, conversationManager, configHandler);
             getServer().getPluginManager().registerEvents(npcEventListener, this);
             getServer().getPluginManager().registerEvents(new ReportGUI(this), this);
@@ -130,23 +149,6 @@ public class ArchGPT extends JavaPlugin {
             Objects.requireNonNull(getCommand("archgpt")).setExecutor(new ArchGPTCommand(this));
             Objects.requireNonNull(getCommand("archgpt")).setTabCompleter(new ArchGPTCommand(this));
 
-            // Set storage type
-            String storageType = getConfig().getString("storage.type", "sqlite");
-            switch (storageType.toLowerCase()) {
-                case "sqlite":
-                    File sqliteFile = new File(getDataFolder(), "storage/conversations.db");
-                    conversationDAO = new SQLiteConversationDAO(sqliteFile);
-                    break;
-                case "mysql":
-                    String host = getConfig().getString("storage.mysql.host");
-                    int port = getConfig().getInt("storage.mysql.port");
-                    String database = getConfig().getString("storage.mysql.database");
-                    String username = getConfig().getString("storage.mysql.username");
-                    String password = getConfig().getString("storage.mysql.password");
-                    conversationDAO = new MySQLConversationDAO(host, port, database, username, password);
-                    break;
-            }
-
             // Set the logger level based on debugMode
             Level loggerLevel = configHandler.isDebugMode() ? Level.INFO : Level.WARNING;
             getLogger().setLevel(loggerLevel);
@@ -192,9 +194,20 @@ public class ArchGPT extends JavaPlugin {
 
     @Override
     public void onDisable() {
-        // Close database connection
-        if (this.reportManager != null) {
-            this.reportManager.closeResources();
+        if (translationService != null) {
+            translationService.close();
+            translationService.saveCache();
+        }
+
+        // Save memory digests while the database is still open, and before the worker pool stops so the lines
+        // still being added make it in
+        if (conversationManager != null) {
+            conversationManager.getMemoryContext().getDigests().close();
+        }
+
+        // Close database connections
+        if (storageManager != null) {
+            storageManager.close();
         }
 
         // Remove all holograms
@@ -214,7 +227,17 @@ public class ArchGPT extends JavaPlugin {
         // Unregister events
         HandlerList.unregisterAll();
 
-        playerSemaphores.clear();
+        if (httpExecutor != null && httpExecutor != asyncExecutor) {
+            httpExecutor.shutdownNow();
+        }
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdownNow();
+        }
+
+        playerRequestChains.clear();
+        if (conversationManager != null) {
+            conversationManager.endAllConversations();
+        }
         contextManager.clearAllContexts();
         conversationTokenCounters.clear();
         playerCooldowns.clear();
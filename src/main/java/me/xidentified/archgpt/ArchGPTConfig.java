@@ -34,6 +34,46 @@ public class ArchGPTConfig {
     private String mcpProvider;
     private String mcpModel;
     private int mcpMaxTokens;
+    private int mcpExecutorThreads;
+    private int httpExecutorThreads;
+    private long httpConnectTimeoutMillis;
+    private long httpRequestTimeoutMillis;
+    private boolean mcpStreaming;
+    private long mcpRequestTimeoutMillis;
+    private int mcpMaxRetries;
+    private long mcpRetryBaseDelayMillis;
+    private double mcpBreakerFailureRate;
+    private int mcpBreakerMinimumCalls;
+    private int mcpBreakerWindowSize;
+    private long mcpBreakerOpenMillis;
+    private String mcpFallbackReply;
+    private int mcpMaxConcurrentRequests;
+    private double mcpRequestsPerSecond;
+    private double mcpRequestBurst;
+    private int mcpMaxQueueSize;
+    private long mcpGreetingMaxWaitMillis;
+    private int memoryRecallTopK;
+    private int memoryIndexMaxPairs;
+    private boolean semanticMemoryEnabled;
+    private int semanticMemoryDimensions;
+    private int semanticMemoryMaxLines;
+    private int semanticMemoryTopK;
+    private double semanticMemoryMinSimilarity;
+    private long semanticMemoryBudgetMicros;
+    private long digestFlushIntervalSeconds;
+    private int historyTokenBudget;
+    private boolean historySummarizeDropped;
+    private boolean greetingCacheEnabled;
+    private int greetingCacheMaxEntries;
+    private long greetingCacheTtlMillis;
+    private boolean translationCacheEnabled;
+    private int translationCacheMaxEntries;
+    private long translationCacheTtlMillis;
+    private boolean translationCachePersist;
+    private int translationCachePersistMaxEntries;
+    private boolean translationByProvider;
+    private long translationBatchWindowMillis;
+    private int translationBatchMaxSize;
 
     public ArchGPTConfig(JavaPlugin plugin) {
         this.plugin = plugin;
@@ -61,6 +101,56 @@ public class ArchGPTConfig {
         mcpProvider = config.getString("mcp.provider", "openai");
         mcpModel = config.getString("mcp.model", "gpt-3.5-turbo");
         mcpMaxTokens = config.getInt("mcp.max_tokens", 200);
+        mcpExecutorThreads = Math.max(1, config.getInt("mcp.executor_threads", 4));
+        mcpStreaming = config.getBoolean("mcp.streaming", false);
+        mcpRequestTimeoutMillis = Math.max(1000, config.getLong("mcp.request_timeout", 30000));
+        mcpMaxRetries = Math.max(0, config.getInt("mcp.retry.max_retries", 2));
+        mcpRetryBaseDelayMillis = Math.max(1, config.getLong("mcp.retry.base_delay", 500));
+        mcpBreakerFailureRate = config.getDouble("mcp.circuit_breaker.failure_rate", 0.5);
+        mcpBreakerMinimumCalls = config.getInt("mcp.circuit_breaker.minimum_requests", 10);
+        mcpBreakerWindowSize = config.getInt("mcp.circuit_breaker.window_size", 20);
+        mcpBreakerOpenMillis = config.getLong("mcp.circuit_breaker.open_duration", 30000);
+        mcpFallbackReply = config.getString("mcp.fallback_reply", "Hmm, my thoughts are wandering. Ask me again in a moment, would you?");
+        mcpMaxConcurrentRequests = config.getInt("mcp.scheduler.max_concurrent_requests", 16);
+        mcpRequestsPerSecond = config.getDouble("mcp.scheduler.requests_per_second", 10);
+        mcpRequestBurst = config.getDouble("mcp.scheduler.burst", 20);
+        mcpMaxQueueSize = config.getInt("mcp.scheduler.max_queue_size", 100);
+        mcpGreetingMaxWaitMillis = config.getLong("mcp.scheduler.greeting_max_wait", 5000);
+
+        // Recall of past conversations
+        memoryRecallTopK = Math.max(1, config.getInt("memory.recall_top_k", 3));
+        memoryIndexMaxPairs = Math.max(1, config.getInt("memory.index_max_pairs", 1000));
+        semanticMemoryEnabled = config.getBoolean("memory.semantic.enabled", true);
+        semanticMemoryDimensions = Math.max(16, config.getInt("memory.semantic.dimensions", 256));
+        semanticMemoryMaxLines = Math.max(1, config.getInt("memory.semantic.max_lines", 1000));
+        semanticMemoryTopK = Math.max(1, config.getInt("memory.semantic.top_k", 2));
+        semanticMemoryMinSimilarity = config.getDouble("memory.semantic.min_similarity", 0.35);
+        semanticMemoryBudgetMicros = Math.max(1, config.getLong("memory.semantic.budget", 500));
+        digestFlushIntervalSeconds = Math.max(1, config.getLong("memory.digest.flush_interval", 30));
+
+        // Conversation history sent with every request
+        historyTokenBudget = Math.max(100, config.getInt("conversation_history.token_budget", 1500));
+        historySummarizeDropped = config.getBoolean("conversation_history.summarize_dropped", true);
+
+        // Shared HTTP client
+        httpExecutorThreads = Math.max(0, config.getInt("http.executor_threads", 2));
+        httpConnectTimeoutMillis = Math.max(100, config.getLong("http.connect_timeout", 10000));
+        httpRequestTimeoutMillis = Math.max(1000, config.getLong("http.request_timeout", 15000));
+
+        // Greeting cache
+        greetingCacheEnabled = config.getBoolean("greeting_cache.enabled", true);
+        greetingCacheMaxEntries = config.getInt("greeting_cache.max_entries", 500);
+        greetingCacheTtlMillis = config.getLong("greeting_cache.ttl", 600000);
+
+        // Translation cache
+        translationCacheEnabled = config.getBoolean("translation.cache.enabled", true);
+        translationCacheMaxEntries = config.getInt("translation.cache.max_entries", 2000);
+        translationCacheTtlMillis = config.getLong("translation.cache.ttl", 86400000);
+        translationCachePersist = config.getBoolean("translation.cache.persist", true);
+        translationCachePersistMaxEntries = config.getInt("translation.cache.persist_max_entries", 500);
+        translationByProvider = config.getString("translation.mode", "translate").equalsIgnoreCase("provider");
+        translationBatchWindowMillis = Math.max(0, config.getLong("translation.batch.window", 50));
+        translationBatchMaxSize = Math.max(1, config.getInt("translation.batch.max_size", 16));
 
         // Set the logger level based on debugMode
         Level loggerLevel = debugMode ? Level.INFO : Level.WARNING;
@@ -103,6 +193,13 @@ public class ArchGPTConfig {
         return combinedPrompt;
     }
 
+    // Number of greeting variants kept per situation, an NPC can override the default
+    public int getGreetingVariants(String npcName) {
+        FileConfiguration config = plugin.getConfig();
+        int defaultVariants = config.getInt("greeting_cache.variants", 3);
+        return Math.max(1, config.getInt("greeting_cache.npc_variants." + npcName, defaultVariants));
+    }
+
     // Get in game time from config string
     private Duration parseMinecraftDuration(String durationString) {
         Pattern pattern = Pattern.compile("(?:(\\d+)w)?\\s*(?:(\\d+)d)?\\s*(?:(\\d+)h)?\\s*(?:(\\d+)m)?");
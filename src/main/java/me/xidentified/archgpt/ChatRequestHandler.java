@@ -1,33 +1,57 @@
 package me.xidentified.archgpt;
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
+import lombok.Getter;
 import me.xidentified.archgpt.context.ContextManager;
-import me.xidentified.archgpt.utils.ArchGPTConstants;
+import me.xidentified.archgpt.context.ContextSnapshot;
+import me.xidentified.archgpt.utils.CircuitBreaker;
 import me.xidentified.archgpt.utils.LocaleUtils;
+import me.xidentified.archgpt.utils.McpStreamSubscriber;
+import me.xidentified.archgpt.utils.RequestScheduler;
+import me.xidentified.archgpt.utils.TranslationService;
 import net.citizensnpcs.api.npc.NPC;
-import org.apache.commons.lang3.tuple.Pair;
 import org.bukkit.entity.Player;
 
+import java.net.ConnectException;
 import java.net.URI;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class ChatRequestHandler {
+    private static final long MAX_RETRY_DELAY_MILLIS = 10000;
+    private static final String TROUBLE_REPLY = "I'm having trouble processing that right now.";
+
     private final ArchGPT plugin;
     private final ContextManager contextManager;
+    @Getter private final CircuitBreaker circuitBreaker;
+    @Getter private final RequestScheduler requestScheduler;
 
     public ChatRequestHandler(ArchGPT plugin) {
         this.plugin = plugin;
-        this.contextManager = new ContextManager(plugin);
+        // Shared with the conversation manager, so elements such as recalled memories reach the request context
+        this.contextManager = plugin.getContextManager();
+        ArchGPTConfig config = plugin.getConfigHandler();
+        this.circuitBreaker = new CircuitBreaker("MCP server", plugin.getLogger(),
+                config.getMcpBreakerFailureRate(), config.getMcpBreakerMinimumCalls(),
+                config.getMcpBreakerWindowSize(), config.getMcpBreakerOpenMillis());
+        this.requestScheduler = new RequestScheduler(plugin.getAsyncExecutor(),
+                config.getMcpMaxConcurrentRequests(), config.getMcpRequestsPerSecond(), config.getMcpRequestBurst(),
+                config.getMcpMaxQueueSize(), config.getMcpGreetingMaxWaitMillis());
     }
 
     public enum RequestType {
@@ -35,117 +59,366 @@ public class ChatRequestHandler {
         CONVERSATION
     }
 
-    public CompletableFuture<Object> processMCPRequest(Player player, NPC npc, String message, 
-                                                    RequestType requestType, List<JsonObject> conversationState) {
-        UUID playerUUID = player.getUniqueId();
-        
-        // Use a CompletableFuture to handle the async operation
-        CompletableFuture<JsonObject> contextFuture = new CompletableFuture<>();
-        
-        // Schedule context gathering on the main thread
-        plugin.getServer().getScheduler().runTask(plugin, () -> {
-            try {
-                JsonObject context = contextManager.getOrganizedContext(player, npc, requestType);
-                contextFuture.complete(context);
-            } catch (Exception e) {
-                contextFuture.completeExceptionally(e);
+    /**
+     * The NPC's answer to a conversation message, with the history it was added to. Canned replies stand in for an
+     * answer the MCP server couldn't give, they are shown to the player but kept out of the history and memories.
+     */
+    public record ConversationReply(String text, ConversationHistory history, boolean canned) {}
+
+    // Text from the MCP server, or a canned stand-in, decided before any translation changes the wording
+    private record McpReply(String text, boolean canned) {
+        private McpReply withText(String newText) {
+            return new McpReply(newText, canned);
+        }
+    }
+
+    /**
+     * Receives NPC text while the MCP server is still generating it. Callbacks run on a worker thread.
+     */
+    public interface StreamListener {
+        void onPartialText(String textSoFar);
+        void onSentence(String sentence);
+    }
+
+    /**
+     * Holds sentences back until there is enough text to tell the reply's language. A reply in the player's language
+     * is then streamed as usual, one that came back in English isn't streamed at all and is translated whole once it
+     * is complete. Callbacks come from one subscriber at a time.
+     */
+    private static final class LanguageCheckedListener implements StreamListener {
+        private final StreamListener delegate;
+        private final List<String> heldSentences = new ArrayList<>();
+        private volatile Boolean english; // Null until there was enough text to decide
+
+        private LanguageCheckedListener(StreamListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onPartialText(String textSoFar) {
+            if (english == Boolean.FALSE) {
+                delegate.onPartialText(textSoFar);
             }
-        });
+        }
 
-        return contextFuture.thenCompose(context -> {
-            plugin.playerSemaphores.putIfAbsent(playerUUID, new Semaphore(1));
-
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    // Acquire the semaphore for this specific player
-                    Semaphore semaphore = plugin.playerSemaphores.get(playerUUID);
-                    semaphore.acquire();
-                    
-                    // Build MCP request using the context gathered on the main thread
-                    JsonObject mcpRequest = buildMCPRequest(context, message, conversationState, requestType);
-                    plugin.debugLog("MCP Request: " + mcpRequest.toString());
-
-                    // Log the request for debugging
-                    plugin.debugLog("Sending request to MCP server with provider: " + 
-                    plugin.getConfigHandler().getMcpProvider() + ", model: " + plugin.getConfigHandler().getMcpModel());
-
-                    // Send to MCP server
-                    HttpRequest request = buildMCPHttpRequest(mcpRequest.toString());
-                    HttpResponse<String> response = plugin.getHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
-                    
-                    int statusCode = response.statusCode();
-                    plugin.debugLog("Received response from MCP server, Status Code: " + statusCode);
-
-                    if (statusCode == 200) {
-                        String jsonResponse = response.body();
-                        JsonObject responseObject = JsonParser.parseString(jsonResponse).getAsJsonObject();
-                        return extractAssistantResponseText(responseObject);
-                    } else {
-                        plugin.getLogger().severe("MCP Server Error: Status Code " + statusCode + " - " + response.body());
-                        throw new RuntimeException("MCP Server Error: Status Code " + statusCode);
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Thread was interrupted: " + e.getMessage());
-                } catch (IOException | RuntimeException e) {
-                    plugin.getLogger().severe("MCP Request Failed: " + e.getMessage());
-                    throw new RuntimeException("MCP Request Failed: " + e.getMessage());
-                } finally {
-                    // Ensure the semaphore is released for this player
-                    Semaphore semaphore = plugin.playerSemaphores.get(playerUUID);
-                    if (semaphore != null) {
-                        semaphore.release();
-                    }
-                }
-            }).thenCompose(assistantResponseText -> {
-                // Check if translation is needed
-                String playerLocale = LocaleUtils.getPlayerLocale(player);
-                plugin.debugLog("Player locale read as: " + playerLocale);
-                if (!playerLocale.substring(0, 2).equalsIgnoreCase("en")) {
-                    String targetLang = playerLocale.substring(0, 2);
-                    return plugin.getTranslationService().translateText(assistantResponseText, targetLang)
-                            .thenApply(translatedText -> translatedText != null ? translatedText : assistantResponseText);
+        @Override
+        public void onSentence(String sentence) {
+            if (english == null) {
+                heldSentences.add(sentence);
+                String heldText = String.join(" ", heldSentences);
+                if (!TranslationService.canJudgeLanguage(heldText)) return;
+                english = TranslationService.looksEnglish(heldText);
+                if (!english) {
+                    delegate.onPartialText(heldText);
+                    heldSentences.forEach(delegate::onSentence);
                 }
-                plugin.debugLog("Final Processed Response: " + assistantResponseText);
-                return CompletableFuture.completedFuture(assistantResponseText);
+                heldSentences.clear();
+            } else if (!english) {
+                delegate.onSentence(sentence);
+            }
+        }
 
-            }).exceptionally(ex -> {
-                // Handle exceptions - log the error and end the conversation
-                plugin.getLogger().severe("Error processing MCP request: " + ex.getMessage());
-                plugin.getConversationManager().endConversation(playerUUID);
+        // False if nothing reached the player, because the reply was English or too short to judge
+        private boolean streamedToPlayer() {
+            return english == Boolean.FALSE;
+        }
+    }
+
+    // Streaming is only used when no translation hop is needed, since translation needs the full text
+    public boolean canStream(Player player) {
+        ArchGPTConfig config = plugin.getConfigHandler();
+        return config.isMcpStreaming()
+                && (config.isTranslationByProvider() || !needsTranslation(LocaleUtils.getPlayerLocale(player)));
+    }
+
+    // Builds the player's context ahead of their first message, into the cache that message reads
+    public CompletableFuture<JsonObject> prefetchContext(Player player, NPC npc, ContextSnapshot snapshot) {
+        return contextManager.getOrganizedContext(player, npc, RequestType.CONVERSATION, snapshot, plugin.getAsyncExecutor());
+    }
+
+    public CompletableFuture<Object> processMCPRequest(Player player, NPC npc, String message, 
+                                                    RequestType requestType, ConversationHistory history) {
+        return processMCPRequest(player, npc, message, requestType, history, null);
+    }
+
+    public CompletableFuture<Object> processMCPRequest(Player player, NPC npc, String message, RequestType requestType,
+                                                    ConversationHistory history, StreamListener streamListener) {
+        UUID playerUUID = player.getUniqueId();
+        long start = System.currentTimeMillis();
+
+        // Players who don't play in English either get the reply translated, or the MCP server writes it in their language
+        String targetLang = targetLanguage(player);
+        boolean providerTranslates = targetLang != null && plugin.getConfigHandler().isTranslationByProvider();
+
+        // The model may still answer in English, which is only noticed once its first words arrive
+        LanguageCheckedListener languageCheck = providerTranslates && streamListener != null
+                ? new LanguageCheckedListener(streamListener) : null;
+        StreamListener listener = languageCheck != null ? languageCheck : streamListener;
+
+        // Only the world snapshot is taken on the main thread, the context text is built on a worker
+        CompletableFuture<JsonObject> contextFuture = contextManager.getOrganizedContext(player, npc, requestType, plugin.getAsyncExecutor());
+
+        return contextFuture.thenComposeAsync(context ->
+                // Requests for the same player are chained so they still run one at a time, without parking a thread
+                runInPlayerOrder(playerUUID, () -> sendMCPRequest(context, message, history, requestType,
+                        providerTranslates ? targetLang : null, listener))
+                        .thenCompose(reply -> {
+                            // Streamed replies already went out as they were written
+                            if (streamListener != null && (languageCheck == null || languageCheck.streamedToPlayer())) {
+                                plugin.debugLog("Final Processed Response: " + reply.text());
+                                return CompletableFuture.completedFuture(reply);
+                            }
+                            return localize(reply.text(), targetLang, providerTranslates).thenApply(reply::withText);
+                        }).thenApply(reply -> {
+                            if (targetLang != null) {
+                                plugin.getTranslationService().recordTurn(providerTranslates, System.currentTimeMillis() - start);
+                            }
+                            return reply;
+                        }).exceptionally(ex -> {
+                            // Log the error, the caller ends the conversation the request belonged to
+                            if (requestType == RequestType.CONVERSATION) {
+                                plugin.getLogger().severe("Error processing MCP request: " + ex.getMessage());
+                            }
+                            return null;
+                        }),
+                plugin.getAsyncExecutor()
+        ).thenApply(reply -> {
+            if (reply == null) {
                 return null;
-            });
-        }).thenApply(assistantResponseText -> {
+            }
+
             // Process the response and prepare final result
-            String response = assistantResponseText.trim();
+            String response = reply.text().trim();
 
             if (requestType == RequestType.GREETING) {
-                return response;
+                // A missed greeting isn't worth a canned reply
+                return reply.canned() ? null : response;
             } else {
-                // Additional processing for non-greeting requests
-                String sanitizedPlayerMessage = message;
-
-                if (conversationState.size() > ArchGPTConstants.MAX_CONVERSATION_STATE_SIZE * 2) {
-                    conversationState.subList(0, 2).clear();
+                // Older exchanges are dropped or summarized once the history goes over its token budget.
+                // Canned replies aren't part of the conversation and would only be replayed to the model
+                if (!reply.canned()) {
+                    history.addExchange(message, response);
                 }
+                plugin.debugLog("Conversation history: " + history.getMessageCount() + " messages, ~"
+                        + history.getTokenCount() + " tokens");
+                return new ConversationReply(response, history, reply.canned());
+            }
+        });
+    }
+
+    /**
+     * Generates a greeting that is cached and reused for other players. It is built from the surroundings alone and
+     * left untranslated, the caller fills in the player's name and then {@link #localize(Player, String) localizes}
+     * it. Completes with null when the MCP server had nothing usable to say.
+     */
+    public CompletableFuture<String> requestGreetingTemplate(Player player, NPC npc, String message) {
+        String targetLang = targetLanguage(player);
+        String responseLanguage = targetLang != null && plugin.getConfigHandler().isTranslationByProvider() ? targetLang : null;
+
+        return contextManager.getGreetingContext(player, npc, plugin.getAsyncExecutor())
+                .thenCompose(context -> runInPlayerOrder(player.getUniqueId(),
+                        () -> sendMCPRequest(context, message, null, RequestType.GREETING, responseLanguage, null)))
+                // A stand-in for a reply the server couldn't give shouldn't be handed to other players
+                .thenApply(reply -> reply.canned() ? null : reply.text().trim())
+                .exceptionally(ex -> null);
+    }
+
+    // Translates a finished reply into the player's language, unless it is already written in it
+    public CompletableFuture<String> localize(Player player, String text) {
+        String targetLang = targetLanguage(player);
+        return localize(text, targetLang, targetLang != null && plugin.getConfigHandler().isTranslationByProvider());
+    }
+
+    private CompletableFuture<String> localize(String text, String targetLang, boolean providerTranslates) {
+        if (targetLang == null || (providerTranslates && !TranslationService.looksEnglish(text))) {
+            plugin.debugLog("Final Processed Response: " + text);
+            return CompletableFuture.completedFuture(text);
+        }
+        TranslationService translationService = plugin.getTranslationService();
+        if (providerTranslates) {
+            // The model ignored the requested language, or this is the English fallback reply
+            plugin.debugLog("Reply came back in English, translating it to " + targetLang);
+            translationService.recordProviderFallback();
+        }
+        return translationService.translateText(text, targetLang)
+                .thenApply(translatedText -> translatedText != null ? translatedText : text);
+    }
+
+    // ISO 639-1 code of the player's language, or null when they play in English
+    private String targetLanguage(Player player) {
+        String playerLocale = LocaleUtils.getPlayerLocale(player);
+        plugin.debugLog("Player locale read as: " + playerLocale);
+        return needsTranslation(playerLocale) ? playerLocale.substring(0, 2) : null;
+    }
+
+    /**
+     * Sends the request to the MCP server without blocking. The response is handled on the
+     * plugin's worker executor once it arrives, so waiting on the network costs no threads.
+     * With a stream listener, text is handed out as it arrives and the future completes with the full text.
+     */
+    private CompletableFuture<McpReply> sendMCPRequest(JsonObject context, String message, ConversationHistory history,
+                                                       RequestType requestType, String responseLanguage, StreamListener streamListener) {
+        boolean stream = streamListener != null;
+
+        // Build MCP request using the context built from the world snapshot
+        JsonObject mcpRequest = buildMCPRequest(context, message, history, requestType, responseLanguage, stream);
+        plugin.debugLog("MCP Request: " + mcpRequest);
 
-                JsonObject userMessageJson = new JsonObject();
-                userMessageJson.addProperty("role", "user");
-                userMessageJson.addProperty("content", sanitizedPlayerMessage);
-                conversationState.add(userMessageJson);
+        // Log the request for debugging
+        plugin.debugLog("Sending request to MCP server with provider: " +
+                plugin.getConfigHandler().getMcpProvider() + ", model: " + plugin.getConfigHandler().getMcpModel());
+
+        // Send to MCP server once admitted, falling back to an in-character reply if it stays unavailable
+        return requestScheduler.submit(requestType, () -> sendWithRetries(mcpRequest.toString(), streamListener, 1))
+                .exceptionally(ex -> {
+                    Throwable cause = unwrap(ex);
+                    if (cause instanceof RejectedExecutionException) {
+                        plugin.debugLog("MCP request not sent: " + cause.getMessage());
+                    } else {
+                        plugin.getLogger().severe("MCP Request Failed: " + cause.getMessage());
+                    }
+                    if (requestType == RequestType.GREETING) {
+                        // A missed greeting isn't worth a canned reply
+                        throw ex instanceof CompletionException completionException ? completionException : new CompletionException(cause);
+                    }
+                    // Not streamed, the caller sends it only if none of the failed reply reached the player
+                    return new McpReply(plugin.getConfigHandler().getMcpFallbackReply(), true);
+                });
+    }
 
-                JsonObject assistantMessageJson = new JsonObject();
-                assistantMessageJson.addProperty("role", "assistant");
-                assistantMessageJson.addProperty("content", response);
-                conversationState.add(assistantMessageJson);
+    /**
+     * Sends one attempt with its own deadline. 429/5xx responses and failed connections are retried with
+     * jittered exponential backoff, and every outcome feeds the circuit breaker.
+     */
+    private CompletableFuture<McpReply> sendWithRetries(String requestBody, StreamListener streamListener, int attempt) {
+        ArchGPTConfig config = plugin.getConfigHandler();
+        if (!circuitBreaker.tryAcquirePermission()) {
+            plugin.debugLog("MCP circuit breaker is open, skipping request");
+            return CompletableFuture.failedFuture(new IllegalStateException("MCP server unavailable (circuit breaker open)"));
+        }
 
-                return Pair.of(response, conversationState);
+        boolean stream = streamListener != null;
+        CompletableFuture<HttpResponse<String>> responseFuture;
+        try {
+            HttpRequest request = buildMCPHttpRequest(requestBody, stream);
+            HttpResponse.BodyHandler<String> bodyHandler = HttpResponse.BodyHandlers.ofString();
+            if (stream) {
+                McpStreamSubscriber subscriber = new McpStreamSubscriber(streamListener::onPartialText, streamListener::onSentence);
+                // Only successful responses are streamed, error bodies are read whole for logging
+                bodyHandler = responseInfo -> responseInfo.statusCode() == 200
+                        ? HttpResponse.BodySubscribers.fromLineSubscriber(subscriber, McpStreamSubscriber::getFullText, StandardCharsets.UTF_8, null)
+                        : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
             }
-        });
+            responseFuture = plugin.getHttpTransport().sendAsync("mcp", request, bodyHandler);
+        } catch (RuntimeException e) {
+            // A request that never went out, e.g. over a malformed server_url, still has to give back its permit,
+            // or a half-open breaker keeps waiting for its trial call
+            circuitBreaker.recordFailure();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return responseFuture
+                // The request timeout only covers the headers, this also bounds reading the body
+                .orTimeout(config.getMcpRequestTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .handle((response, ex) -> {
+                    if (ex == null && response.statusCode() == 200) {
+                        circuitBreaker.recordSuccess();
+                        plugin.debugLog("Received response from MCP server, Status Code: 200");
+                        return CompletableFuture.completedFuture(readResponse(response.body(), stream));
+                    }
+                    circuitBreaker.recordFailure();
+
+                    long retryDelay = ex == null ? retryDelayFor(response, attempt) : retryDelayFor(unwrap(ex), attempt);
+                    if (retryDelay >= 0 && attempt <= config.getMcpMaxRetries()) {
+                        plugin.debugLog("MCP request attempt " + attempt + " failed, retrying in " + retryDelay + "ms");
+                        Executor delayed = CompletableFuture.delayedExecutor(retryDelay, TimeUnit.MILLISECONDS, plugin.getAsyncExecutor());
+                        return CompletableFuture.supplyAsync(() -> null, delayed)
+                                .thenCompose(ignored -> sendWithRetries(requestBody, streamListener, attempt + 1));
+                    }
+
+                    if (ex != null) {
+                        return CompletableFuture.<McpReply>failedFuture(unwrap(ex));
+                    }
+                    plugin.getLogger().severe("MCP Server Error: Status Code " + response.statusCode() + " - " + response.body());
+                    return CompletableFuture.<McpReply>failedFuture(new RuntimeException("MCP Server Error: Status Code " + response.statusCode()));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private McpReply readResponse(String body, boolean stream) {
+        if (stream) {
+            return body.isEmpty() ? new McpReply(TROUBLE_REPLY, true) : new McpReply(body, false);
+        }
+        JsonObject responseObject = JsonParser.parseString(body).getAsJsonObject();
+        String text = extractAssistantResponseText(responseObject);
+        return text != null ? new McpReply(text, false) : new McpReply(TROUBLE_REPLY, true);
+    }
+
+    // Returns the backoff before the next attempt, or -1 if the response shouldn't be retried
+    private long retryDelayFor(HttpResponse<String> response, int attempt) {
+        int statusCode = response.statusCode();
+        if (statusCode != 429 && statusCode < 500) {
+            return -1;
+        }
+        // Respect the server's Retry-After (in seconds) when it sends one
+        long retryAfterMillis = response.headers().firstValue("Retry-After")
+                .map(value -> {
+                    try {
+                        return Long.parseLong(value.trim()) * 1000;
+                    } catch (NumberFormatException e) {
+                        return -1L;
+                    }
+                }).orElse(-1L);
+        long backoff = backoffMillis(attempt);
+        return retryAfterMillis > 0 ? Math.min(Math.max(retryAfterMillis, backoff), MAX_RETRY_DELAY_MILLIS) : backoff;
+    }
+
+    private long retryDelayFor(Throwable cause, int attempt) {
+        // Connection failures are worth another try, timeouts already used up their deadline
+        return cause instanceof ConnectException ? backoffMillis(attempt) : -1;
+    }
+
+    private long backoffMillis(int attempt) {
+        long baseDelay = plugin.getConfigHandler().getMcpRetryBaseDelayMillis();
+        long maxDelay = Math.min(baseDelay << Math.min(attempt - 1, 10), MAX_RETRY_DELAY_MILLIS);
+        // Jitter between half and the full delay so retries from many players don't line up
+        return ThreadLocalRandom.current().nextLong(maxDelay / 2, maxDelay + 1);
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    /**
+     * Queues a request behind any request still in flight for the same player.
+     * Replaces the old per-player semaphore, which had to block a thread while waiting.
+     */
+    private <T> CompletableFuture<T> runInPlayerOrder(UUID playerUUID, Supplier<CompletableFuture<T>> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // Only the link is swapped in atomically, the request starts outside the map once the previous one settles
+        CompletableFuture<?> previous = plugin.playerRequestChains.put(playerUUID, result);
+        (previous == null ? CompletableFuture.completedFuture(null) : previous)
+                .handle((ignored, ex) -> null)
+                .thenCompose(ignored -> request.get())
+                .whenComplete((text, ex) -> {
+                    if (ex != null) {
+                        result.completeExceptionally(ex);
+                    } else {
+                        result.complete(text);
+                    }
+                });
+        // Drop the chain once it drains so idle players don't keep an entry around
+        result.whenComplete((ignored, ex) -> plugin.playerRequestChains.remove(playerUUID, result));
+        return result;
+    }
+
+    private boolean needsTranslation(String playerLocale) {
+        return !playerLocale.substring(0, 2).equalsIgnoreCase("en");
     }
 
     private JsonObject buildMCPRequest(JsonObject context, String message, 
-                                     List<JsonObject> conversationState, RequestType requestType) {
+                                     ConversationHistory history, RequestType requestType,
+                                     String responseLanguage, boolean stream) {
         JsonObject mcpRequest = new JsonObject();
         
         // Add context
@@ -154,13 +427,9 @@ public class ChatRequestHandler {
         // Add message
         mcpRequest.addProperty("message", message);
         
-        // Add conversation history if available
-        if (conversationState != null && !conversationState.isEmpty()) {
-            JsonArray history = new JsonArray();
-            for (JsonObject msg : conversationState) {
-                history.add(msg);
-            }
-            mcpRequest.add("conversation_history", history);
+        // Add conversation history if available, already trimmed to its token budget
+        if (history != null) {
+            mcpRequest.add("conversation_history", history.toJson());
         }
         
         // Add request type
@@ -170,20 +439,31 @@ public class ChatRequestHandler {
         mcpRequest.addProperty("provider", plugin.getConfigHandler().getMcpProvider());
         mcpRequest.addProperty("model", plugin.getConfigHandler().getMcpModel());
         mcpRequest.addProperty("max_tokens", plugin.getConfigHandler().getMcpMaxTokens());
+
+        // Ask for the reply in the player's language (ISO 639-1 code) so no translation hop is needed
+        if (responseLanguage != null) {
+            mcpRequest.addProperty("response_language", responseLanguage);
+        }
+
+        // Ask the MCP server to stream the completion back as it is generated
+        if (stream) {
+            mcpRequest.addProperty("stream", true);
+        }
         
         return mcpRequest;
     }
 
+    // The reply text, or null if the response has none
     private String extractAssistantResponseText(JsonObject responseObject) {
         if (responseObject.has("output")) {
             return responseObject.get("output").getAsString().trim();
         }
         plugin.getLogger().warning("Invalid response structure from MCP server");
         plugin.debugLog("MCP server response object: " + responseObject);
-        return "I'm having trouble processing that right now.";
+        return null;
     }
 
-    private HttpRequest buildMCPHttpRequest(String jsonRequestBody) {
+    private HttpRequest buildMCPHttpRequest(String jsonRequestBody, boolean stream) {
         // Use the config handler to get the MCP server URL
         String mcpServerUrl = plugin.getConfigHandler().getMcpServerUrl();
         URI uri = URI.create(mcpServerUrl);
@@ -191,6 +471,8 @@ public class ChatRequestHandler {
         return HttpRequest.newBuilder()
                 .uri(uri)
                 .header("Content-Type", "application/json")
+                .header("Accept", stream ? "text/event-stream" : "application/json")
+                .timeout(Duration.ofMillis(plugin.getConfigHandler().getMcpRequestTimeoutMillis()))
                 .POST(HttpRequest.BodyPublishers.ofString(jsonRequestBody, StandardCharsets.UTF_8))
                 .build();
     }
@@ -0,0 +1,125 @@
+package me.xidentified.archgpt;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The messages sent to the MCP server as conversation_history. Every message carries an estimated token count, and
+ * once the total goes over the budget the oldest exchanges are dropped, so a long conversation costs about as much
+ * per request as a short one. Dropped exchanges can be folded into a short summary that stays in the history.
+ * <p>
+ * The system prompt is never dropped. The serialized form is kept until the history changes.
+ */
+public class ConversationHistory {
+    // Roughly four characters per token for English text, plus the role and separators of every message
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int TOKENS_PER_MESSAGE = 4;
+    private static final String SUMMARY_PREFIX = "Earlier in this conversation: ";
+
+    private record Entry(JsonObject message, int tokens) {}
+
+    private final Entry systemMessage;
+    private final Deque<Entry> turns = new ArrayDeque<>();
+    private final int tokenBudget;
+    private final Function<List<String>, String> summarizer; // Null drops old exchanges without a trace
+    private Entry summary;
+    private int turnTokens;
+    private JsonArray serialized;
+
+    public ConversationHistory(JsonObject systemMessage, int tokenBudget, Function<List<String>, String> summarizer) {
+        this.systemMessage = entry(systemMessage);
+        this.tokenBudget = tokenBudget;
+        this.summarizer = summarizer;
+    }
+
+    // Records one exchange and drops the oldest ones that no longer fit
+    public void addExchange(String playerMessage, String npcReply) {
+        Entry playerEntry = entry(message("user", playerMessage));
+        Entry npcEntry = entry(message("assistant", npcReply));
+        turns.addLast(playerEntry);
+        turns.addLast(npcEntry);
+        turnTokens += playerEntry.tokens() + npcEntry.tokens();
+        trim();
+        serialized = null;
+    }
+
+    // The history as sent to the MCP server, only rebuilt after it changed
+    public JsonArray toJson() {
+        if (serialized == null) {
+            JsonArray array = new JsonArray();
+            array.add(systemMessage.message());
+            if (summary != null) {
+                array.add(summary.message());
+            }
+            turns.forEach(turn -> array.add(turn.message()));
+            serialized = array;
+        }
+        return serialized;
+    }
+
+    public int getMessageCount() {
+        return 1 + (summary != null ? 1 : 0) + turns.size();
+    }
+
+    public int getTokenCount() {
+        return systemMessage.tokens() + (summary != null ? summary.tokens() : 0) + turnTokens;
+    }
+
+    // The latest exchange is always kept, even if it alone is over the budget
+    private void trim() {
+        List<String> dropped = new ArrayList<>();
+        while (turns.size() > 2 && getTokenCount() > tokenBudget) {
+            for (int i = 0; i < 2; i++) {
+                Entry oldest = turns.removeFirst();
+                turnTokens -= oldest.tokens();
+                dropped.add(oldest.message().get("content").getAsString());
+            }
+        }
+        if (dropped.isEmpty() || summarizer == null) {
+            // Only the latest exchange is left and it needs the room the summary took
+            if (summary != null && getTokenCount() > tokenBudget) {
+                summary = null;
+            }
+            return;
+        }
+
+        // The previous summary is summarized again along with the dropped lines, so it never grows on its own
+        if (summary != null) {
+            dropped.add(0, summary.message().get("content").getAsString().substring(SUMMARY_PREFIX.length()));
+        }
+        String summaryText = summarizer.apply(dropped);
+        if (summaryText == null || summaryText.isBlank()) return;
+
+        // A summary may take at most a quarter of the budget, and only what the kept turns leave of it
+        summary = null;
+        int summaryTokens = Math.min(tokenBudget / 4, tokenBudget - getTokenCount());
+        int maxChars = (summaryTokens - TOKENS_PER_MESSAGE) * CHARS_PER_TOKEN - SUMMARY_PREFIX.length();
+        if (maxChars <= 0) return;
+        if (summaryText.length() > maxChars) {
+            summaryText = summaryText.substring(0, maxChars);
+        }
+        summary = entry(message("system", SUMMARY_PREFIX + summaryText));
+    }
+
+    private static JsonObject message(String role, String content) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", role);
+        message.addProperty("content", content);
+        return message;
+    }
+
+    private static Entry entry(JsonObject message) {
+        String content = message.has("content") ? message.get("content").getAsString() : "";
+        return new Entry(message, estimateTokens(content));
+    }
+
+    public static int estimateTokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN + TOKENS_PER_MESSAGE;
+    }
+}
@@ -0,0 +1,81 @@
+package me.xidentified.archgpt;
+
+import lombok.Getter;
+import net.kyori.adventure.text.Component;
+import net.citizensnpcs.api.npc.NPC;
+
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One player's conversation with an NPC. State changes are compare-and-set on this session only,
+ * so chat from different players never waits on a shared lock.
+ * <p>
+ * IDLE -> AWAITING_RESPONSE -> RESPONDING -> IDLE, and any state -> ENDED.
+ */
+public class ConversationSession {
+
+    public enum State { IDLE, AWAITING_RESPONSE, RESPONDING, ENDED }
+
+    @Getter private final UUID playerUUID;
+    @Getter private final NPC npc;
+    private final AtomicReference<State> state = new AtomicReference<>(State.IDLE);
+    // Only touched by the request in flight, which the state machine keeps to one at a time.
+    // Completes once the system message is built
+    @Getter private final CompletableFuture<ConversationHistory> history;
+    // Loading of the pair's memory, started when the conversation began
+    @Getter private final CompletableFuture<Void> memoryPrefetch;
+    // Messages sent while the NPC was answering, each one is sent once the one before it is answered
+    private final Queue<Component> queuedMessages = new ConcurrentLinkedQueue<>();
+
+    public ConversationSession(UUID playerUUID, NPC npc, CompletableFuture<ConversationHistory> history, CompletableFuture<Void> memoryPrefetch) {
+        this.playerUUID = playerUUID;
+        this.npc = npc;
+        this.history = history;
+        this.memoryPrefetch = memoryPrefetch;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public boolean isActive() {
+        return state.get() != State.ENDED;
+    }
+
+    // The player sent a message, only one request per conversation is in flight
+    public boolean beginRequest() {
+        return state.compareAndSet(State.IDLE, State.AWAITING_RESPONSE);
+    }
+
+    // The reply arrived and is being delivered
+    public boolean beginResponse() {
+        return state.compareAndSet(State.AWAITING_RESPONSE, State.RESPONDING);
+    }
+
+    public boolean finishResponse() {
+        return state.compareAndSet(State.RESPONDING, State.IDLE);
+    }
+
+    // No usable reply came back, the player may try again
+    public boolean failRequest() {
+        return state.compareAndSet(State.AWAITING_RESPONSE, State.IDLE);
+    }
+
+    public void queueMessage(Component message) {
+        queuedMessages.add(message);
+    }
+
+    // The next message waiting for its turn, or null
+    public Component pollQueuedMessage() {
+        return queuedMessages.poll();
+    }
+
+    // Returns true only for the caller that actually ended the conversation
+    public boolean end() {
+        return state.getAndSet(State.ENDED) != State.ENDED;
+    }
+}
@@ -20,13 +20,13 @@ import java.util.concurrent.CopyOnWriteArrayList;
 @Getter
 public class HologramManager {
 
+    private static final int LIVE_TEXT_LENGTH = 40;
+
     private final JavaPlugin plugin;
-    private ArmorStand armorStand;
-    private int animationState = 0;
-    private BukkitRunnable animationTask;
     private final List<ArmorStand> allHolograms = new CopyOnWriteArrayList<>();
     private final Map<UUID, ArmorStand> playerHolograms = new ConcurrentHashMap<>();
     private final Map<UUID, BukkitRunnable> animationTasks = new ConcurrentHashMap<>();
+    private final Map<UUID, String> pendingLiveText = new ConcurrentHashMap<>();
 
     public HologramManager(JavaPlugin plugin) {
         this.plugin = plugin;
@@ -85,7 +85,7 @@ public class HologramManager {
         // Spawn the armor stand 10 blocks below the intended location
         Location spawnLocation = location.clone().add(0, -10, 0);
 
-        armorStand = (ArmorStand) world.spawnEntity(spawnLocation, EntityType.ARMOR_STAND);
+        ArmorStand armorStand = (ArmorStand) world.spawnEntity(spawnLocation, EntityType.ARMOR_STAND);
         armorStand.setVisible(false);
         armorStand.setGravity(false);
         armorStand.setCustomName(text);
@@ -138,17 +138,47 @@ public class HologramManager {
         animationTasks.put(playerUUID, scrollingTask);
     }
 
-    public void animateHologram() {
+    public void animateHologram(UUID playerUUID) {
+        ArmorStand hologram = playerHolograms.get(playerUUID);
+        if (hologram == null) return;
+
         String[] animations = {".", "..", "..."};
 
-        animationTask = new BukkitRunnable() {
+        BukkitRunnable animationTask = new BukkitRunnable() {
+            int animationState = 0;
+
             @Override
             public void run() {
-                armorStand.setCustomName((animations[animationState]));
+                hologram.setCustomName((animations[animationState]));
                 animationState = (animationState + 1) % animations.length;
             }
         };
         animationTask.runTaskTimer(plugin, 0L, 20L);
+        animationTasks.put(playerUUID, animationTask);
+    }
+
+    /**
+     * Replaces the thinking animation with the text streamed so far. Safe to call from any thread,
+     * rapid updates are collapsed into one per tick.
+     *
+     * @param playerUUID The UUID of the player whose hologram shows the response.
+     * @param textSoFar  The response text received so far.
+     */
+    public void showLiveText(UUID playerUUID, String textSoFar) {
+        if (pendingLiveText.put(playerUUID, textSoFar) != null) return;
+
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            String latest = pendingLiveText.remove(playerUUID);
+            ArmorStand hologram = playerHolograms.get(playerUUID);
+            if (latest == null || hologram == null || !hologram.isValid()) return;
+
+            stopAnimation(playerUUID);
+            // Show the tail of the response so the newest words stay visible
+            String displayText = latest.length() > LIVE_TEXT_LENGTH
+                    ? "..." + latest.substring(latest.length() - LIVE_TEXT_LENGTH)
+                    : latest;
+            hologram.setCustomName(displayText);
+        });
     }
 
     /**
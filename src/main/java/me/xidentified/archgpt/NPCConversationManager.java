@@ -1,6 +1,7 @@
 package me.xidentified.archgpt;
 
 import lombok.Getter;
+import me.xidentified.archgpt.context.ContextSnapshot;
 import me.xidentified.archgpt.context.MemoryContext;
 import me.xidentified.archgpt.storage.model.Conversation;
 import me.xidentified.archgpt.utils.*;
@@ -11,25 +12,26 @@ import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
-import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class NPCConversationManager {
 
     private final ArchGPT plugin;
-    private final MemoryContext memoryContext;
+    @Getter private final MemoryContext memoryContext;
     @Getter private final ArchGPTConfig configHandler;
     @Getter private final ConversationUtils conversationUtils;
     @Getter private final ChatRequestHandler chatRequestHandler; //Handles requests sent to ChatGPT
     @Getter private final ConversationTimeoutManager conversationTimeoutManager; //Handles conversation timeout logic
+    @Getter private final GreetingCache greetingCache; //Reuses greetings for players passing by in similar surroundings
     public final Map<UUID, Long> npcCommentCooldown = new ConcurrentHashMap<>(); //Stores cooldown for NPC greeting to passing player
-    public final Map<UUID, NPC> playerNPCMap = new ConcurrentHashMap<>(); //Stores the NPC the player is talking to
-    public final ConcurrentHashMap<UUID, List<JsonObject>> npcChatStatesCache;
+    private final Map<UUID, ConversationSession> sessions = new ConcurrentHashMap<>(); //Stores each player's conversation with an NPC
     private final ConcurrentHashMap<UUID, Long> playerCooldowns; //Stores if the player is in a cooldown, which would cancel their sent message
 
     public NPCConversationManager(ArchGPT plugin, ArchGPTConfig configHandler) {
@@ -37,19 +39,24 @@ public class NPCConversationManager {
         this.configHandler = configHandler;
         this.memoryContext = new MemoryContext(plugin);
         this.chatRequestHandler = new ChatRequestHandler(plugin);
-        this.npcChatStatesCache = new ConcurrentHashMap<>();
         this.playerCooldowns = new ConcurrentHashMap<>();
         this.conversationTimeoutManager = new ConversationTimeoutManager(plugin);
         this.conversationUtils = new ConversationUtils(plugin, configHandler, this);
+        this.greetingCache = new GreetingCache(configHandler.getGreetingCacheMaxEntries(), configHandler.getGreetingCacheTtlMillis());
     }
 
-    public JsonObject createSystemMessage(NPC npc, Player player) {
+    // Called on the main thread, completes on a worker once the context text is built
+    public CompletableFuture<JsonObject> createSystemMessage(NPC npc, Player player, ContextSnapshot snapshot) {
         String npcCharacter = npc.getName();
-        JsonObject systemMessage = new JsonObject();
-        systemMessage.addProperty("role", "system");
 
         // Use conversationUtils instance field
-        String combinedContext = this.conversationUtils.getCombinedContext(npcCharacter, player);
+        return this.conversationUtils.getCombinedContext(npcCharacter, player, snapshot)
+                .thenApply(combinedContext -> buildSystemMessage(npcCharacter, combinedContext));
+    }
+
+    private JsonObject buildSystemMessage(String npcCharacter, String combinedContext) {
+        JsonObject systemMessage = new JsonObject();
+        systemMessage.addProperty("role", "system");
 
         // Construct the system message content
         String systemMessageContent = String.format(
@@ -65,15 +72,53 @@ public class NPCConversationManager {
     }
 
     public CompletableFuture<String> getGreeting(Player player, NPC npc) {
-        // Use the new MCP approach instead of building the request manually
-        String greetingPrompt = "A player known as " + player.getName() + " approaches you. " +
-                "Give them a greeting consisting of 40 completion_tokens or less.";
-        
-        return getChatRequestHandler().processMCPRequest(
-            player, npc, greetingPrompt, 
-            ChatRequestHandler.RequestType.GREETING, 
-            null
-        ).thenApply(responseObject -> (String) responseObject);
+        if (!configHandler.isGreetingCacheEnabled()) {
+            // Use the new MCP approach instead of building the request manually
+            String greetingPrompt = "A player known as " + player.getName() + " approaches you. " +
+                    "Give them a greeting consisting of 40 completion_tokens or less.";
+
+            return getChatRequestHandler().processMCPRequest(
+                player, npc, greetingPrompt,
+                ChatRequestHandler.RequestType.GREETING,
+                null
+            ).thenApply(responseObject -> (String) responseObject);
+        }
+
+        // Shared greetings only see coarse surroundings, so players arriving in the same situation can share them
+        String locale = LocaleUtils.getPlayerLocale(player).substring(0, 2).toLowerCase();
+        String cacheKey = GreetingCache.key(npc.getId(), getGreetingFingerprint(player), locale);
+        int poolSize = configHandler.getGreetingVariants(npc.getName());
+
+        String cachedGreeting = greetingCache.get(cacheKey, player.getName(), poolSize);
+        if (cachedGreeting != null) {
+            plugin.debugLog("Using cached greeting for NPC '" + npc.getName() + "'");
+            return getChatRequestHandler().localize(player, cachedGreeting);
+        }
+
+        String placeholder = GreetingCache.PLAYER_PLACEHOLDER;
+        String greetingPrompt = "A player known as " + placeholder + " approaches you. " +
+                "Give them a greeting consisting of 40 completion_tokens or less. " +
+                "If you address them by name, write exactly " + placeholder + " in place of their name.";
+
+        // Cached before any translation hop, which could mangle the placeholder, and translated per player once filled
+        return getChatRequestHandler().requestGreetingTemplate(player, npc, greetingPrompt).thenCompose(greeting -> {
+            if (greeting == null) return CompletableFuture.completedFuture(null);
+            greetingCache.add(cacheKey, greeting, poolSize);
+            return getChatRequestHandler().localize(player, GreetingCache.fill(greeting, player.getName()));
+        });
+    }
+
+    // Coarse buckets of everything in the shared greeting context: world, time of day, weather, biome and player tenure
+    private int getGreetingFingerprint(Player player) {
+        World world = player.getWorld();
+        return Objects.hash(
+                world.getName(),
+                world.getTime() / 3000,
+                world.hasStorm(),
+                world.isThundering(),
+                player.getLocation().getBlock().getBiome(),
+                player.hasPlayedBefore()
+        );
     }
 
     public void processPlayerMessage(Player player, Component playerMessage, HologramManager hologramManager) {
@@ -85,7 +130,9 @@ public class NPCConversationManager {
         }
         
         UUID playerUUID = player.getUniqueId();
-        NPC npc = playerNPCMap.get(playerUUID);
+        ConversationSession session = sessions.get(playerUUID);
+        if (session == null || !session.isActive()) return;
+        NPC npc = session.getNpc();
 
         // Check if player message is too short
         if (PlainTextComponentSerializer.plainText().serialize(playerMessage).length() < configHandler.getMinCharLength()) {
@@ -93,12 +140,6 @@ public class NPCConversationManager {
             return;
         }
 
-        // Send player message
-        conversationUtils.sendPlayerMessage(player, playerMessage);
-
-        // Start animation over NPC head while it processes response
-        displayHologramOverNPC(playerUUID, npc, hologramManager);
-
         // Cooldown logic
         long currentTimeMillis = System.currentTimeMillis();
         if (playerCooldowns.containsKey(playerUUID)) {
@@ -108,43 +149,120 @@ public class NPCConversationManager {
                 return;
             }
         }
+
         playerCooldowns.put(playerUUID, currentTimeMillis);
 
+        // Send player message
+        conversationUtils.sendPlayerMessage(player, playerMessage);
+
+        // Only one message per conversation is answered at a time, the rest wait their turn
+        if (!session.beginRequest()) {
+            session.queueMessage(playerMessage);
+            plugin.debugLog("Queued a message from " + player.getName() + " until " + npc.getName() + " has answered");
+            return;
+        }
+        sendRequest(player, session, playerMessage, hologramManager);
+    }
+
+    // Sends a message the session has begun a request for
+    private void sendRequest(Player player, ConversationSession session, Component playerMessage, HologramManager hologramManager) {
+        UUID playerUUID = player.getUniqueId();
+        NPC npc = session.getNpc();
+
+        // Start animation over NPC head while it processes response
+        displayHologramOverNPC(playerUUID, npc, hologramManager);
+
         // Process chat request
-        List<JsonObject> conversationState = npcChatStatesCache.get(playerUUID);
         String playerMessageText = PlainTextComponentSerializer.plainText().serialize(playerMessage);
 
+        if (!session.getMemoryPrefetch().isDone()) {
+            plugin.debugLog("Memories of " + npc.getName() + " for " + player.getName() + " are still loading");
+        }
+
         // Handle summary of past conversations if needed
         String conversationSummary = memoryContext.getConversationSummary(playerMessage, playerUUID, npc.getName());
         if (conversationSummary != null) {
             // Update context with conversation summary
-            plugin.getContextManager().updateContextElement(player, "conversation_summary", conversationSummary);
+            plugin.getContextManager().updateContextElement(player, npc, "conversation_summary", conversationSummary);
+        }
+
+        // Earlier lines related to this message, so the NPC remembers without being asked about the past
+        String relevantMemories = memoryContext.getRelevantMemories(playerUUID, npc.getName(), playerMessageText);
+        if (relevantMemories != null) {
+            plugin.getContextManager().updateContextElement(player, npc, "relevant_memories", relevantMemories);
+        } else {
+            plugin.getContextManager().removeContextElement(player, npc, "relevant_memories");
         }
 
-        // Send the request and process the response using the new MCP approach
-        CompletableFuture<Object> future = getChatRequestHandler().processMCPRequest(
+        // Stream the reply into chat and the hologram as it is generated, when possible
+        AtomicBoolean sentenceStreamed = new AtomicBoolean();
+        ChatRequestHandler.StreamListener streamListener = getChatRequestHandler().canStream(player)
+                ? createStreamListener(player, npc, hologramManager, sentenceStreamed)
+                : null;
+
+        // Send the request and process the response using the new MCP approach, once the system message is ready
+        CompletableFuture<Object> future = session.getHistory().thenCompose(history -> getChatRequestHandler().processMCPRequest(
             player, npc, playerMessageText, 
             ChatRequestHandler.RequestType.CONVERSATION, 
-            conversationState
-        );
+            history,
+            streamListener
+        ));
         
-        processNpcResponse(future, player, npc, hologramManager);
+        processNpcResponse(future, player, session, hologramManager, sentenceStreamed);
     }
 
-    public void startConversation(Player player, NPC npc) {
+    // Sets sentenceStreamed once a sentence went out, so the full reply isn't sent a second time
+    private ChatRequestHandler.StreamListener createStreamListener(Player player, NPC npc, HologramManager hologramManager,
+                                                                   AtomicBoolean sentenceStreamed) {
         UUID playerUUID = player.getUniqueId();
+        return new ChatRequestHandler.StreamListener() {
+            @Override
+            public void onPartialText(String textSoFar) {
+                hologramManager.showLiveText(playerUUID, textSoFar);
+            }
+
+            @Override
+            public void onSentence(String sentence) {
+                sentenceStreamed.set(true);
+                // Scheduled tasks run in submission order, so sentences arrive in order
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    if (playerInConversation(playerUUID)) {
+                        conversationUtils.sendNPCMessage(player, npc, sentence);
+                    }
+                });
+            }
+        };
+    }
 
-        // Store conversation state
-        playerNPCMap.put(playerUUID, npc);
-        List<JsonObject> initialConversationState = new ArrayList<>();
+    public void startConversation(Player player, NPC npc) {
+        UUID playerUUID = player.getUniqueId();
 
-        // Add the system message with NPC's context
-        JsonObject systemMessageJson = createSystemMessage(npc, player);
-        initialConversationState.add(systemMessageJson);
+        // Load the pair's memory and the player's context while they type, so the first message doesn't wait on either
+        CompletableFuture<Void> memoryPrefetch = memoryContext.prefetch(playerUUID, npc.getName())
+                .exceptionally(ex -> {
+                    plugin.getLogger().warning("Could not load memories of " + npc.getName() + " for " + player.getName() + ": " + ex.getMessage());
+                    return null;
+                });
+
+        // One copy of the surroundings serves both the system message and the context of the player's requests
+        ContextSnapshot snapshot = ContextSnapshot.capture(player);
+        chatRequestHandler.prefetchContext(player, npc, snapshot)
+                .exceptionally(ex -> {
+                    plugin.debugLog("Could not prefetch context for " + player.getName() + ": " + ex.getMessage());
+                    return null;
+                });
+
+        // Start the history with the system message holding the NPC's context, built off the main thread
+        CompletableFuture<ConversationHistory> history = createSystemMessage(npc, player, snapshot)
+                .thenApply(systemMessageJson -> new ConversationHistory(systemMessageJson, configHandler.getHistoryTokenBudget(),
+                        configHandler.isHistorySummarizeDropped() ? memoryContext::summarizeTexts : null));
 
         // Store the initial conversation state
-        npcChatStatesCache.put(playerUUID, initialConversationState);
-        plugin.getActiveConversations().put(playerUUID, true);
+        ConversationSession previous = sessions.put(playerUUID, new ConversationSession(playerUUID, npc, history, memoryPrefetch));
+        if (previous != null) {
+            previous.end();
+            plugin.getContextManager().clearConversationContext(playerUUID, previous.getNpc());
+        }
 
         plugin.sendMessage(player, Messages.CONVERSATION_STARTED
                 .insertObject("npc", npc)
@@ -154,19 +272,25 @@ public class NPCConversationManager {
     }
 
 
-    public void endConversation(UUID playerUUID) {
-        plugin.debugLog("Conversation ended for player " + playerUUID);
-
-        synchronized (npcChatStatesCache) {
-            npcChatStatesCache.remove(playerUUID);
-        }
+    // Returns false if there was no conversation left to end, e.g. when a timeout and a cancel race
+    public boolean endConversation(UUID playerUUID) {
+        ConversationSession session = sessions.get(playerUUID);
+        return session != null && endConversation(session);
+    }
 
-        synchronized (plugin.getActiveConversations()){
-            plugin.getActiveConversations().remove(playerUUID);
+    // Ends this conversation only, a newer one the player has started since keeps going
+    public boolean endConversation(ConversationSession session) {
+        if (!session.end()) {
+            return false;
         }
+        UUID playerUUID = session.getPlayerUUID();
+        sessions.remove(playerUUID, session);
+        plugin.getContextManager().clearConversationContext(playerUUID, session.getNpc());
+        plugin.debugLog("Conversation ended for player " + playerUUID);
 
         conversationTimeoutManager.cancelConversationTimeout(playerUUID);
         plugin.getHologramManager().removePlayerHologram(playerUUID);
+        return true;
     }
 
     public boolean handleCancelCommand(Player player, String message) {
@@ -186,64 +310,110 @@ public class NPCConversationManager {
                 hologramManager.removePlayerHologram(playerUUID);
                 Location npcLocation = npc.getEntity().getLocation();
                 hologramManager.createHologram(playerUUID, npcLocation.add(0, 1, 0), "...");
-                hologramManager.animateHologram();
+                hologramManager.animateHologram(playerUUID);
             }
         }.runTask(plugin);
     }
 
-    private void processNpcResponse(CompletableFuture<Object> future, Player player, NPC npc, HologramManager hologramManager) {
+    private void processNpcResponse(CompletableFuture<Object> future, Player player, ConversationSession session, HologramManager hologramManager, AtomicBoolean sentenceStreamed) {
         UUID playerUUID = player.getUniqueId();
-        future.thenAccept(responseObject -> {
-            synchronized (npcChatStatesCache) {
-                if (!plugin.getActiveConversations().containsKey(playerUUID)) return;
-                if (responseObject instanceof Pair<?, ?> rawPair) {
-
-                    Object leftObject = rawPair.getLeft();
-                    Object rightObject = rawPair.getRight();
-
-                    if (leftObject instanceof String response && rightObject instanceof List<?>) {
-                        // Check if the list contains JsonObjects
-                        if (((List<?>) rawPair.getRight()).stream().allMatch(item -> item instanceof JsonObject)) {
-                            @SuppressWarnings("unchecked") // Safe after checking all elements
-                            List<JsonObject> updatedConversationState = (List<JsonObject>) rawPair.getRight();
-
-                            npcChatStatesCache.put(playerUUID, updatedConversationState);
-
-                            new BukkitRunnable() {
-                                @Override
-                                public void run() {
-                                    if (plugin.getActiveConversations().containsKey(playerUUID)) {
-                                        conversationUtils.sendNPCMessage(player, npc, response);
-
-                                        // Save the message if the response is a significant length
-                                        List<String> relevantSentences = conversationUtils.filterShortSentences(response, ArchGPTConstants.MINIMUM_SAVED_SENTENCE_LENGTH);
-
-                                        if (!relevantSentences.isEmpty()) {
-                                            String filteredResponseText = String.join(" ", relevantSentences);
-                                            Conversation conversation = new Conversation(
-                                                    player.getUniqueId(),
-                                                    npc.getName(),
-                                                    filteredResponseText,
-                                                    System.currentTimeMillis(),
-                                                    true
-                                            );
-                                            plugin.getConversationDAO().saveConversation(conversation);
-                                        }
-
-                                        hologramManager.removePlayerHologram(playerUUID);
-                                    }
-                                }
-                            }.runTaskLater(plugin, 20L);
-                            getConversationTimeoutManager().resetConversationTimeout(playerUUID);
+        NPC npc = session.getNpc();
+        future.whenComplete((responseObject, ex) -> {
+            if (!isReply(responseObject)) {
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    if (ex == null) {
+                        // The MCP request failed, which ends this conversation but not one the player started since
+                        endConversation(session);
+                        return;
+                    }
+                    // Nothing usable came back, let the player try again
+                    session.failRequest();
+                    hologramManager.removePlayerHologram(playerUUID);
+                    sendQueuedMessage(player, session, hologramManager);
+                });
+                return;
+            }
+
+            // The conversation may have ended while the NPC was thinking
+            if (!session.beginResponse()) return;
+            ChatRequestHandler.ConversationReply reply = (ChatRequestHandler.ConversationReply) responseObject;
+            String response = reply.text();
+
+            new BukkitRunnable() {
+                @Override
+                public void run() {
+                    if (session.isActive()) {
+                        // Streamed replies were already sent sentence by sentence, unless nothing came through the stream.
+                        // A stream that broke off partway ends with a notice instead of the whole fallback reply
+                        if (!sentenceStreamed.get()) {
+                            conversationUtils.sendNPCMessage(player, npc, response);
+                        } else if (reply.canned()) {
+                            plugin.sendMessage(player, Messages.CONVERSATION_REPLY_CUT_OFF.insertObject("npc", npc));
+                        }
+
+                        // Save the message if the response is a significant length, canned fallbacks aren't memories
+                        List<String> relevantSentences = reply.canned()
+                                ? Collections.emptyList()
+                                : conversationUtils.filterShortSentences(response, ArchGPTConstants.MINIMUM_SAVED_SENTENCE_LENGTH);
+
+                        if (!relevantSentences.isEmpty()) {
+                            String filteredResponseText = String.join(" ", relevantSentences);
+                            Conversation conversation = new Conversation(
+                                    player.getUniqueId(),
+                                    npc.getName(),
+                                    filteredResponseText,
+                                    System.currentTimeMillis(),
+                                    true
+                            );
+                            plugin.getConversationDAO().saveConversation(conversation);
+                            memoryContext.addToIndexes(conversation);
                         }
+
+                        hologramManager.removePlayerHologram(playerUUID);
                     }
+                    session.finishResponse();
+                    sendQueuedMessage(player, session, hologramManager);
                 }
-            }
+            }.runTask(plugin);
+            getConversationTimeoutManager().resetConversationTimeout(playerUUID);
         });
     }
 
+    // Sends the next message the player wrote while the NPC was answering. Runs on the main thread, like queueing
+    private void sendQueuedMessage(Player player, ConversationSession session, HologramManager hologramManager) {
+        if (!session.isActive() || !player.isOnline()) return;
+        Component nextMessage = session.pollQueuedMessage();
+        if (nextMessage != null && session.beginRequest()) {
+            sendRequest(player, session, nextMessage, hologramManager);
+        }
+    }
+
+    // False if the request produced no reply
+    private boolean isReply(Object responseObject) {
+        return responseObject instanceof ChatRequestHandler.ConversationReply;
+    }
+
+    public ConversationSession getSession(UUID playerUUID) {
+        return sessions.get(playerUUID);
+    }
+
+    // The NPC the player is talking to, or null
+    public NPC getConversationNPC(UUID playerUUID) {
+        ConversationSession session = sessions.get(playerUUID);
+        return session != null ? session.getNpc() : null;
+    }
+
     public boolean playerInConversation(UUID playerUUID) {
-        return plugin.getActiveConversations().containsKey(playerUUID);
+        ConversationSession session = sessions.get(playerUUID);
+        return session != null && session.isActive();
+    }
+
+    public void endAllConversations() {
+        sessions.values().forEach(session -> {
+            session.end();
+            plugin.getContextManager().clearConversationContext(session.getPlayerUUID(), session.getNpc());
+        });
+        sessions.clear();
     }
 
 }
@@ -2,6 +2,7 @@ package me.xidentified.archgpt.commands;
 
 import me.xidentified.archgpt.ArchGPT;
 import me.xidentified.archgpt.reports.ReportGUI;
+import me.xidentified.archgpt.storage.model.ReportFilter;
 import me.xidentified.archgpt.utils.Messages;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -28,7 +29,24 @@ public class AdminReportCommandExecutor implements CommandExecutor {
             return true;
         }
 
-        new ReportGUI(plugin).openGUI(admin);
+        // Optional filters: /npcreports [type|npc|player <value>]...
+        ReportFilter filter = ReportFilter.NONE;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i].toLowerCase()) {
+                case "type" -> filter = filter.withReportType(value);
+                case "npc" -> filter = filter.withNpcName(value);
+                case "player" -> filter = filter.withPlayerName(value);
+                default -> {
+                    return false;
+                }
+            }
+        }
+        if (args.length % 2 != 0) {
+            return false;
+        }
+
+        new ReportGUI(plugin, filter).openGUI(admin);
 
         return true;
     }
@@ -1,7 +1,16 @@
 package me.xidentified.archgpt.commands;
 
 import me.xidentified.archgpt.ArchGPT;
+import me.xidentified.archgpt.ChatRequestHandler;
+import me.xidentified.archgpt.storage.ConversationCache;
+import me.xidentified.archgpt.storage.ConversationWriteQueue;
+import me.xidentified.archgpt.storage.connection.ConnectionStats;
+import me.xidentified.archgpt.utils.CircuitBreaker;
+import me.xidentified.archgpt.utils.GreetingCache;
+import me.xidentified.archgpt.utils.HttpTransport;
 import me.xidentified.archgpt.utils.Messages;
+import me.xidentified.archgpt.utils.TranslationService;
+import me.xidentified.archgpt.utils.RequestScheduler;
 import net.citizensnpcs.api.CitizensAPI;
 import net.citizensnpcs.api.npc.NPC;
 import net.kyori.adventure.text.Component;
@@ -48,6 +57,9 @@ public class ArchGPTCommand implements CommandExecutor, TabCompleter {
             case "reload":
                 plugin.reloadConfig();
                 plugin.loadLanguages();
+                plugin.getConversationManager().getGreetingCache().invalidateAll();
+                plugin.getNpcSpatialIndex().refresh();
+                plugin.getPoiRegistry().reload();
                 // TODO: Unregister and register listeners
                 plugin.sendMessage(sender, Messages.RELOAD_SUCCESS);
                 break;
@@ -81,6 +93,11 @@ public class ArchGPTCommand implements CommandExecutor, TabCompleter {
             case "debug":
                 toggleDebugMode(sender);
                 break;
+
+            case "stats":
+                displayStats(sender);
+                break;
+
             case "checkprovider":
                 if (args.length < 2) {
                     plugin.sendMessage(sender, Messages.CHECKPROVIDER_CMD_USAGE);
@@ -140,6 +157,7 @@ public class ArchGPTCommand implements CommandExecutor, TabCompleter {
         }
 
         plugin.getConversationDAO().clearConversationsForNpc(npcName);
+        plugin.getConversationManager().getMemoryContext().clearIndexesForNpc(npcName);
         plugin.sendMessage(sender, Messages.NPC_MEMORY_RESET.insertObject("npc", npc));
     }
 
@@ -156,7 +174,7 @@ public class ArchGPTCommand implements CommandExecutor, TabCompleter {
 
         if (command.getName().equalsIgnoreCase("archgpt") && args.length == 1) {
             if (sender.hasPermission("archgpt.admin")) {
-                completions.addAll(Arrays.asList("broadcast", "checkprovider", "version", "reload", "setnpc", "reset-npc-memory", "clear-all-conversations", "debug"));
+                completions.addAll(Arrays.asList("broadcast", "checkprovider", "version", "reload", "setnpc", "reset-npc-memory", "clear-all-conversations", "debug", "stats"));
             }
         }
 
@@ -181,10 +199,88 @@ public class ArchGPTCommand implements CommandExecutor, TabCompleter {
         ));
     }
 
+    private void displayStats(CommandSender sender) {
+        ChatRequestHandler chatRequestHandler = plugin.getConversationManager().getChatRequestHandler();
+        RequestScheduler.SchedulerStats schedulerStats = chatRequestHandler.getRequestScheduler().getStats();
+        CircuitBreaker circuitBreaker = chatRequestHandler.getCircuitBreaker();
+
+        plugin.sendMessage(sender, Messages.STATS_HEADER);
+        plugin.sendMessage(sender, Messages.STATS_REQUESTS
+                .insertNumber("running", schedulerStats.running())
+                .insertNumber("limit", schedulerStats.maxConcurrent())
+                .insertNumber("conversations", schedulerStats.queuedConversations())
+                .insertNumber("greetings", schedulerStats.queuedGreetings())
+                .insertNumber("submitted", schedulerStats.submitted())
+                .insertNumber("dropped", schedulerStats.dropped())
+                .insertNumber("avg_wait", schedulerStats.averageWaitMillis())
+                .insertNumber("max_wait", schedulerStats.maxWaitMillis()));
+        plugin.sendMessage(sender, Messages.STATS_CIRCUIT_BREAKER
+                .insertString("state", circuitBreaker.getState().name().toLowerCase())
+                .insertNumber("failure_rate", Math.round(circuitBreaker.getFailureRate() * 100)));
+        for (HttpTransport.EndpointStats endpointStats : plugin.getHttpTransport().getStats()) {
+            plugin.sendMessage(sender, Messages.STATS_HTTP
+                    .insertString("endpoint", endpointStats.endpoint())
+                    .insertNumber("requests", endpointStats.requests())
+                    .insertNumber("failures", endpointStats.failures())
+                    .insertNumber("in_flight", endpointStats.inFlight())
+                    .insertNumber("avg", endpointStats.averageMillis())
+                    .insertNumber("max", endpointStats.maxMillis()));
+        }
+
+        GreetingCache greetingCache = plugin.getConversationManager().getGreetingCache();
+        long lookups = greetingCache.getHits() + greetingCache.getMisses();
+        plugin.sendMessage(sender, Messages.STATS_GREETING_CACHE
+                .insertNumber("entries", greetingCache.size())
+                .insertNumber("hits", greetingCache.getHits())
+                .insertNumber("hit_rate", lookups == 0 ? 0 : Math.round(greetingCache.getHits() * 100.0 / lookups)));
+
+        TranslationService translationService = plugin.getTranslationService();
+        long translationLookups = translationService.getHits() + translationService.getMisses();
+        plugin.sendMessage(sender, Messages.STATS_TRANSLATION_CACHE
+                .insertNumber("entries", translationService.getCacheSize())
+                .insertNumber("hit_rate", translationLookups == 0 ? 0 : Math.round(translationService.getHits() * 100.0 / translationLookups))
+                .insertNumber("coalesced", translationService.getCoalesced()));
+        TranslationService.TranslationStats translationStats = translationService.getStats();
+        plugin.sendMessage(sender, Messages.STATS_TRANSLATION
+                .insertString("mode", plugin.getConfigHandler().isTranslationByProvider() ? "provider" : "translate")
+                .insertNumber("texts", translationStats.translatedTexts())
+                .insertNumber("requests", translationStats.translationRequests())
+                .insertNumber("hop_avg", translationStats.averageHopMillis())
+                .insertNumber("translated_turns", translationStats.translatedTurns())
+                .insertNumber("translated_avg", translationStats.averageTranslatedTurnMillis())
+                .insertNumber("provider_turns", translationStats.providerTurns())
+                .insertNumber("provider_avg", translationStats.averageProviderTurnMillis())
+                .insertNumber("fallbacks", translationStats.providerFallbacks()));
+
+        ConversationCache conversationCache = plugin.getStorageManager().getConversationDAO();
+        plugin.sendMessage(sender, Messages.STATS_CONVERSATION_CACHE
+                .insertNumber("entries", conversationCache.size())
+                .insertNumber("hit_rate", Math.round(conversationCache.getStats().hitRate() * 100)));
+
+        ConversationWriteQueue.WriteQueueStats writeQueueStats = plugin.getStorageManager().getWriteQueue().getStats();
+        plugin.sendMessage(sender, Messages.STATS_WRITE_QUEUE
+                .insertNumber("queued", writeQueueStats.queued())
+                .insertNumber("capacity", writeQueueStats.capacity())
+                .insertNumber("written", writeQueueStats.written())
+                .insertNumber("batches", writeQueueStats.batches())
+                .insertNumber("dropped", writeQueueStats.dropped())
+                .insertNumber("failed", writeQueueStats.failed()));
+        for (ConnectionStats connectionStats : plugin.getStorageManager().getStats()) {
+            plugin.sendMessage(sender, Messages.STATS_STORAGE
+                    .insertString("name", connectionStats.name())
+                    .insertNumber("active", connectionStats.activeConnections())
+                    .insertNumber("total", connectionStats.totalConnections())
+                    .insertNumber("waiting", connectionStats.threadsAwaiting())
+                    .insertNumber("queries", connectionStats.queries())
+                    .insertNumber("updates", connectionStats.updates()));
+        }
+    }
+
     private void clearConversationStorage(CommandSender sender) {
         // Implement logic to clear conversation storage
         try {
             plugin.getConversationDAO().clearAllConversations();
+            plugin.getConversationManager().getMemoryContext().clearAllIndexes();
             plugin.sendMessage(sender, Messages.CLEAR_STORAGE_SUCCESS);
         } catch (Exception e) {
             plugin.getLogger().severe("Error clearing conversation storage: " + e.getMessage());
@@ -204,6 +300,8 @@ public class ArchGPTCommand implements CommandExecutor, TabCompleter {
 
         // Update the NPC's prompt in the configuration
         config.set("npcs." + npc.getName(), prompt);
+        plugin.getConversationManager().getGreetingCache().invalidateNpc(npc.getId());
+        plugin.getNpcSpatialIndex().update(npc);
         plugin.sendMessage(sender, Messages.NPC_PROMPT_UPDATED.insertObject("npc", npc));
 
         // Save changes to the configuration
@@ -292,13 +390,13 @@ private boolean testProvider(String provider) {
         request.addProperty("max_tokens", 50);
         
         // Send request to MCP server
-        HttpRequest httpRequest = HttpRequest.newBuilder()
+        HttpRequest httpRequest = plugin.getHttpTransport().newRequest()
                 .uri(URI.create(plugin.getConfigHandler().getMcpServerUrl()))
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(request.toString()))
                 .build();
         
-        HttpResponse<String> response = plugin.getHttpClient().send(httpRequest, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = plugin.getHttpTransport().send("provider-check", httpRequest, HttpResponse.BodyHandlers.ofString());
         
         if (response.statusCode() != 200) {
             plugin.getLogger().warning("Provider " + provider + " test failed with status: " + response.statusCode());
@@ -3,74 +3,201 @@ package me.xidentified.archgpt.context;
 import com.google.gson.JsonObject;
 import me.xidentified.archgpt.ArchGPT;
 import me.xidentified.archgpt.ChatRequestHandler;
+import lombok.Getter;
 import net.citizensnpcs.api.npc.NPC;
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 public class ContextManager {
     private final ArchGPT plugin;
     private final Map<UUID, JsonObject> playerContextCache = new ConcurrentHashMap<>();
     private final Map<UUID, Long> lastContextUpdate = new ConcurrentHashMap<>();
+    // Contexts still being built, so a request arriving during a prefetch waits for it instead of capturing again
+    private final Map<UUID, CompletableFuture<JsonObject>> pendingContexts = new ConcurrentHashMap<>();
+    // Elements set from outside the snapshot, such as recalled memories, kept per conversation partner and added to
+    // a copy of the context on every request, so the cached context is never changed once it is shared
+    private record ElementsKey(UUID playerUUID, int npcId) {}
+    private final Map<ElementsKey, Map<String, String>> contextElements = new ConcurrentHashMap<>();
     private static final long CONTEXT_UPDATE_INTERVAL = 30000; // 30 seconds
+    private static final long LOCATION_MEMO_MILLIS = 5000;
+    @Getter private final EnvironmentScanner environmentScanner = new EnvironmentScanner(LOCATION_MEMO_MILLIS);
     
     public ContextManager(ArchGPT plugin) {
         this.plugin = plugin;
     }
     
-    public JsonObject getOrganizedContext(Player player, NPC npc, ChatRequestHandler.RequestType requestType) {
+    /**
+     * Returns the cached context, or captures a snapshot on the main thread and builds the
+     * descriptive text from it on the given executor, so the tick only pays for the copy.
+     * The result is the caller's own copy, with the elements set for this player and NPC.
+     */
+    public CompletableFuture<JsonObject> getOrganizedContext(Player player, NPC npc, ChatRequestHandler.RequestType requestType,
+                                                             Executor executor) {
+        return getSharedContext(player, npc, requestType, null, executor)
+                .thenApply(context -> withElements(context, player.getUniqueId(), npc, requestType));
+    }
+
+    /**
+     * Same as above, but a context that has to be built is built from a snapshot the caller already took on the
+     * main thread, so starting a conversation copies the world once for both the system message and this context.
+     */
+    public CompletableFuture<JsonObject> getOrganizedContext(Player player, NPC npc, ChatRequestHandler.RequestType requestType,
+                                                             ContextSnapshot snapshot, Executor executor) {
+        return getSharedContext(player, npc, requestType, snapshot, executor)
+                .thenApply(context -> withElements(context, player.getUniqueId(), npc, requestType));
+    }
+
+    // Captures a snapshot unless one was passed in
+    private CompletableFuture<JsonObject> getSharedContext(Player player, NPC npc, ChatRequestHandler.RequestType requestType,
+                                                           ContextSnapshot snapshot, Executor executor) {
         UUID playerUUID = player.getUniqueId();
         long currentTime = System.currentTimeMillis();
-        
+
         // Check if we need to update the context (either first time or after interval)
-        if (!playerContextCache.containsKey(playerUUID) || 
-            currentTime - lastContextUpdate.getOrDefault(playerUUID, 0L) > CONTEXT_UPDATE_INTERVAL) {
-            
-            JsonObject context = new JsonObject();
-            
-            // Add environmental context
-            EnvironmentalContextProvider envProvider = new EnvironmentalContextProvider(plugin, player);
-            String envContext = envProvider.getFormattedContext("");
-            context.addProperty("environment", envContext != null ? envContext : "");
-            
-            // Add player context
-            PlayerContextProvider playerProvider = new PlayerContextProvider(player);
-            String playerContext = playerProvider.getFormattedContext("");
-            context.addProperty("player", playerContext != null ? playerContext : "");
-            
-            // Add NPC context
-            context.addProperty("npc", npc.getName());
-            context.addProperty("npc_id", npc.getId());
-            
-            // Add request type
-            context.addProperty("request_type", requestType.name());
-            
+        JsonObject cachedContext = playerContextCache.get(playerUUID);
+        if (cachedContext != null && currentTime - lastContextUpdate.getOrDefault(playerUUID, 0L) <= CONTEXT_UPDATE_INTERVAL) {
+            plugin.debugLog("Using cached context for player: " + player.getName());
+            return CompletableFuture.completedFuture(cachedContext);
+        }
+
+        CompletableFuture<JsonObject> result = new CompletableFuture<>();
+        CompletableFuture<JsonObject> pending = pendingContexts.putIfAbsent(playerUUID, result);
+        if (pending != null) {
+            plugin.debugLog("Waiting for the context being built for player: " + player.getName());
+            return pending;
+        }
+        result.whenComplete((context, ex) -> pendingContexts.remove(playerUUID, result));
+
+        CompletableFuture<ContextSnapshot> snapshotFuture = snapshot != null
+                ? CompletableFuture.completedFuture(snapshot) : captureSnapshot(player);
+
+        snapshotFuture.thenApplyAsync(captured -> {
+            JsonObject context = buildContext(captured, npc, requestType);
+
             // Cache the context
             playerContextCache.put(playerUUID, context);
             lastContextUpdate.put(playerUUID, currentTime);
-            
+
             plugin.debugLog("Context updated for player: " + player.getName());
             return context;
-        }
-        
-        // Return cached context
-        plugin.debugLog("Using cached context for player: " + player.getName());
-        return playerContextCache.get(playerUUID);
+        }, executor).whenComplete((context, ex) -> {
+            if (ex != null) {
+                result.completeExceptionally(ex);
+            } else {
+                result.complete(context);
+            }
+        });
+        return result;
     }
-    
-    public void updateContextElement(Player player, String key, String value) {
-        UUID playerUUID = player.getUniqueId();
-        if (playerContextCache.containsKey(playerUUID)) {
-            playerContextCache.get(playerUUID).addProperty(key, value);
-            lastContextUpdate.put(playerUUID, System.currentTimeMillis());
+
+    private CompletableFuture<ContextSnapshot> captureSnapshot(Player player) {
+        CompletableFuture<ContextSnapshot> snapshotFuture = new CompletableFuture<>();
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            try {
+                if (!player.isOnline()) {
+                    throw new IllegalStateException(player.getName() + " went offline before their context was captured");
+                }
+                Location location = player.getLocation();
+                boolean captureBlocks = !environmentScanner.isMemoized(location.getWorld().getName(),
+                        location.getBlockX(), location.getBlockY(), location.getBlockZ());
+                snapshotFuture.complete(ContextSnapshot.capture(player, captureBlocks));
+            } catch (Exception e) {
+                snapshotFuture.completeExceptionally(e);
+            }
+        });
+        return snapshotFuture;
+    }
+
+    // The shared context may have been built for another NPC, so its NPC fields are set again on the copy
+    private JsonObject withElements(JsonObject sharedContext, UUID playerUUID, NPC npc, ChatRequestHandler.RequestType requestType) {
+        JsonObject context = sharedContext.deepCopy();
+        context.addProperty("npc", npc.getName());
+        context.addProperty("npc_id", npc.getId());
+        context.addProperty("request_type", requestType.name());
+        contextElements.getOrDefault(new ElementsKey(playerUUID, npc.getId()), Map.of()).forEach(context::addProperty);
+        return context;
+    }
+
+    /**
+     * Context for greetings that are cached and replayed to other players: only the coarse surroundings the
+     * greeting cache is keyed on, with nothing about the player's gear, position or past conversations.
+     */
+    public CompletableFuture<JsonObject> getGreetingContext(Player player, NPC npc, Executor executor) {
+        CompletableFuture<ContextSnapshot> snapshotFuture = new CompletableFuture<>();
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            try {
+                if (!player.isOnline()) {
+                    throw new IllegalStateException(player.getName() + " went offline before their context was captured");
+                }
+                // The surroundings aren't described, so no blocks are copied
+                snapshotFuture.complete(ContextSnapshot.capture(player, false));
+            } catch (Exception e) {
+                snapshotFuture.completeExceptionally(e);
+            }
+        });
+
+        return snapshotFuture.thenApplyAsync(snapshot -> {
+            JsonObject context = new JsonObject();
+            EnvironmentalContextProvider envProvider = new EnvironmentalContextProvider(plugin, snapshot, environmentScanner);
+            context.addProperty("environment", envProvider.getSharedContext(""));
+            context.addProperty("player", new PlayerContextProvider(snapshot).getTenureContext());
+            context.addProperty("npc", npc.getName());
+            context.addProperty("npc_id", npc.getId());
+            context.addProperty("request_type", ChatRequestHandler.RequestType.GREETING.name());
+            return context;
+        }, executor);
+    }
+
+    private JsonObject buildContext(ContextSnapshot snapshot, NPC npc, ChatRequestHandler.RequestType requestType) {
+        JsonObject context = new JsonObject();
+
+        // Add environmental context
+        EnvironmentalContextProvider envProvider = new EnvironmentalContextProvider(plugin, snapshot, environmentScanner);
+        String envContext = envProvider.getFormattedContext("");
+        context.addProperty("environment", envContext != null ? envContext : "");
+
+        // Add player context
+        PlayerContextProvider playerProvider = new PlayerContextProvider(snapshot);
+        String playerContext = playerProvider.getFormattedContext("");
+        context.addProperty("player", playerContext != null ? playerContext : "");
+
+        // Add NPC context
+        context.addProperty("npc", npc.getName());
+        context.addProperty("npc_id", npc.getId());
+
+        // Add request type
+        context.addProperty("request_type", requestType.name());
+        return context;
+    }
+
+    public void updateContextElement(Player player, NPC npc, String key, String value) {
+        contextElements.computeIfAbsent(new ElementsKey(player.getUniqueId(), npc.getId()), elementsKey -> new ConcurrentHashMap<>())
+                .put(key, value);
+    }
+
+    public void removeContextElement(Player player, NPC npc, String key) {
+        Map<String, String> elements = contextElements.get(new ElementsKey(player.getUniqueId(), npc.getId()));
+        if (elements != null) {
+            elements.remove(key);
         }
     }
+
+    // Drops what was carried over from a conversation once it ends, so it can't reach the next one
+    public void clearConversationContext(UUID playerUUID, NPC npc) {
+        contextElements.remove(new ElementsKey(playerUUID, npc.getId()));
+    }
     
     public void clearPlayerContext(UUID playerUUID) {
         playerContextCache.remove(playerUUID);
         lastContextUpdate.remove(playerUUID);
+        contextElements.keySet().removeIf(elementsKey -> elementsKey.playerUUID().equals(playerUUID));
+        pendingContexts.remove(playerUUID);
         plugin.debugLog("Cleared context for player: " + playerUUID);
     }
     
@@ -78,6 +205,8 @@ public class ContextManager {
         int clearedCount = playerContextCache.size();
         playerContextCache.clear();
         lastContextUpdate.clear();
+        contextElements.clear();
+        pendingContexts.clear();
         plugin.debugLog("Cleared all contexts. Removed " + clearedCount + " player contexts.");
     }
     
@@ -0,0 +1,186 @@
+package me.xidentified.archgpt.context;
+
+import lombok.Getter;
+import net.Indyuce.mmocore.api.player.PlayerData;
+import net.Indyuce.mmocore.api.player.profess.PlayerClass;
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Statistic;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.entity.*;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.*;
+
+/**
+ * Immutable copy of everything the context providers describe. Capturing it is the only part that has to run
+ * on the main thread, the descriptive text can then be built from it on any thread.
+ */
+@Getter
+public final class ContextSnapshot {
+    public static final int SCAN_RADIUS = 5;
+    private static final double ENTITY_RADIUS = 10;
+
+    public enum EntityCategory { HOSTILE, PEACEFUL, OTHER }
+
+    public record ItemSummary(Material type, int damage, boolean enchanted) {}
+
+    public record EntitySummary(EntityType type, EntityCategory category) {}
+
+    public record MMOCoreSummary(String className, int level, boolean inParty) {}
+
+    // World
+    private final String worldName;
+    private final long worldTime;
+    private final boolean storm;
+    private final boolean thundering;
+    private final Biome biome;
+    private final int blockX;
+    private final int blockY;
+    private final int blockZ;
+    private final int minHeight;
+    private final int maxHeight;
+    private final Map<Long, ChunkSnapshot> chunks;
+    private final List<EntitySummary> nearbyEntities;
+
+    // Player
+    private final boolean playedBefore;
+    private final long ticksPlayed;
+    private final int mobKills;
+    private final double health;
+    private final double maxHealth;
+    private final int foodLevel;
+    private final List<ItemSummary> armor;
+    private final ItemSummary heldItem;
+    private final MMOCoreSummary mmoCore;
+
+    private ContextSnapshot(Player player, boolean captureBlocks) {
+        Location loc = player.getLocation();
+        World world = loc.getWorld();
+
+        this.worldName = world.getName();
+        this.worldTime = world.getTime();
+        this.storm = world.hasStorm();
+        this.thundering = world.isThundering();
+        this.biome = loc.getBlock().getBiome();
+        this.blockX = loc.getBlockX();
+        this.blockY = loc.getBlockY();
+        this.blockZ = loc.getBlockZ();
+        this.minHeight = world.getMinHeight();
+        this.maxHeight = world.getMaxHeight();
+        this.chunks = captureBlocks ? captureChunks(world, blockX, blockZ) : Map.of();
+        this.nearbyEntities = captureEntities(player);
+
+        long ticks = 0;
+        int kills = 0;
+        try {
+            ticks = player.getStatistic(Statistic.PLAY_ONE_MINUTE);
+            kills = player.getStatistic(Statistic.MOB_KILLS);
+        } catch (IllegalArgumentException e) {
+            Bukkit.getLogger().severe(e.toString());
+        }
+        this.playedBefore = player.hasPlayedBefore();
+        this.ticksPlayed = ticks;
+        this.mobKills = kills;
+        this.health = player.getHealth();
+        this.maxHealth = player.getMaxHealth();
+        this.foodLevel = player.getFoodLevel();
+
+        List<ItemSummary> armorItems = new ArrayList<>();
+        for (ItemStack item : player.getInventory().getArmorContents()) {
+            if (item != null && item.getType() != Material.AIR) {
+                armorItems.add(summarize(item));
+            }
+        }
+        this.armor = List.copyOf(armorItems);
+
+        ItemStack hand = player.getInventory().getItemInMainHand();
+        this.heldItem = hand.getType() != Material.AIR ? summarize(hand) : null;
+
+        this.mmoCore = Bukkit.getPluginManager().isPluginEnabled("MMOCore") ? captureMMOCore(player) : null;
+    }
+
+    /**
+     * Must be called on the main thread.
+     */
+    public static ContextSnapshot capture(Player player) {
+        return new ContextSnapshot(player, true);
+    }
+
+    /**
+     * Must be called on the main thread. Chunks can be skipped when the surroundings were described recently.
+     */
+    public static ContextSnapshot capture(Player player, boolean captureBlocks) {
+        return new ContextSnapshot(player, captureBlocks);
+    }
+
+    /**
+     * Block type from the captured chunks, or VOID_AIR outside the captured area.
+     */
+    public Material getBlockType(int x, int y, int z) {
+        if (y < minHeight || y >= maxHeight) return Material.VOID_AIR;
+        ChunkSnapshot chunk = getChunk(x >> 4, z >> 4);
+        return chunk != null ? chunk.getBlockType(x & 15, y, z & 15) : Material.VOID_AIR;
+    }
+
+    public ChunkSnapshot getChunk(int chunkX, int chunkZ) {
+        return chunks.get(chunkKey(chunkX, chunkZ));
+    }
+
+    public boolean hasBlocks() {
+        return !chunks.isEmpty();
+    }
+
+    public boolean isMMOCoreInstalled() {
+        return mmoCore != null;
+    }
+
+    private static Map<Long, ChunkSnapshot> captureChunks(World world, int x, int z) {
+        Map<Long, ChunkSnapshot> captured = new HashMap<>();
+        for (int cx = (x - SCAN_RADIUS) >> 4; cx <= (x + SCAN_RADIUS) >> 4; cx++) {
+            for (int cz = (z - SCAN_RADIUS) >> 4; cz <= (z + SCAN_RADIUS) >> 4; cz++) {
+                // Never load chunks just to describe them
+                if (world.isChunkLoaded(cx, cz)) {
+                    // The heightmap lets the roof check stop at the highest block instead of the build limit
+                    captured.put(chunkKey(cx, cz), world.getChunkAt(cx, cz).getChunkSnapshot(true, false, false));
+                }
+            }
+        }
+        return Collections.unmodifiableMap(captured);
+    }
+
+    private static List<EntitySummary> captureEntities(Player player) {
+        List<EntitySummary> entities = new ArrayList<>();
+        for (Entity entity : player.getNearbyEntities(ENTITY_RADIUS, ENTITY_RADIUS, ENTITY_RADIUS)) {
+            EntityCategory category;
+            if (entity instanceof Monster) {
+                category = EntityCategory.HOSTILE;
+            } else if (entity instanceof Animals || entity instanceof WaterMob || entity instanceof Golem) {
+                category = EntityCategory.PEACEFUL;
+            } else {
+                category = EntityCategory.OTHER;
+            }
+            entities.add(new EntitySummary(entity.getType(), category));
+        }
+        return List.copyOf(entities);
+    }
+
+    private static ItemSummary summarize(ItemStack item) {
+        boolean enchanted = item.hasItemMeta() && item.getItemMeta().hasEnchants();
+        return new ItemSummary(item.getType(), item.getDurability(), enchanted);
+    }
+
+    private static MMOCoreSummary captureMMOCore(Player player) {
+        PlayerData playerData = PlayerData.get(player);
+        PlayerClass playerClass = playerData.getProfess();
+        return new MMOCoreSummary(playerClass != null ? playerClass.getName() : null,
+                playerData.getLevel(), playerData.getParty() != null);
+    }
+
+    static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
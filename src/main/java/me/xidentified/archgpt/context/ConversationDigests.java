@@ -0,0 +1,222 @@
+package me.xidentified.archgpt.context;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import me.xidentified.archgpt.ArchGPT;
+import me.xidentified.archgpt.storage.dao.ConversationDAO;
+import me.xidentified.archgpt.storage.model.Conversation;
+import me.xidentified.archgpt.storage.model.ConversationDigest;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Keeps a {@link RollingDigest} per player/NPC pair in memory, updated on every saved NPC line and written back to
+ * conversation_digests in batches. Looking up a pair's summary while chatting is a map read; pairs that aren't in
+ * memory yet are loaded on the worker pool, together with their rollup, so the chat path never queries the database.
+ */
+public class ConversationDigests {
+    private static final long TICKS_PER_SECOND = 20L;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private record Key(UUID playerUUID, String npcName) {}
+
+    // What's known about a pair: its digest, empty if nothing was said, and the rollup of its expired lines
+    private record PairMemory(RollingDigest digest, String rollup) {}
+
+    /**
+     * A pair's memory at one point in time. The summary is empty when nothing was said within the memory window.
+     */
+    public record Snapshot(String summary, String rollup) {}
+
+    private final ArchGPT plugin;
+    private final Set<String> stopWords;
+    private final Cache<Key, PairMemory> pairs;
+    private final Map<Key, RollingDigest> dirty = new ConcurrentHashMap<>();
+    private final Map<Key, Boolean> loading = new ConcurrentHashMap<>();
+    // Lines still being folded in, waited for on close. Guarded by itself together with closed
+    private final Set<CompletableFuture<Void>> pendingAdds = ConcurrentHashMap.newKeySet();
+    private boolean closed;
+    private BukkitTask flushTask;
+
+    public ConversationDigests(ArchGPT plugin, Set<String> stopWords, int maxPairs, long expireAfterAccessMinutes) {
+        this.plugin = plugin;
+        this.stopWords = stopWords;
+        this.pairs = CacheBuilder.newBuilder()
+                .maximumSize(maxPairs)
+                .expireAfterAccess(expireAfterAccessMinutes, TimeUnit.MINUTES)
+                .build();
+    }
+
+    public void start() {
+        long intervalTicks = Math.max(1, plugin.getConfigHandler().getDigestFlushIntervalSeconds()) * TICKS_PER_SECOND;
+        flushTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::flush, intervalTicks, intervalTicks);
+    }
+
+    /**
+     * Stops taking lines, waits for the ones already handed to the worker pool and writes the digests that changed
+     * since the last flush. Called before the worker pool shuts down and storage closes.
+     */
+    public void close() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        CompletableFuture<?>[] adds;
+        synchronized (pendingAdds) {
+            closed = true;
+            adds = pendingAdds.toArray(new CompletableFuture<?>[0]);
+        }
+        try {
+            CompletableFuture.allOf(adds).get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            plugin.getLogger().warning("Saving memory digests without the " + pendingAdds.size() + " lines still being added");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Each add logs its own failure
+        }
+        flush();
+    }
+
+    /**
+     * The pair's memory if it is loaded, or null while it is still being read. Older digests than the cutoff count
+     * as nothing said within the window.
+     */
+    public Snapshot get(UUID playerUUID, String npcName, long cutoffTimestamp) {
+        Key key = new Key(playerUUID, npcName);
+        PairMemory memory = pairs.getIfPresent(key);
+        if (memory == null) {
+            load(key);
+            return null;
+        }
+        RollingDigest digest = memory.digest();
+        boolean recent = digest.getUpdatedAt() >= cutoffTimestamp;
+        return new Snapshot(recent ? digest.getSummary() : "", memory.rollup());
+    }
+
+    // Loads a pair ahead of its first lookup
+    public void preload(UUID playerUUID, String npcName) {
+        Key key = new Key(playerUUID, npcName);
+        if (pairs.getIfPresent(key) == null) {
+            load(key);
+        }
+    }
+
+    /**
+     * Folds a saved NPC line into its pair's digest, off the calling thread since the pair may need to be read first.
+     * The cache loads each pair once, so concurrent lines for a new pair all land in the same digest.
+     */
+    public void add(Conversation conversation) {
+        if (!conversation.isFromNPC()) return;
+        Key key = new Key(conversation.getPlayerUUID(), conversation.getNpcName());
+        synchronized (pendingAdds) {
+            if (closed) return;
+            CompletableFuture<Void> add = CompletableFuture.runAsync(() -> {
+                try {
+                    RollingDigest digest = pairs.get(key, () -> read(key)).digest();
+                    // Skipped if the pair was just built from saved lines that already include it
+                    if (digest.addLineIfNewer(conversation.getMessage(), conversation.getTimestamp(), stopWords)) {
+                        dirty.put(key, digest);
+                    }
+                } catch (ExecutionException | RuntimeException e) {
+                    plugin.getLogger().warning("Could not update the memory of " + key.npcName() + ": " + e.getMessage());
+                }
+            }, plugin.getAsyncExecutor());
+            pendingAdds.add(add);
+            add.whenComplete((result, ex) -> pendingAdds.remove(add));
+        }
+    }
+
+    public void invalidateNpc(String npcName) {
+        pairs.asMap().keySet().removeIf(key -> key.npcName().equals(npcName));
+        dirty.keySet().removeIf(key -> key.npcName().equals(npcName));
+    }
+
+    public void invalidateAll() {
+        pairs.invalidateAll();
+        dirty.clear();
+    }
+
+    private void load(Key key) {
+        if (loading.putIfAbsent(key, Boolean.TRUE) != null) return;
+        plugin.getAsyncExecutor().execute(() -> {
+            try {
+                pairs.get(key, () -> read(key));
+            } catch (ExecutionException | RuntimeException e) {
+                plugin.getLogger().warning("Could not load the memory of " + key.npcName() + ": " + e.getMessage());
+            } finally {
+                loading.remove(key);
+            }
+        });
+    }
+
+    private PairMemory read(Key key) {
+        ConversationDAO conversationDAO = plugin.getConversationDAO();
+        ConversationDigest stored = conversationDAO.getConversationDigest(key.playerUUID(), key.npcName());
+        RollingDigest digest = null;
+        if (stored != null) {
+            try {
+                digest = RollingDigest.fromJson(stored.state(), stopWords);
+            } catch (RuntimeException e) {
+                plugin.getLogger().warning("Rebuilding an unreadable memory digest for " + key.npcName() + ": " + e.getMessage());
+            }
+        }
+        if (digest == null) {
+            digest = build(key);
+        }
+        return new PairMemory(digest, conversationDAO.getConversationRollup(key.playerUUID(), key.npcName()));
+    }
+
+    // Pairs that talked before digests existed, or whose digest was lost, get one from their saved lines
+    private RollingDigest build(Key key) {
+        RollingDigest digest = new RollingDigest();
+        List<Conversation> conversations = new ArrayList<>(plugin.getConversationDAO().getConversations(
+                key.playerUUID(), key.npcName(), plugin.getConfigHandler().getNpcMemoryDuration()));
+        // Saved newest first, folded in oldest first
+        Collections.reverse(conversations);
+        for (Conversation conversation : conversations) {
+            if (conversation.isFromNPC()) {
+                digest.addLineIfNewer(conversation.getMessage(), conversation.getTimestamp(), stopWords);
+            }
+        }
+        if (digest.getUpdatedAt() > 0) {
+            dirty.put(key, digest);
+            plugin.debugLog("Built the memory digest of " + key.npcName() + " from saved lines");
+        }
+        return digest;
+    }
+
+    private synchronized void flush() {
+        if (dirty.isEmpty()) return;
+
+        Map<Key, RollingDigest> flushed = new HashMap<>();
+        List<ConversationDigest> batch = new ArrayList<>();
+        for (Key key : List.copyOf(dirty.keySet())) {
+            RollingDigest digest = dirty.remove(key);
+            if (digest != null) {
+                flushed.put(key, digest);
+                batch.add(new ConversationDigest(key.playerUUID(), key.npcName(), digest.toJson(), digest.getUpdatedAt()));
+            }
+        }
+        try {
+            plugin.getConversationDAO().saveConversationDigests(batch);
+            plugin.debugLog("Saved " + batch.size() + " conversation digests");
+        } catch (RuntimeException e) {
+            // Tried again with the next flush, unless the pair changed and is queued already
+            flushed.forEach(dirty::putIfAbsent);
+            plugin.getLogger().warning("Could not save " + batch.size() + " conversation digests: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package me.xidentified.archgpt.context;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes the surroundings of a player from chunk snapshots. Block counts go into a histogram indexed by
+ * material ordinal, the roof check is bounded by the chunk heightmap, and results are remembered per
+ * 8x8x8 block region for a few seconds since players rarely move far during a conversation.
+ */
+public class EnvironmentScanner {
+    private static final int REGION_SHIFT = 3;
+    private static final Material[] MATERIALS = Material.values();
+    private static final boolean[] BRICK = new boolean[MATERIALS.length];
+    private static final boolean[] WOODEN = new boolean[MATERIALS.length];
+
+    static {
+        for (Material material : MATERIALS) {
+            String name = material.name();
+            BRICK[material.ordinal()] = name.contains("BRICK");
+            WOODEN[material.ordinal()] = name.contains("WOOD") || name.contains("LOG");
+        }
+    }
+
+    private record RegionKey(String worldName, int x, int y, int z) {}
+
+    private record Memo(String description, long createdAt) {}
+
+    private final long memoMillis;
+    private final Cache<RegionKey, Memo> locationMemo;
+
+    public EnvironmentScanner(long memoMillis) {
+        this.memoMillis = memoMillis;
+        this.locationMemo = CacheBuilder.newBuilder()
+                .maximumSize(1024)
+                .expireAfterWrite(memoMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Whether the region has a recent enough description that a new snapshot can skip copying chunks.
+     * Only the first half of the memo lifetime counts, so the entry is still there when the text is built.
+     */
+    public boolean isMemoized(String worldName, int blockX, int blockY, int blockZ) {
+        Memo memo = locationMemo.getIfPresent(regionKey(worldName, blockX, blockY, blockZ));
+        return memo != null && System.currentTimeMillis() - memo.createdAt() < memoMillis / 2;
+    }
+
+    public String describeLocation(ContextSnapshot snapshot) {
+        RegionKey key = regionKey(snapshot.getWorldName(), snapshot.getBlockX(), snapshot.getBlockY(), snapshot.getBlockZ());
+        Memo memo = locationMemo.getIfPresent(key);
+        if (memo != null) {
+            return memo.description();
+        }
+
+        String description = scan(snapshot);
+        if (snapshot.hasBlocks()) {
+            locationMemo.put(key, new Memo(description, System.currentTimeMillis()));
+        }
+        return description;
+    }
+
+    public void clear() {
+        locationMemo.invalidateAll();
+    }
+
+    private String scan(ContextSnapshot snapshot) {
+        int blockX = snapshot.getBlockX();
+        int blockY = snapshot.getBlockY();
+        int blockZ = snapshot.getBlockZ();
+
+        // Near water check
+        if (snapshot.getBlockType(blockX, blockY, blockZ) == Material.WATER) {
+            return "beside the gentle ripples of a serene body of water, the reflection of the sky dancing on its surface.";
+        }
+
+        // Check surroundings
+        int radius = ContextSnapshot.SCAN_RADIUS;
+        int[] materialCounts = new int[MATERIALS.length];
+        int minY = Math.max(blockY - radius, snapshot.getMinHeight());
+        int maxY = Math.min(blockY + radius, snapshot.getMaxHeight() - 1);
+
+        for (int x = blockX - radius; x <= blockX + radius; x++) {
+            for (int z = blockZ - radius; z <= blockZ + radius; z++) {
+                ChunkSnapshot chunk = snapshot.getChunk(x >> 4, z >> 4);
+                if (chunk == null) continue;
+                for (int y = minY; y <= maxY; y++) {
+                    materialCounts[chunk.getBlockType(x & 15, y, z & 15).ordinal()]++;
+                }
+            }
+        }
+
+        int distinctMaterials = 0;
+        boolean hasBrick = false, hasWood = false;
+        for (int ordinal = 0; ordinal < materialCounts.length; ordinal++) {
+            if (materialCounts[ordinal] == 0) continue;
+            distinctMaterials++;
+            hasBrick |= BRICK[ordinal];
+            hasWood |= WOODEN[ordinal];
+        }
+
+        // Determine environment characteristics, nothing above the heightmap can cover the player
+        boolean isOutside = true, isUnderLeaves = false, isUnderGlass = false;
+        ChunkSnapshot playerChunk = snapshot.getChunk(blockX >> 4, blockZ >> 4);
+        if (playerChunk != null) {
+            int highestY = playerChunk.getHighestBlockYAt(blockX & 15, blockZ & 15);
+            Material firstCover = null;
+            for (int y = blockY + 1; y <= Math.min(highestY, snapshot.getMaxHeight() - 1); y++) {
+                Material aboveMaterial = playerChunk.getBlockType(blockX & 15, y, blockZ & 15);
+                if (aboveMaterial.isAir()) continue;
+                if (firstCover == null) firstCover = aboveMaterial;
+                if (aboveMaterial.isOccluding()) {
+                    isOutside = false;
+                    break;
+                }
+            }
+            isUnderLeaves = firstCover != null && firstCover.name().contains("LEAVES");
+            isUnderGlass = firstCover != null && firstCover.name().contains("GLASS");
+        }
+
+        // Describing the environment
+        if (isOutside) {
+            return isUnderLeaves ? "outside under the shade of trees" : "outside in the open";
+        } else if (isUnderGlass) {
+            return "within a structure of glass, surrounded by walls that shimmer like a crystal palace under the sun";
+        } else if (hasBrick) {
+            // Specific building types
+            return "ensconced within the sturdy walls of a brick edifice, the air echoing with tales of old.";
+        } else if (hasWood) {
+            return "inside a quaint wooden abode, the scent of pine lingering in the air.";
+        } else if (blockY < 60 && materialCounts[Material.STONE.ordinal()] > distinctMaterials / 2) {
+            return "deep within the bowels of a cavern, where the rocks whisper secrets of the earth.";
+        } else {
+            return "in a man-made structure, where the hand of creation has molded the surroundings.";
+        }
+    }
+
+    private static RegionKey regionKey(String worldName, int blockX, int blockY, int blockZ) {
+        return new RegionKey(worldName, blockX >> REGION_SHIFT, blockY >> REGION_SHIFT, blockZ >> REGION_SHIFT);
+    }
+}
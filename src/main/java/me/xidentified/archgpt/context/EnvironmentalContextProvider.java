@@ -1,28 +1,20 @@
 package me.xidentified.archgpt.context;
 
 import me.xidentified.archgpt.ArchGPT;
-import org.bukkit.Location;
-import org.bukkit.Material;
-import org.bukkit.World;
 import org.bukkit.block.Biome;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.entity.*;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class EnvironmentalContextProvider {
     private final ArchGPT plugin;
-    private final Player player;
-    private final ConcurrentHashMap<String, ConcurrentHashMap<String, String>> pointsOfInterest; // WorldName, POI Name, Location
+    private final ContextSnapshot snapshot;
+    private final EnvironmentScanner environmentScanner;
 
-    public EnvironmentalContextProvider(ArchGPT plugin, Player player) {
+    public EnvironmentalContextProvider(ArchGPT plugin, ContextSnapshot snapshot, EnvironmentScanner environmentScanner) {
         this.plugin = plugin;
-        this.player = player;
-        this.pointsOfInterest = new ConcurrentHashMap<>();
-        loadPointsOfInterest();
+        this.snapshot = snapshot;
+        this.environmentScanner = environmentScanner;
     }
 
     public String getFormattedContext(String npcPrompt) {
@@ -39,31 +31,28 @@ public class EnvironmentalContextProvider {
                 npcPrompt, timeOfDay, weather, biome, entityContext, npcLocationContext, poiContext);
     }
 
-    private void loadPointsOfInterest() {
-        FileConfiguration config = plugin.getConfig();
-        ConfigurationSection poiSection = config.getConfigurationSection("points_of_interest");
-        if (poiSection != null) {
-            poiSection.getKeys(false).forEach(worldName -> {
-                ConcurrentHashMap<String, String> worldPOIs = new ConcurrentHashMap<>();
-                ConfigurationSection worldSection = poiSection.getConfigurationSection(worldName);
-                if (worldSection != null) {
-                    worldSection.getKeys(false).forEach(poiName -> {
-                        String location = worldSection.getString(poiName);
-                        if (location != null) worldPOIs.put(poiName, location);
-                    });
-                    pointsOfInterest.put(worldName, worldPOIs);
-                }
-            });
-        }
+    // Time, weather and biome only, the same for everyone nearby at the moment
+    public String getSharedContext(String npcPrompt) {
+        return String.format("%s. The hour is %s, and %s. You find yourself in %s.",
+                npcPrompt, getTimeOfDay(), getWeather(), getBiome());
     }
 
+    // Only the closest landmarks, so the prompt stays small however many the server has
     public String getPointsOfInterestContext() {
         StringBuilder poiContext = new StringBuilder();
-        ConcurrentHashMap<String, String> worldPOIs = pointsOfInterest.get(player.getWorld().getName());
+        List<PoiRegistry.NearbyPoi> nearbyPOIs = plugin.getPoiRegistry().nearest(snapshot.getWorldName(),
+                snapshot.getBlockX(), snapshot.getBlockZ());
 
-        if (worldPOIs != null && !worldPOIs.isEmpty()) {
+        if (!nearbyPOIs.isEmpty()) {
             poiContext.append("In this world, landmarks such as ");
-            worldPOIs.forEach((poiName, location) -> poiContext.append(poiName).append(" at ").append(location).append(", "));
+            for (PoiRegistry.NearbyPoi poi : nearbyPOIs) {
+                poiContext.append(poi.name()).append(" at ").append(poi.x()).append(",").append(poi.y()).append(",").append(poi.z());
+                if (poi.distance() < 1) {
+                    poiContext.append(" (right here), ");
+                } else {
+                    poiContext.append(" (").append(Math.round(poi.distance())).append(" blocks to the ").append(poi.direction()).append("), ");
+                }
+            }
             // Remove the last comma and space
             poiContext.setLength(poiContext.length() - 2);
             poiContext.append(", stand as testaments to the world's rich history and culture.");
@@ -76,7 +65,7 @@ public class EnvironmentalContextProvider {
 
 
     public String getTimeOfDay() {
-        long time = player.getWorld().getTime();
+        long time = snapshot.getWorldTime();
 
         // Align with Minecraft's day/night cycle as per the wiki
         return time < 1000 ? "early morning, just after sunrise" :
@@ -107,11 +96,10 @@ public class EnvironmentalContextProvider {
     }
 
     public String getWeather() {
-        World world = player.getWorld();
-        boolean isRaining = world.hasStorm();
-        boolean isThundering = world.isThundering();
+        boolean isRaining = snapshot.isStorm();
+        boolean isThundering = snapshot.isThundering();
 
-        Biome currentBiome = player.getLocation().getBlock().getBiome();
+        Biome currentBiome = snapshot.getBiome();
         boolean isSnowing = isRaining && isSnowyBiome(currentBiome);
 
         if (isThundering) {
@@ -126,73 +114,19 @@ public class EnvironmentalContextProvider {
     }
 
     public String getLocationContext() {
-        Location loc = player.getLocation();
-        World world = loc.getWorld();
-
-        // Near water check
-        if (world.getBlockAt(loc).getType() == Material.WATER) {
-            return "beside the gentle ripples of a serene body of water, the reflection of the sky dancing on its surface.";
-        }
-
-        // Check surroundings
-        int radius = 5;
-        Map<Material, Integer> materialCounts = new HashMap<>();
-
-        for (int x = -radius; x <= radius; x++) {
-            for (int y = -radius; y <= radius; y++) {
-                for (int z = -radius; z <= radius; z++) {
-                    Material mat = world.getBlockAt(loc.clone().add(x, y, z)).getType();
-                    materialCounts.put(mat, materialCounts.getOrDefault(mat, 0) + 1);
-                }
-            }
-        }
-
-        // Determine environment characteristics
-        boolean isOutside = true, isUnderLeaves = false, isUnderGlass = false;
-        for (int y = loc.getBlockY() + 1; y <= world.getMaxHeight(); y++) {
-            Material aboveMaterial = world.getBlockAt(loc.getBlockX(), y, loc.getBlockZ()).getType();
-            isUnderLeaves = aboveMaterial.name().contains("LEAVES");
-            isUnderGlass = aboveMaterial.name().contains("GLASS");
-            if (aboveMaterial.isOccluding()) {
-                isOutside = false;
-                break;
-            }
-        }
-
-        // Describing the environment
-        String locationDescription; // unknown location
-        if (isOutside) {
-            locationDescription = isUnderLeaves ? "outside under the shade of trees" : "outside in the open";
-        } else if (isUnderGlass) {
-            locationDescription = "within a structure of glass, surrounded by walls that shimmer like a crystal palace under the sun";
-        } else {
-            // Specific building types
-            if (materialCounts.keySet().stream().anyMatch(mat -> mat.name().contains("BRICK"))) {
-                locationDescription = "ensconced within the sturdy walls of a brick edifice, the air echoing with tales of old.";
-            } else if (materialCounts.keySet().stream().anyMatch(mat -> mat.name().contains("WOOD") || mat.name().contains("LOG"))) {
-                locationDescription = "inside a quaint wooden abode, the scent of pine lingering in the air.";
-            } else if (loc.getBlockY() < 60 && materialCounts.getOrDefault(Material.STONE, 0) > materialCounts.size() / 2) {
-                locationDescription = "deep within the bowels of a cavern, where the rocks whisper secrets of the earth.";
-            } else {
-                locationDescription = "in a man-made structure, where the hand of creation has molded the surroundings.";
-            }
-        }
-
-        return locationDescription;
+        return environmentScanner.describeLocation(snapshot);
     }
 
     public String getNearbyEntitiesContext() {
-        List<Entity> nearbyEntities = player.getNearbyEntities(10, 10, 10);
-
         // Maps to hold counts of different types of entities
         Map<String, Integer> hostileMobCounts = new HashMap<>();
         Map<String, Integer> peacefulMobCounts = new HashMap<>();
 
-        for (Entity entity : nearbyEntities) {
-            String entityName = entity.getType().name();
-            if (entity instanceof Monster) {
+        for (ContextSnapshot.EntitySummary entity : snapshot.getNearbyEntities()) {
+            String entityName = entity.type().name();
+            if (entity.category() == ContextSnapshot.EntityCategory.HOSTILE) {
                 hostileMobCounts.put(entityName, hostileMobCounts.getOrDefault(entityName, 0) + 1);
-            } else if (entity instanceof Animals || entity instanceof WaterMob || entity instanceof Golem) {
+            } else if (entity.category() == ContextSnapshot.EntityCategory.PEACEFUL) {
                 peacefulMobCounts.put(entityName, peacefulMobCounts.getOrDefault(entityName, 0) + 1);
             }
         }
@@ -238,7 +172,7 @@ public class EnvironmentalContextProvider {
     }
 
     public String getBiome() {
-    Biome biome = player.getLocation().getBlock().getBiome();
+    Biome biome = snapshot.getBiome();
     
     try {
         return switch (biome) {
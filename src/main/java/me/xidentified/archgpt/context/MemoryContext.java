@@ -2,20 +2,27 @@ package me.xidentified.archgpt.context;
 
 import lombok.Getter;
 import me.xidentified.archgpt.ArchGPT;
+import me.xidentified.archgpt.ArchGPTConfig;
 import me.xidentified.archgpt.storage.model.Conversation;
+import me.xidentified.archgpt.utils.ArchGPTConstants;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.regex.Matcher;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Getter
 public class MemoryContext {
     private final ArchGPT plugin;
     private final Queue<String> recentConversations; // Store recent conversations
     private final Pattern inquiryPattern;
+    private final MemoryIndex memoryIndex; // Recall of past NPC lines per player/NPC pair
+    private final SemanticMemoryIndex semanticIndex; // Null when semantic recall is disabled
+    private final ConversationDigests digests; // Running summary per player/NPC pair
     private static final Set<String> STOP_WORDS = Set.of( // Common words to be excluded
             "i", "me", "my", "myself", "we", "our", "ours", "ourselves", "you", "your", "yours",
             "yourself", "yourselves", "he", "him", "his", "himself", "she", "her", "hers", "herself",
@@ -36,19 +43,109 @@ public class MemoryContext {
         this.plugin = plugin;
         String inquiryKeywords = "earlier|before|previously|past|you said";
         inquiryPattern = Pattern.compile("\\b(" + inquiryKeywords + ")\\b", Pattern.CASE_INSENSITIVE);
+        ArchGPTConfig config = plugin.getConfigHandler();
+        this.memoryIndex = new MemoryIndex(plugin.getLogger(), plugin.getAsyncExecutor(), STOP_WORDS,
+                config.getMemoryIndexMaxPairs(), ArchGPTConstants.CACHE_EXPIRATION_MINUTES);
+        this.semanticIndex = config.isSemanticMemoryEnabled()
+                ? new SemanticMemoryIndex(plugin.getLogger(), plugin.getAsyncExecutor(), STOP_WORDS,
+                        config.getSemanticMemoryDimensions(), config.getSemanticMemoryMaxLines(),
+                        config.getMemoryIndexMaxPairs(), ArchGPTConstants.CACHE_EXPIRATION_MINUTES)
+                : null;
+        this.digests = new ConversationDigests(plugin, STOP_WORDS, config.getMemoryIndexMaxPairs(),
+                ArchGPTConstants.CACHE_EXPIRATION_MINUTES);
     }
 
-    // Returns past conversation summary IF player is inquiring about them
+    /**
+     * Loads everything the pair's memory lookups read, on the worker pool, so the first message of a conversation
+     * finds it in memory. The saved lines are read once and shared by both indexes.
+     */
+    public CompletableFuture<Void> prefetch(UUID playerUUID, String npcName) {
+        digests.preload(playerUUID, npcName);
+        return CompletableFuture.runAsync(() -> {
+            List<Conversation> conversations = loadConversations(playerUUID, npcName);
+            memoryIndex.preload(playerUUID, npcName, () -> conversations);
+            if (semanticIndex != null) {
+                semanticIndex.preload(playerUUID, npcName, () -> conversations);
+            }
+        }, plugin.getAsyncExecutor());
+    }
+
+    private List<Conversation> loadConversations(UUID playerUUID, String npcName) {
+        return plugin.getConversationDAO().getConversations(playerUUID, npcName, plugin.getConfigHandler().getNpcMemoryDuration());
+    }
+
+    /**
+     * Past NPC lines close in meaning to the player's message, looked up in memory on every turn. Null when
+     * nothing is close enough, or when the pair's lines are still being loaded.
+     */
+    public String getRelevantMemories(UUID playerUUID, String npcName, String playerMessage) {
+        if (semanticIndex == null) return null;
+
+        ArchGPTConfig config = plugin.getConfigHandler();
+        Duration memoryDuration = config.getNpcMemoryDuration();
+        List<String> memories = semanticIndex.search(playerUUID, npcName, playerMessage,
+                config.getSemanticMemoryTopK(), config.getSemanticMemoryMinSimilarity(),
+                System.currentTimeMillis() - memoryDuration.toMillis(), config.getSemanticMemoryBudgetMicros() * 1000L,
+                () -> loadConversations(playerUUID, npcName));
+        return memories.isEmpty() ? null : String.join(" ", memories);
+    }
+
+    // A saved NPC line becomes recallable right away
+    public void addToIndexes(Conversation conversation) {
+        memoryIndex.add(conversation);
+        digests.add(conversation);
+        if (semanticIndex != null) {
+            semanticIndex.add(conversation);
+        }
+    }
+
+    public void clearIndexesForNpc(String npcName) {
+        memoryIndex.invalidateNpc(npcName);
+        digests.invalidateNpc(npcName);
+        if (semanticIndex != null) {
+            semanticIndex.invalidateNpc(npcName);
+        }
+    }
+
+    public void clearAllIndexes() {
+        memoryIndex.invalidateAll();
+        digests.invalidateAll();
+        if (semanticIndex != null) {
+            semanticIndex.invalidateAll();
+        }
+    }
+
+    /**
+     * Returns past conversation summary IF player is inquiring about them. Only reads what is already in memory;
+     * a pair that hasn't been loaded yet is loaded in the background and answers with null this time.
+     */
     public String getConversationSummary(Component playerMessage, UUID playerUUID, String npcName) {
         if (isAskingAboutPastConversation(playerMessage)) {
-            List<Conversation> pastConversations = plugin.getConversationDAO().getConversations(playerUUID, npcName, plugin.getConfigHandler().getNpcMemoryDuration());
+            String message = PlainTextComponentSerializer.plainText().serialize(playerMessage);
+            Duration memoryDuration = plugin.getConfigHandler().getNpcMemoryDuration();
+            long cutoffTimestamp = System.currentTimeMillis() - memoryDuration.toMillis();
+
+            // The lines that best match what the player is asking about
+            List<String> recalled = memoryIndex.recall(playerUUID, npcName, message,
+                    plugin.getConfigHandler().getMemoryRecallTopK(), cutoffTimestamp,
+                    () -> loadConversations(playerUUID, npcName));
+            if (!recalled.isEmpty()) {
+                return "Here's what you remember telling the player before that fits their question: " + String.join(" ", recalled);
+            }
 
-            if (pastConversations.isEmpty()) {
-                return "We haven't spoken before.";
-            } else {
-                String conversationSummary = summarizeConversations(pastConversations);
-                return "Here's a summary of your previous conversation with " + npcName + ": " + conversationSummary;
+            // Nothing matched, fall back to the gist of everything said, kept up to date as NPCs reply
+            ConversationDigests.Snapshot snapshot = digests.get(playerUUID, npcName, cutoffTimestamp);
+            if (snapshot == null) return null;
+            if (!snapshot.summary().isEmpty()) {
+                return "Here's a summary of your previous conversation with " + npcName + ": " + snapshot.summary();
             }
+
+            // Older lines may have been rolled up by the retention job
+            String rollup = snapshot.rollup();
+            if (rollup != null && !rollup.isEmpty()) {
+                return "It's been a while, but here's what you remember about " + npcName + ": " + rollup;
+            }
+            return "We haven't spoken before.";
         }
         return null;
     }
@@ -59,64 +156,48 @@ public class MemoryContext {
     }
 
     public String summarizeConversations(List<Conversation> conversations) {
-        List<String> conversationTexts = conversations.stream()
+        return summarizeTexts(conversations.stream()
                 .map(Conversation::getMessage)
-                .collect(Collectors.toList());
-
-        Set<String> topKeywords = extractKeywords(conversationTexts);
-        String keywordPattern = topKeywords.stream()
-                .map(Pattern::quote)
-                .collect(Collectors.joining("|"));
-        Pattern sentencePattern = Pattern.compile("[^.!?]*\\b(" + keywordPattern + ")\\b[^.!?]*[.!?]");
-
-        PriorityQueue<String> summarySentences = new PriorityQueue<>(
-                Comparator.comparingInt((String s) -> -countKeywords(s, topKeywords))
-        );
-
-        for (String conversation : conversationTexts) {
-            Matcher matcher = sentencePattern.matcher(conversation);
-            while (matcher.find()) {
-                summarySentences.add(matcher.group());
-                if (summarySentences.size() > 3) { // Keep only top 3 sentences
-                    summarySentences.poll();
-                }
-            }
-        }
-
-        // Convert the priority queue to a list and reverse it to get the sentences in the original order
-        List<String> sortedSentences = new ArrayList<>(summarySentences);
-        Collections.reverse(sortedSentences);
-
-        return String.join(" ", sortedSentences);
+                .collect(Collectors.toList()));
     }
 
-    private int countKeywords(String sentence, Set<String> keywords) {
-        String[] words = sentence.toLowerCase().split("\\s+");
-        int count = 0;
-        for (String word : words) {
-            if (keywords.contains(word)) {
-                count++;
-            }
-        }
-        return count;
-    }
-
-    private Set<String> extractKeywords(List<String> conversationTexts) {
+    // The sentences that share the most keywords with the rest of the texts, each sentence is tokenized only once
+    public String summarizeTexts(List<String> conversationTexts) {
+        List<String> sentences = new ArrayList<>();
+        List<List<String>> sentenceTokens = new ArrayList<>();
         Map<String, Integer> keywordFrequency = new HashMap<>();
         for (String conversation : conversationTexts) {
-            String[] words = conversation.toLowerCase().split("\\s+");
-            for (String word : words) {
-                if (!STOP_WORDS.contains(word)) {
-                    keywordFrequency.put(word, keywordFrequency.getOrDefault(word, 0) + 1);
-                }
+            for (String sentence : MemoryIndex.splitSentences(conversation)) {
+                List<String> tokens = MemoryIndex.tokenize(sentence, STOP_WORDS);
+                sentences.add(sentence);
+                sentenceTokens.add(tokens);
+                tokens.forEach(token -> keywordFrequency.merge(token, 1, Integer::sum));
             }
         }
 
-        return keywordFrequency.entrySet().stream()
+        Set<String> topKeywords = keywordFrequency.entrySet().stream()
                 .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
                 .limit(5) // Adjust the limit as needed
                 .map(Map.Entry::getKey)
                 .collect(Collectors.toSet());
+
+        int[] scores = new int[sentences.size()];
+        for (int i = 0; i < scores.length; i++) {
+            for (String token : sentenceTokens.get(i)) {
+                if (topKeywords.contains(token)) {
+                    scores[i]++;
+                }
+            }
+        }
+
+        // Keep only the top 3 sentences, in their original order
+        return IntStream.range(0, scores.length)
+                .filter(i -> scores[i] > 0)
+                .boxed()
+                .sorted(Comparator.comparingInt((Integer i) -> -scores[i]))
+                .limit(3)
+                .sorted()
+                .map(sentences::get)
+                .collect(Collectors.joining(" "));
     }
 }
-
@@ -0,0 +1,244 @@
+package me.xidentified.archgpt.context;
+
+import me.xidentified.archgpt.storage.model.Conversation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Inverted index over the NPC lines each player/NPC pair has exchanged, used to recall the sentences that best
+ * match what the player is asking about. Lines are tokenized once when they are saved and ranked with BM25, so
+ * recall only touches the postings of the words in the question instead of re-reading the whole memory window.
+ * <p>
+ * Pairs are indexed in the background on first recall, which finds nothing until the pair is ready, and then kept
+ * up to date on every save. Sentences that fall out of the memory window are skipped when ranking and dropped once
+ * they make up half of a pair's index.
+ */
+public class MemoryIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // One sentence with its term counts, terms and counts are parallel arrays
+    private record Sentence(String text, long timestamp, String[] terms, int[] counts, int length) {}
+
+    // Postings are sentence positions, in ascending order since sentences are only ever appended
+    private static final class PairIndex {
+        private final List<Sentence> sentences = new ArrayList<>();
+        private final Map<String, List<Integer>> postings = new HashMap<>();
+        private long totalLength;
+        private long latestTimestamp; // Of the newest line added, sentences of one line share it
+
+        private void add(String text, long timestamp, List<String> tokens) {
+            Map<String, Integer> termCounts = new HashMap<>();
+            int length = 0;
+            for (String term : tokens) {
+                termCounts.merge(term, 1, Integer::sum);
+                length++;
+            }
+            if (length == 0) return;
+
+            String[] terms = new String[termCounts.size()];
+            int[] counts = new int[termCounts.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> termCount : termCounts.entrySet()) {
+                terms[i] = termCount.getKey();
+                counts[i++] = termCount.getValue();
+            }
+
+            int position = sentences.size();
+            sentences.add(new Sentence(text, timestamp, terms, counts, length));
+            for (String term : terms) {
+                postings.computeIfAbsent(term, t -> new ArrayList<>()).add(position);
+            }
+            totalLength += length;
+        }
+
+        // Rebuilds without the sentences older than the cutoff, once they are half of the index
+        private void pruneBefore(long cutoffTimestamp) {
+            int expired = 0;
+            while (expired < sentences.size() && sentences.get(expired).timestamp() < cutoffTimestamp) {
+                expired++;
+            }
+            if (expired == 0 || expired * 2 < sentences.size()) return;
+
+            List<Sentence> live = new ArrayList<>(sentences.subList(expired, sentences.size()));
+            sentences.clear();
+            postings.clear();
+            totalLength = 0;
+            for (Sentence sentence : live) {
+                int position = sentences.size();
+                sentences.add(sentence);
+                for (String term : sentence.terms()) {
+                    postings.computeIfAbsent(term, t -> new ArrayList<>()).add(position);
+                }
+                totalLength += sentence.length();
+            }
+        }
+
+        private int countOf(Sentence sentence, String term) {
+            String[] terms = sentence.terms();
+            for (int i = 0; i < terms.length; i++) {
+                if (terms[i].equals(term)) {
+                    return sentence.counts()[i];
+                }
+            }
+            return 0;
+        }
+    }
+
+    private final Set<String> stopWords;
+    private final MemoryPairCache<PairIndex> indexes;
+
+    public MemoryIndex(Logger logger, Executor loadExecutor, Set<String> stopWords, int maxPairs, long expireAfterAccessMinutes) {
+        this.stopWords = stopWords;
+        this.indexes = new MemoryPairCache<>(logger, loadExecutor, maxPairs, expireAfterAccessMinutes,
+                this::addLine, index -> index.latestTimestamp);
+    }
+
+    /**
+     * The sentences that best match the query, in the order they were said. Sentences older than the cutoff are
+     * left out. The loader reads the pair's saved lines on a worker the first time it is recalled.
+     */
+    public List<String> recall(UUID playerUUID, String npcName, String query, int limit, long cutoffTimestamp,
+                               Supplier<List<Conversation>> loader) {
+        MemoryPairCache.Key key = new MemoryPairCache.Key(playerUUID, npcName);
+        PairIndex index = indexes.getIfPresent(key);
+        if (index == null) {
+            indexes.load(key, loader, PairIndex::new);
+            return Collections.emptyList();
+        }
+        synchronized (index) {
+            index.pruneBefore(cutoffTimestamp);
+            List<Sentence> sentences = index.sentences;
+            if (sentences.isEmpty()) return Collections.emptyList();
+
+            double averageLength = (double) index.totalLength / sentences.size();
+            double[] scores = new double[sentences.size()];
+            boolean matched = false;
+            for (String term : new HashSet<>(tokenize(query, stopWords))) {
+                List<Integer> positions = index.postings.get(term);
+                if (positions == null) continue;
+
+                int documentFrequency = positions.size();
+                double idf = Math.log(1 + (sentences.size() - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                for (int position : positions) {
+                    Sentence sentence = sentences.get(position);
+                    if (sentence.timestamp() < cutoffTimestamp) continue;
+
+                    int count = index.countOf(sentence, term);
+                    double norm = K1 * (1 - B + B * sentence.length() / averageLength);
+                    scores[position] += idf * count * (K1 + 1) / (count + norm);
+                    matched = true;
+                }
+            }
+            if (!matched) return Collections.emptyList();
+
+            return topPositions(scores, limit).stream()
+                    .map(position -> sentences.get(position).text())
+                    .toList();
+        }
+    }
+
+    // Adds a saved NPC line to its pair, if that pair has been indexed already or is being indexed
+    public void add(Conversation conversation) {
+        indexes.add(conversation);
+    }
+
+    public void invalidateNpc(String npcName) {
+        indexes.invalidateNpc(npcName);
+    }
+
+    public void invalidateAll() {
+        indexes.invalidateAll();
+    }
+
+    // Indexes a pair ahead of its first recall
+    public void preload(UUID playerUUID, String npcName, Supplier<List<Conversation>> loader) {
+        MemoryPairCache.Key key = new MemoryPairCache.Key(playerUUID, npcName);
+        if (indexes.getIfPresent(key) == null) {
+            indexes.load(key, loader, PairIndex::new);
+        }
+    }
+
+    private void addLine(PairIndex index, Conversation conversation) {
+        for (String sentence : splitSentences(conversation.getMessage())) {
+            index.add(sentence, conversation.getTimestamp(), tokenize(sentence, stopWords));
+        }
+        index.latestTimestamp = Math.max(index.latestTimestamp, conversation.getTimestamp());
+    }
+
+    // Positions of the highest scores, in ascending position order
+    private static List<Integer> topPositions(double[] scores, int limit) {
+        Integer[] positions = new Integer[scores.length];
+        int candidates = 0;
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] > 0) {
+                positions[candidates++] = i;
+            }
+        }
+        Integer[] ranked = Arrays.copyOf(positions, candidates);
+        Arrays.sort(ranked, (a, b) -> Double.compare(scores[b], scores[a]));
+        List<Integer> top = new ArrayList<>(Arrays.asList(ranked).subList(0, Math.min(limit, ranked.length)));
+        Collections.sort(top);
+        return top;
+    }
+
+    /**
+     * Lowercase words of letters and digits, without stop words. Apostrophes stay inside words, so "don't" is one
+     * term, but are trimmed from their ends.
+     */
+    static List<String> tokenize(String text, Set<String> stopWords) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0, length = text.length(); i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c) || (c == '\'' && word.length() > 0)) {
+                word.append(Character.toLowerCase(c));
+                continue;
+            }
+            while (word.length() > 0 && word.charAt(word.length() - 1) == '\'') {
+                word.setLength(word.length() - 1);
+            }
+            if (word.length() > 0) {
+                String token = word.toString();
+                if (!stopWords.contains(token)) {
+                    tokens.add(token);
+                }
+                word.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    // Sentences end at '.', '!' or '?', text after the last one counts as a sentence too
+    static List<String> splitSentences(String text) {
+        List<String> sentences = new ArrayList<>();
+        int start = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if ((c == '.' || c == '!' || c == '?') && (i + 1 == length || Character.isWhitespace(text.charAt(i + 1)))) {
+                addSentence(sentences, text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        addSentence(sentences, text.substring(start));
+        return sentences;
+    }
+
+    private static void addSentence(List<String> sentences, String sentence) {
+        String trimmed = sentence.trim();
+        if (!trimmed.isEmpty()) {
+            sentences.add(trimmed);
+        }
+    }
+}
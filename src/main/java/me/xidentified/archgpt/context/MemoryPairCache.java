@@ -0,0 +1,128 @@
+package me.xidentified.archgpt.context;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import me.xidentified.archgpt.storage.model.Conversation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.logging.Logger;
+
+/**
+ * The per player/NPC pair structures of the memory indexes, loaded from the saved lines in the background and kept
+ * up to date as lines are saved. Lines saved while a pair loads are held back and added once it is cached.
+ * Invalidating a pair also discards a load still running for it, which may have read lines that are gone.
+ */
+final class MemoryPairCache<V> {
+    record Key(UUID playerUUID, String npcName) {}
+
+    private final Logger logger;
+    private final Executor loadExecutor;
+    private final BiConsumer<V, Conversation> addLine;
+    private final ToLongFunction<V> latestTimestamp;
+    private final Cache<Key, V> pairs;
+    // Pairs being loaded, with the lines saved meanwhile. Compared by identity, a newer load of the pair has its own
+    private final Map<Key, List<Conversation>> loading = new ConcurrentHashMap<>();
+
+    MemoryPairCache(Logger logger, Executor loadExecutor, int maxPairs, long expireAfterAccessMinutes,
+                    BiConsumer<V, Conversation> addLine, ToLongFunction<V> latestTimestamp) {
+        this.logger = logger;
+        this.loadExecutor = loadExecutor;
+        this.addLine = addLine;
+        this.latestTimestamp = latestTimestamp;
+        this.pairs = CacheBuilder.newBuilder()
+                .maximumSize(maxPairs)
+                .expireAfterAccess(expireAfterAccessMinutes, TimeUnit.MINUTES)
+                .build();
+    }
+
+    V getIfPresent(Key key) {
+        return pairs.getIfPresent(key);
+    }
+
+    /**
+     * Loads the pair on the load executor unless it is loading already. The saved lines come from the loader,
+     * newest first, and are passed to the factory oldest first.
+     */
+    void load(Key key, Supplier<List<Conversation>> loader, Supplier<V> factory) {
+        List<Conversation> saved = new ArrayList<>();
+        if (loading.putIfAbsent(key, saved) != null) return;
+        loadExecutor.execute(() -> {
+            V value = null;
+            try {
+                value = factory.get();
+                List<Conversation> conversations = new ArrayList<>(loader.get());
+                Collections.reverse(conversations);
+                for (Conversation conversation : conversations) {
+                    if (conversation.isFromNPC()) {
+                        addLine.accept(value, conversation);
+                    }
+                }
+            } catch (RuntimeException e) {
+                logger.warning("Could not load memories for " + key.npcName() + ": " + e.getMessage());
+                value = null;
+            } finally {
+                V loaded = value;
+                // Adds for this pair wait until the lines saved during the load are in
+                loading.compute(key, (k, current) -> {
+                    if (current != saved) return current; // Invalidated while loading
+                    if (loaded != null) {
+                        synchronized (loaded) {
+                            for (Conversation conversation : saved) {
+                                // The load may have read the line already
+                                if (conversation.getTimestamp() > latestTimestamp.applyAsLong(loaded)) {
+                                    addLine.accept(loaded, conversation);
+                                }
+                            }
+                        }
+                        pairs.put(key, loaded);
+                    }
+                    return null;
+                });
+            }
+        });
+    }
+
+    // Adds a saved NPC line to its pair, if that pair is loaded already or being loaded
+    void add(Conversation conversation) {
+        if (!conversation.isFromNPC()) return;
+        Key key = new Key(conversation.getPlayerUUID(), conversation.getNpcName());
+        boolean[] buffered = new boolean[1];
+        loading.computeIfPresent(key, (k, saved) -> {
+            saved.add(conversation);
+            buffered[0] = true;
+            return saved;
+        });
+        if (buffered[0]) return;
+
+        V value = pairs.getIfPresent(key);
+        if (value == null) return;
+        synchronized (value) {
+            addLine.accept(value, conversation);
+        }
+    }
+
+    // Loads are dropped first, so one finishing in between finds its entry gone instead of caching
+    void invalidateNpc(String npcName) {
+        loading.keySet().removeIf(key -> key.npcName().equals(npcName));
+        pairs.asMap().keySet().removeIf(key -> key.npcName().equals(npcName));
+    }
+
+    void invalidateAll() {
+        loading.clear();
+        pairs.invalidateAll();
+    }
+
+    long size() {
+        return pairs.size();
+    }
+}
@@ -1,20 +1,12 @@
 package me.xidentified.archgpt.context;
 
-import net.Indyuce.mmocore.api.player.PlayerData;
-import net.Indyuce.mmocore.api.player.profess.PlayerClass;
-import org.bukkit.Bukkit;
-import org.bukkit.Material;
-import org.bukkit.Statistic;
-import org.bukkit.entity.Player;
-import org.bukkit.inventory.ItemStack;
-
 public class PlayerContextProvider {
-    private final Player player;
+    private final ContextSnapshot snapshot;
     private final boolean isMMOCoreInstalled;
 
-    public PlayerContextProvider(Player player) {
-        this.player = player;
-        this.isMMOCoreInstalled = Bukkit.getPluginManager().isPluginEnabled("MMOCore");
+    public PlayerContextProvider(ContextSnapshot snapshot) {
+        this.snapshot = snapshot;
+        this.isMMOCoreInstalled = snapshot.isMMOCoreInstalled();
     }
     public String getFormattedContext(String npcPrompt) {
         String playerExperience = getPlayerExperience();
@@ -29,29 +21,30 @@ public class PlayerContextProvider {
     }
 
     public String getPlayerExperience() {
-        try {
-            long ticksPlayed = player.getStatistic(Statistic.PLAY_ONE_MINUTE);
-            long hoursPlayed = ticksPlayed / (20 * 60 * 60);
-            int mobsKilled = player.getStatistic(Statistic.MOB_KILLS);
-
-            if (!player.hasPlayedBefore()) {
-                return "A fresh face in our lands, embarking on their very first journey!";
-            } else if (hoursPlayed < 8 || mobsKilled < 20) {
-                return "A new adventurer, still finding their footing in our world.";
-            } else if (hoursPlayed < 50 || mobsKilled > 50) {
-                return "An experienced wanderer, familiar with the twists and turns of these lands.";
-            } else {
-                return "A seasoned veteran, well-versed in the lore and challenges of our realm.";
-            }
-        } catch (IllegalArgumentException e) {
-            Bukkit.getLogger().severe(e.toString());
-            return "";
+        long hoursPlayed = snapshot.getTicksPlayed() / (20 * 60 * 60);
+        int mobsKilled = snapshot.getMobKills();
+
+        if (!snapshot.isPlayedBefore()) {
+            return "A fresh face in our lands, embarking on their very first journey!";
+        } else if (hoursPlayed < 8 || mobsKilled < 20) {
+            return "A new adventurer, still finding their footing in our world.";
+        } else if (hoursPlayed < 50 || mobsKilled > 50) {
+            return "An experienced wanderer, familiar with the twists and turns of these lands.";
+        } else {
+            return "A seasoned veteran, well-versed in the lore and challenges of our realm.";
         }
     }
 
+    // Whether this is their first visit, without anything that tells players apart
+    public String getTenureContext() {
+        return snapshot.isPlayedBefore()
+                ? "A traveler who has walked these lands before."
+                : "A fresh face in our lands, embarking on their very first journey!";
+    }
+
     public String getPlayerHealthContext() {
-        double health = player.getHealth();
-        double maxHealth = player.getMaxHealth();
+        double health = snapshot.getHealth();
+        double maxHealth = snapshot.getMaxHealth();
 
         if (health <= maxHealth * 0.25) {
             return "Bearing scars of fierce battles, they stand, weathered and weary.";
@@ -62,7 +55,7 @@ public class PlayerContextProvider {
     }
 
     public String getPlayerHungerContext() {
-        int hunger = player.getFoodLevel();
+        int hunger = snapshot.getFoodLevel();
 
         if (hunger <= 6) {
             return "Their gaunt appearance speaks of a dire need for sustenance.";
@@ -73,37 +66,34 @@ public class PlayerContextProvider {
     }
 
     public String getPlayerArmor() {
-        ItemStack[] armor = player.getInventory().getArmorContents();
         StringBuilder armorDesc = new StringBuilder();
-        for (ItemStack item : armor) {
-            if (item != null && item.getType() != Material.AIR) {
-                String itemName = item.getType().name().replace("_", " ").toLowerCase();
-                int durability = item.getType().getMaxDurability() - (int) item.getDurability();
-                int maxDurability = item.getType().getMaxDurability();
-                double durabilityPercentage = durability / (double) maxDurability * 100;
-
-                if (item.hasItemMeta() && item.getItemMeta().hasEnchants()) {
-                    itemName += " (enchanted)";
-                }
-
-                if (durabilityPercentage > 80) {
-                    armorDesc.append("well-maintained ").append(itemName);
-                } else if (durabilityPercentage > 50) {
-                    armorDesc.append("moderately used ").append(itemName);
-                } else {
-                    armorDesc.append("worn-out ").append(itemName);
-                }
-                armorDesc.append(", ");
+        for (ContextSnapshot.ItemSummary item : snapshot.getArmor()) {
+            String itemName = item.type().name().replace("_", " ").toLowerCase();
+            int durability = item.type().getMaxDurability() - item.damage();
+            int maxDurability = item.type().getMaxDurability();
+            double durabilityPercentage = durability / (double) maxDurability * 100;
+
+            if (item.enchanted()) {
+                itemName += " (enchanted)";
+            }
+
+            if (durabilityPercentage > 80) {
+                armorDesc.append("well-maintained ").append(itemName);
+            } else if (durabilityPercentage > 50) {
+                armorDesc.append("moderately used ").append(itemName);
+            } else {
+                armorDesc.append("worn-out ").append(itemName);
             }
+            armorDesc.append(", ");
         }
         return armorDesc.length() > 2 ? "armor crafted from " + armorDesc.substring(0, armorDesc.length() - 2) : "no protective gear";
     }
 
     public String getPlayerHeldItem() {
-        ItemStack item = player.getInventory().getItemInMainHand();
-        if (item.getType() != Material.AIR) {
-            String itemName = item.getType().name();
-            if (item.hasItemMeta() && item.getItemMeta().hasEnchants()) {
+        ContextSnapshot.ItemSummary item = snapshot.getHeldItem();
+        if (item != null) {
+            String itemName = item.type().name();
+            if (item.enchanted()) {
                 itemName += "(imbued with enchantments)";
             }
             return itemName;
@@ -113,17 +103,17 @@ public class PlayerContextProvider {
     }
 
     private String getMMOCoreContext() {
-        PlayerData playerData = PlayerData.get(player);
+        ContextSnapshot.MMOCoreSummary mmoCore = snapshot.getMmoCore();
 
         // Get player class and level from MMOCore
-        PlayerClass playerClass = playerData.getProfess();
-        int playerLevel = playerData.getLevel();
+        String playerClass = mmoCore.className();
+        int playerLevel = mmoCore.level();
 
         // Check for party status
-        boolean isInParty = playerData.getParty() != null;
+        boolean isInParty = mmoCore.inParty();
 
         String partyStatus = isInParty ? "Joined by comrades in a party," : "Venturing alone, a solitary figure against the world,";
-        String classStatus = playerClass != null ? "a " + playerClass.getName() + " by trade," : "undecided in their path,";
+        String classStatus = playerClass != null ? "a " + playerClass + " by trade," : "undecided in their path,";
         String levelStatus = "at the level of " + playerLevel + ",";
 
         return String.format("%s %s their journey has brought them to the level of %s", partyStatus, classStatus, levelStatus);
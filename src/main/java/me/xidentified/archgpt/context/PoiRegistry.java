@@ -0,0 +1,238 @@
+package me.xidentified.archgpt.context;
+
+import me.xidentified.archgpt.ArchGPT;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.*;
+
+/**
+ * Points of interest from the config, parsed once and bucketed per world into a grid of square cells, so a context
+ * lookup only visits the cells around the player to find the closest landmarks. Rebuilt on reload; lookups read an
+ * immutable snapshot and are safe from any thread.
+ */
+public class PoiRegistry {
+    private static final int CELL_SHIFT = 7; // 128-block cells
+    private static final int CELL_SIZE = 1 << CELL_SHIFT;
+    private static final int SPARSE_GRID_FACTOR = 16; // Cells per landmark past which a plain scan is used
+    private static final String[] COMPASS = {
+            "north", "north-east", "east", "south-east", "south", "south-west", "west", "north-west"
+    };
+
+    /**
+     * A landmark near a position, with its horizontal distance in blocks and the compass direction it lies in.
+     */
+    public record NearbyPoi(String name, int x, int y, int z, double distance, String direction) {}
+
+    // The closest landmarks seen so far, sorted by squared horizontal distance
+    private static final class Closest {
+        private final int[] pois;
+        private final long[] distances;
+        private int found;
+
+        private Closest(int limit) {
+            this.pois = new int[limit];
+            this.distances = new long[limit];
+        }
+
+        private boolean isFull() {
+            return found == pois.length;
+        }
+
+        private long worstDistance() {
+            return distances[found - 1];
+        }
+
+        private void offer(int poi, long distance) {
+            if (pois.length == 0 || (isFull() && distance >= worstDistance())) return;
+
+            // Insertion into the small sorted top list
+            int position = isFull() ? found - 1 : found++;
+            while (position > 0 && distances[position - 1] > distance) {
+                distances[position] = distances[position - 1];
+                pois[position] = pois[position - 1];
+                position--;
+            }
+            distances[position] = distance;
+            pois[position] = poi;
+        }
+    }
+
+    // Coordinates are parallel arrays, buckets hold indexes into them and are sorted by cell key
+    private record WorldPois(String[] names, int[] xs, int[] ys, int[] zs, long[] cellKeys, int[][] buckets,
+                             int minCellX, int maxCellX, int minCellZ, int maxCellZ) {}
+
+    private final ArchGPT plugin;
+    private volatile Map<String, WorldPois> worlds = Map.of();
+    private volatile int nearestLimit;
+
+    public PoiRegistry(ArchGPT plugin) {
+        this.plugin = plugin;
+    }
+
+    // Re-reads points_of_interest, used on enable and after the config changed
+    public void reload() {
+        nearestLimit = Math.max(1, plugin.getConfig().getInt("points_of_interest_limit", 5));
+
+        Map<String, WorldPois> loaded = new HashMap<>();
+        ConfigurationSection poiSection = plugin.getConfig().getConfigurationSection("points_of_interest");
+        if (poiSection != null) {
+            for (String worldName : poiSection.getKeys(false)) {
+                ConfigurationSection worldSection = poiSection.getConfigurationSection(worldName);
+                if (worldSection == null) continue;
+
+                List<String> names = new ArrayList<>();
+                List<int[]> coordinates = new ArrayList<>();
+                for (String poiName : worldSection.getKeys(false)) {
+                    int[] xyz = parseCoordinates(worldSection.getString(poiName));
+                    if (xyz == null) {
+                        plugin.getLogger().warning("Ignoring point of interest '" + poiName + "' in " + worldName
+                                + ", expected \"x,y,z\" but got: " + worldSection.getString(poiName));
+                        continue;
+                    }
+                    names.add(poiName);
+                    coordinates.add(xyz);
+                }
+                if (!names.isEmpty()) {
+                    loaded.put(worldName, index(names, coordinates));
+                }
+            }
+        }
+        worlds = Map.copyOf(loaded);
+        plugin.debugLog("Loaded " + size() + " points of interest");
+    }
+
+    /**
+     * Up to the configured number of landmarks closest to the position, nearest first. Empty when the world has none.
+     */
+    public List<NearbyPoi> nearest(String worldName, int x, int z) {
+        WorldPois pois = worlds.get(worldName);
+        if (pois == null) return Collections.emptyList();
+
+        Closest closest = new Closest(Math.min(nearestLimit, pois.names().length));
+        long gridCells = (long) (pois.maxCellX() - pois.minCellX() + 1) * (pois.maxCellZ() - pois.minCellZ() + 1);
+        if (gridCells > (long) pois.names().length * SPARSE_GRID_FACTOR) {
+            // Landmarks far apart leave most cells empty, checking each one is cheaper than walking the grid
+            for (int poi = 0; poi < pois.names().length; poi++) {
+                closest.offer(poi, distanceSquared(pois, poi, x, z));
+            }
+        } else {
+            searchGrid(pois, x, z, closest);
+        }
+
+        List<NearbyPoi> nearby = new ArrayList<>(closest.found);
+        for (int i = 0; i < closest.found; i++) {
+            int poi = closest.pois[i];
+            int poiX = pois.xs()[poi];
+            int poiZ = pois.zs()[poi];
+            nearby.add(new NearbyPoi(pois.names()[poi], poiX, pois.ys()[poi], poiZ,
+                    Math.sqrt(closest.distances[i]), direction(poiX - x, poiZ - z)));
+        }
+        return nearby;
+    }
+
+    // Visits the cells in growing square rings around the position, clipped to the cells that hold landmarks
+    private static void searchGrid(WorldPois pois, int x, int z, Closest closest) {
+        int cellX = x >> CELL_SHIFT;
+        int cellZ = z >> CELL_SHIFT;
+        int minDx = pois.minCellX() - cellX, maxDx = pois.maxCellX() - cellX;
+        int minDz = pois.minCellZ() - cellZ, maxDz = pois.maxCellZ() - cellZ;
+        int firstRing = Math.max(Math.max(minDx, -maxDx), Math.max(minDz, -maxDz));
+        int lastRing = Math.max(Math.max(-minDx, maxDx), Math.max(-minDz, maxDz));
+        for (int ring = Math.max(0, firstRing); ring <= lastRing; ring++) {
+            // Every cell on this ring is at least (ring - 1) cells away, nothing closer can be left once we're full
+            long ringDistance = (long) Math.max(0, ring - 1) * CELL_SIZE;
+            if (closest.isFull() && ringDistance * ringDistance > closest.worstDistance()) return;
+
+            for (int dx = Math.max(-ring, minDx); dx <= Math.min(ring, maxDx); dx++) {
+                if (Math.abs(dx) == ring) {
+                    for (int dz = Math.max(-ring, minDz); dz <= Math.min(ring, maxDz); dz++) {
+                        visitCell(pois, cellX + dx, cellZ + dz, x, z, closest);
+                    }
+                } else {
+                    // Inner cells were visited with the smaller rings, only the top and bottom edge are new
+                    if (-ring >= minDz) visitCell(pois, cellX + dx, cellZ - ring, x, z, closest);
+                    if (ring <= maxDz) visitCell(pois, cellX + dx, cellZ + ring, x, z, closest);
+                }
+            }
+        }
+    }
+
+    private static void visitCell(WorldPois pois, int cellX, int cellZ, int x, int z, Closest closest) {
+        int slot = Arrays.binarySearch(pois.cellKeys(), cellKey(cellX, cellZ));
+        if (slot < 0) return;
+        for (int poi : pois.buckets()[slot]) {
+            closest.offer(poi, distanceSquared(pois, poi, x, z));
+        }
+    }
+
+    private static long distanceSquared(WorldPois pois, int poi, int x, int z) {
+        long offsetX = pois.xs()[poi] - x;
+        long offsetZ = pois.zs()[poi] - z;
+        return offsetX * offsetX + offsetZ * offsetZ;
+    }
+
+    public int size() {
+        return worlds.values().stream().mapToInt(pois -> pois.names().length).sum();
+    }
+
+    private static WorldPois index(List<String> names, List<int[]> coordinates) {
+        int count = names.size();
+        int[] xs = new int[count];
+        int[] ys = new int[count];
+        int[] zs = new int[count];
+        TreeMap<Long, List<Integer>> cells = new TreeMap<>();
+        int minCellX = Integer.MAX_VALUE, maxCellX = Integer.MIN_VALUE;
+        int minCellZ = Integer.MAX_VALUE, maxCellZ = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int[] xyz = coordinates.get(i);
+            xs[i] = xyz[0];
+            ys[i] = xyz[1];
+            zs[i] = xyz[2];
+            int cellX = xs[i] >> CELL_SHIFT;
+            int cellZ = zs[i] >> CELL_SHIFT;
+            minCellX = Math.min(minCellX, cellX);
+            maxCellX = Math.max(maxCellX, cellX);
+            minCellZ = Math.min(minCellZ, cellZ);
+            maxCellZ = Math.max(maxCellZ, cellZ);
+            cells.computeIfAbsent(cellKey(cellX, cellZ), key -> new ArrayList<>()).add(i);
+        }
+
+        long[] cellKeys = new long[cells.size()];
+        int[][] buckets = new int[cells.size()][];
+        int slot = 0;
+        for (Map.Entry<Long, List<Integer>> cell : cells.entrySet()) {
+            cellKeys[slot] = cell.getKey();
+            buckets[slot] = cell.getValue().stream().mapToInt(Integer::intValue).toArray();
+            slot++;
+        }
+        return new WorldPois(names.toArray(new String[0]), xs, ys, zs, cellKeys, buckets,
+                minCellX, maxCellX, minCellZ, maxCellZ);
+    }
+
+    // "x,y,z" with optional spaces, or null if it isn't three whole numbers
+    private static int[] parseCoordinates(String location) {
+        if (location == null) return null;
+        String[] parts = location.split(",");
+        if (parts.length != 3) return null;
+        try {
+            return new int[] {
+                    Integer.parseInt(parts[0].trim()),
+                    Integer.parseInt(parts[1].trim()),
+                    Integer.parseInt(parts[2].trim())
+            };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Minecraft's north is towards negative Z and east towards positive X
+    private static String direction(int offsetX, int offsetZ) {
+        double degrees = Math.toDegrees(Math.atan2(offsetX, -offsetZ));
+        int sector = (int) Math.round(degrees / 45.0);
+        return COMPASS[Math.floorMod(sector, COMPASS.length)];
+    }
+
+    private static long cellKey(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+}
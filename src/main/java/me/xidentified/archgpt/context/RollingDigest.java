@@ -0,0 +1,130 @@
+package me.xidentified.archgpt.context;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Summary of everything an NPC told one player, updated one line at a time. It keeps approximate keyword counts and
+ * a handful of candidate sentences, both capped, so updating and reading it cost the same however long the pair
+ * has been talking. The summary is the best few candidates by keyword overlap, in the order they were said.
+ */
+public class RollingDigest {
+    private static final int MAX_TERMS = 48;
+    private static final int MAX_CANDIDATES = 8;
+    private static final int TOP_KEYWORDS = 5;
+    private static final int SUMMARY_SENTENCES = 3;
+
+    private record Candidate(String sentence, List<String> terms, long timestamp) {}
+
+    private final Map<String, Integer> termCounts = new HashMap<>();
+    private final List<Candidate> candidates = new ArrayList<>();
+    private int lineCount;
+    private long updatedAt;
+    private volatile String summary = "";
+
+    // Lines no newer than the latest one folded in are skipped, so a line can't be counted twice
+    public synchronized boolean addLineIfNewer(String line, long timestamp, Set<String> stopWords) {
+        if (lineCount > 0 && timestamp <= updatedAt) return false;
+        for (String sentence : MemoryIndex.splitSentences(line)) {
+            List<String> terms = MemoryIndex.tokenize(sentence, stopWords);
+            if (terms.isEmpty()) continue;
+            terms.forEach(term -> termCounts.merge(term, 1, Integer::sum));
+            candidates.add(new Candidate(sentence, terms, timestamp));
+        }
+        lineCount++;
+        updatedAt = Math.max(updatedAt, timestamp);
+
+        // Rare words are forgotten first, so the counts stay small but the main topics survive
+        if (termCounts.size() > MAX_TERMS) {
+            List<String> rarest = termCounts.entrySet().stream()
+                    .sorted(Map.Entry.comparingByValue())
+                    .limit(termCounts.size() - MAX_TERMS)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            rarest.forEach(termCounts::remove);
+        }
+        rebuildSummary();
+        return true;
+    }
+
+    // Read on the chat path, never waits on an update
+    public String getSummary() {
+        return summary;
+    }
+
+    public synchronized long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    private void rebuildSummary() {
+        Set<String> topKeywords = termCounts.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
+                .limit(TOP_KEYWORDS)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+
+        // Best candidates first, newer ones win ties
+        Map<Candidate, Integer> scores = new HashMap<>();
+        for (Candidate candidate : candidates) {
+            scores.put(candidate, (int) candidate.terms().stream().filter(topKeywords::contains).count());
+        }
+        List<Candidate> ranked = candidates.stream()
+                .sorted(Comparator.comparingInt((Candidate candidate) -> -scores.get(candidate))
+                        .thenComparing(Comparator.comparingLong(Candidate::timestamp).reversed()))
+                .limit(MAX_CANDIDATES)
+                .toList();
+        candidates.retainAll(ranked);
+
+        summary = ranked.stream()
+                .filter(candidate -> scores.get(candidate) > 0)
+                .limit(SUMMARY_SENTENCES)
+                .sorted(Comparator.comparingLong(Candidate::timestamp))
+                .map(Candidate::sentence)
+                .collect(Collectors.joining(" "));
+    }
+
+    public synchronized String toJson() {
+        JsonObject json = new JsonObject();
+        JsonObject terms = new JsonObject();
+        termCounts.forEach(terms::addProperty);
+        json.add("terms", terms);
+        JsonArray sentences = new JsonArray();
+        for (Candidate candidate : candidates) {
+            JsonObject sentence = new JsonObject();
+            sentence.addProperty("text", candidate.sentence());
+            sentence.addProperty("timestamp", candidate.timestamp());
+            sentences.add(sentence);
+        }
+        json.add("candidates", sentences);
+        json.addProperty("lines", lineCount);
+        json.addProperty("updated", updatedAt);
+        return json.toString();
+    }
+
+    public static RollingDigest fromJson(String state, Set<String> stopWords) {
+        RollingDigest digest = new RollingDigest();
+        JsonObject json = JsonParser.parseString(state).getAsJsonObject();
+        for (Map.Entry<String, JsonElement> term : json.getAsJsonObject("terms").entrySet()) {
+            digest.termCounts.put(term.getKey(), term.getValue().getAsInt());
+        }
+        for (JsonElement element : json.getAsJsonArray("candidates")) {
+            JsonObject sentence = element.getAsJsonObject();
+            String text = sentence.get("text").getAsString();
+            digest.candidates.add(new Candidate(text, MemoryIndex.tokenize(text, stopWords), sentence.get("timestamp").getAsLong()));
+        }
+        digest.lineCount = json.get("lines").getAsInt();
+        digest.updatedAt = json.get("updated").getAsLong();
+        digest.rebuildSummary();
+        return digest;
+    }
+}
@@ -0,0 +1,218 @@
+package me.xidentified.archgpt.context;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import me.xidentified.archgpt.storage.model.Conversation;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Finds the NPC's past lines that are closest in meaning to what the player just said, without a model or a
+ * network call. Lines are embedded with feature hashing: every word and pair of adjacent words is hashed into one
+ * of a fixed number of dimensions with a hash-derived sign, then the vector is normalized and stored as one signed
+ * byte per dimension. Search is a cosine scan over those bytes, bounded both by the number of lines kept and by
+ * a time budget, so it can run on every turn.
+ * <p>
+ * Each NPC keeps a separate set of lines per player, so one player's conversations never surface for another.
+ * A pair that isn't loaded yet answers with nothing and is loaded in the background for the next turn.
+ */
+public class SemanticMemoryIndex {
+    private static final HashFunction HASH = Hashing.murmur3_32_fixed();
+    private static final int QUANTIZE_SCALE = 127;
+    private static final int BUDGET_CHECK_INTERVAL = 256; // Lines scanned between deadline checks
+    private static final int INITIAL_CAPACITY = 32;
+
+    /**
+     * Vectors of one pair, back to back in a single array that grows as lines are added. Once it holds maxVectors
+     * lines, the oldest one is overwritten, so a scan never reads more than that.
+     */
+    private static final class PairVectors {
+        private final int dimensions;
+        private final int maxVectors;
+        private byte[] vectors;
+        private long[] timestamps;
+        private String[] texts;
+        private int size;
+        private int next; // Slot the next line goes into
+        private long latestTimestamp; // Of the newest line added
+
+        private PairVectors(int dimensions, int maxVectors) {
+            this.dimensions = dimensions;
+            this.maxVectors = maxVectors;
+            int capacity = Math.min(maxVectors, INITIAL_CAPACITY);
+            this.vectors = new byte[capacity * dimensions];
+            this.timestamps = new long[capacity];
+            this.texts = new String[capacity];
+        }
+
+        private void add(byte[] vector, String text, long timestamp) {
+            if (size == texts.length && texts.length < maxVectors) {
+                int capacity = Math.min(maxVectors, texts.length * 2);
+                vectors = Arrays.copyOf(vectors, capacity * dimensions);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                texts = Arrays.copyOf(texts, capacity);
+                next = size;
+            }
+            System.arraycopy(vector, 0, vectors, next * dimensions, dimensions);
+            timestamps[next] = timestamp;
+            texts[next] = text;
+            next = (next + 1) % texts.length;
+            size = Math.min(size + 1, texts.length);
+        }
+    }
+
+    private final Set<String> stopWords;
+    private final int dimensions;
+    private final int maxVectors;
+    private final MemoryPairCache<PairVectors> pairs;
+
+    public SemanticMemoryIndex(Logger logger, Executor loadExecutor, Set<String> stopWords, int dimensions,
+                               int maxVectors, int maxPairs, long expireAfterAccessMinutes) {
+        this.stopWords = stopWords;
+        this.dimensions = dimensions;
+        this.maxVectors = maxVectors;
+        this.pairs = new MemoryPairCache<>(logger, loadExecutor, maxPairs, expireAfterAccessMinutes,
+                this::addLine, vectors -> vectors.latestTimestamp);
+    }
+
+    /**
+     * Up to limit past lines whose similarity to the message is at least minSimilarity, best first. Lines older
+     * than the cutoff are skipped. The scan stops once the budget is used up and answers with what it found.
+     */
+    public List<String> search(UUID playerUUID, String npcName, String message, int limit, double minSimilarity,
+                               long cutoffTimestamp, long budgetNanos, Supplier<List<Conversation>> loader) {
+        MemoryPairCache.Key key = new MemoryPairCache.Key(playerUUID, npcName);
+        PairVectors vectors = pairs.getIfPresent(key);
+        if (vectors == null) {
+            pairs.load(key, loader, this::newPair);
+            return Collections.emptyList();
+        }
+
+        byte[] query = embed(message);
+        if (query == null) return Collections.emptyList();
+
+        long deadline = System.nanoTime() + budgetNanos;
+        int minDot = (int) Math.ceil(minSimilarity * QUANTIZE_SCALE * QUANTIZE_SCALE);
+        int[] bestSlots = new int[limit];
+        int[] bestDots = new int[limit];
+        int found = 0;
+        synchronized (vectors) {
+            for (int slot = 0; slot < vectors.size; slot++) {
+                if (slot % BUDGET_CHECK_INTERVAL == BUDGET_CHECK_INTERVAL - 1 && System.nanoTime() > deadline) break;
+                if (vectors.timestamps[slot] < cutoffTimestamp) continue;
+
+                int dot = dot(query, vectors.vectors, slot * dimensions);
+                if (dot < minDot || (found == limit && dot <= bestDots[limit - 1])) continue;
+
+                // Insertion into the small sorted top list
+                int position = found < limit ? found++ : limit - 1;
+                while (position > 0 && bestDots[position - 1] < dot) {
+                    bestDots[position] = bestDots[position - 1];
+                    bestSlots[position] = bestSlots[position - 1];
+                    position--;
+                }
+                bestDots[position] = dot;
+                bestSlots[position] = slot;
+            }
+
+            List<String> results = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                results.add(vectors.texts[bestSlots[i]]);
+            }
+            return results;
+        }
+    }
+
+    // Adds a saved NPC line to its pair, if that pair is loaded already or being loaded
+    public void add(Conversation conversation) {
+        pairs.add(conversation);
+    }
+
+    // Loads a pair ahead of its first search
+    public void preload(UUID playerUUID, String npcName, Supplier<List<Conversation>> loader) {
+        MemoryPairCache.Key key = new MemoryPairCache.Key(playerUUID, npcName);
+        if (pairs.getIfPresent(key) == null) {
+            pairs.load(key, loader, this::newPair);
+        }
+    }
+
+    public void invalidateNpc(String npcName) {
+        pairs.invalidateNpc(npcName);
+    }
+
+    public void invalidateAll() {
+        pairs.invalidateAll();
+    }
+
+    public long size() {
+        return pairs.size();
+    }
+
+    // Lines are added oldest first, so once a pair is full the newest ones are the ones kept
+    private PairVectors newPair() {
+        return new PairVectors(dimensions, maxVectors);
+    }
+
+    private void addLine(PairVectors vectors, Conversation conversation) {
+        for (String sentence : MemoryIndex.splitSentences(conversation.getMessage())) {
+            byte[] vector = embed(sentence);
+            if (vector != null) {
+                vectors.add(vector, sentence, conversation.getTimestamp());
+            }
+        }
+        vectors.latestTimestamp = Math.max(vectors.latestTimestamp, conversation.getTimestamp());
+    }
+
+    /**
+     * Feature-hashed, normalized and quantized vector of the text, or null if it has no words worth embedding.
+     * Word pairs give some weight to phrasing, so "iron sword" is closer to "an iron sword" than to "iron ore".
+     */
+    private byte[] embed(String text) {
+        List<String> tokens = MemoryIndex.tokenize(text, stopWords);
+        if (tokens.isEmpty()) return null;
+
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < tokens.size(); i++) {
+            addFeature(vector, tokens.get(i));
+            if (i > 0) {
+                addFeature(vector, tokens.get(i - 1) + ' ' + tokens.get(i));
+            }
+        }
+
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) return null;
+
+        double scale = QUANTIZE_SCALE / Math.sqrt(norm);
+        byte[] quantized = new byte[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            quantized[i] = (byte) Math.round(vector[i] * scale);
+        }
+        return quantized;
+    }
+
+    private void addFeature(float[] vector, String feature) {
+        int hash = HASH.hashString(feature, StandardCharsets.UTF_8).asInt();
+        // The sign bit keeps colliding features from only ever adding up
+        vector[Math.floorMod(hash, dimensions)] += (hash & 0x80000000) == 0 ? 1f : -1f;
+    }
+
+    private static int dot(byte[] query, byte[] vectors, int offset) {
+        int sum = 0;
+        for (int i = 0; i < query.length; i++) {
+            sum += query[i] * vectors[offset + i];
+        }
+        return sum;
+    }
+}
@@ -3,14 +3,18 @@ package me.xidentified.archgpt.listeners;
 import me.xidentified.archgpt.*;
 import me.xidentified.archgpt.utils.ArchGPTConstants;
 import me.xidentified.archgpt.utils.Messages;
-import net.citizensnpcs.api.CitizensAPI;
+import me.xidentified.archgpt.utils.NPCSpatialIndex;
+import net.citizensnpcs.api.event.NPCDespawnEvent;
+import net.citizensnpcs.api.event.NPCRemoveEvent;
 import net.citizensnpcs.api.event.NPCRightClickEvent;
+import net.citizensnpcs.api.event.NPCSpawnEvent;
+import net.citizensnpcs.api.event.NPCTeleportEvent;
 import net.citizensnpcs.api.npc.NPC;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
-import org.bukkit.entity.Entity;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -27,6 +31,7 @@ public class NPCEventListener implements Listener {
     private final ArchGPTConfig configHandler;
     private final Set<UUID> npcsProcessingGreeting = ConcurrentHashMap.newKeySet();
     private final Map<UUID, Long> lastChatTimestamps = new ConcurrentHashMap<>();
+    private static final int GREETING_RADIUS = 4;
 
     public NPCEventListener(ArchGPT plugin, NPCConversationManager conversationManager, ArchGPTConfig configHandler) {
         this.plugin = plugin;
@@ -37,136 +42,183 @@ public class NPCEventListener implements Listener {
     // Event listener for right-clicking an NPC
     @EventHandler
     public void onNPCRightClick(NPCRightClickEvent event) {
-        synchronized (conversationManager.npcChatStatesCache) {
-            Player player = event.getClicker();
-            NPC npc = event.getNPC();
-
-            // Check if the NPC is configured in config.yml
-            String npcPrompt = configHandler.getNpcPrompt(npc.getName(), player);
-            if (npcPrompt == null || npcPrompt.isEmpty()) {
-                // NPC is not configured, exit method
-                plugin.debugLog("NPC '" + npc.getName() + "' is not configured in config.yml.");
-                return;
-            }
+        Player player = event.getClicker();
+        NPC npc = event.getNPC();
+
+        // Check if the NPC is configured in config.yml
+        String npcPrompt = configHandler.getNpcPrompt(npc.getName(), player);
+        if (npcPrompt == null || npcPrompt.isEmpty()) {
+            // NPC is not configured, exit method
+            plugin.debugLog("NPC '" + npc.getName() + "' is not configured in config.yml.");
+            return;
+        }
 
-            // Check if the player is already in an ongoing conversation
-            if (conversationManager.playerInConversation(player.getUniqueId())) {
-                plugin.debugLog("Player '" + player.getName() + "' is already in a conversation.");
-                return;
-            }
+        // Check if the player is already in an ongoing conversation
+        if (conversationManager.playerInConversation(player.getUniqueId())) {
+            plugin.debugLog("Player '" + player.getName() + "' is already in a conversation.");
+            return;
+        }
 
-            plugin.debugLog("NPCRightClickEvent triggered for player '" + player.getName() + "' on NPC '" + npc.getName() + "'.");
+        plugin.debugLog("NPCRightClickEvent triggered for player '" + player.getName() + "' on NPC '" + npc.getName() + "'.");
 
-            // Start a new conversation if not already in one
-            conversationManager.startConversation(player, npc);
-        }
+        // Start a new conversation if not already in one
+        conversationManager.startConversation(player, npc);
     }
 
     @EventHandler(priority = EventPriority.LOWEST)
     public void onPlayerChat(AsyncPlayerChatEvent event) {
-        synchronized (conversationManager.npcChatStatesCache) {
-            Player player = event.getPlayer();
-            UUID playerUUID = player.getUniqueId();
-            String message = event.getMessage();
-
-            Component playerMessageComponent = Component.text(message);
-            HologramManager hologramManager = plugin.getHologramManager(); // Use plugin's instance
-            long now = System.currentTimeMillis();
-            long lastChatTimestamp = lastChatTimestamps.getOrDefault(playerUUID, 0L);
-
-            if (now - lastChatTimestamp < ArchGPTConstants.CHAT_COOLDOWN_MS) {
-                // If the player is trying to chat during the cooldown period
-                plugin.sendMessage(player, Messages.GENERAL_CHAT_COOLDOWN);
-                event.setCancelled(true);
-                return;
-            }
+        Player player = event.getPlayer();
+        UUID playerUUID = player.getUniqueId();
+        String message = event.getMessage();
 
-            // Check if player is already in conversation
-            if (!conversationManager.playerInConversation(playerUUID)) {
-                return;
-            }
+        Component playerMessageComponent = Component.text(message);
+        HologramManager hologramManager = plugin.getHologramManager(); // Use plugin's instance
+        long now = System.currentTimeMillis();
+        long lastChatTimestamp = lastChatTimestamps.getOrDefault(playerUUID, 0L);
 
-            event.setCancelled(true); // Prevent chat messages from going out to everyone
+        if (now - lastChatTimestamp < ArchGPTConstants.CHAT_COOLDOWN_MS) {
+            // If the player is trying to chat during the cooldown period
+            plugin.sendMessage(player, Messages.GENERAL_CHAT_COOLDOWN);
+            event.setCancelled(true);
+            return;
+        }
 
-            // Handle player reporting state
-            if (conversationManager.getConversationUtils().handleReportingState(player, event)) {
-                return;
-            }
+        // Check if player is already in conversation
+        if (!conversationManager.playerInConversation(playerUUID)) {
+            return;
+        }
 
-            // If the player types 'cancel', end the conversation
-            if (conversationManager.handleCancelCommand(player, PlainTextComponentSerializer.plainText().serialize(playerMessageComponent))) {
-                event.setCancelled(true);
-                return;
-            }
+        event.setCancelled(true); // Prevent chat messages from going out to everyone
 
-            // Schedule the message processing on the main thread
-            Bukkit.getScheduler().runTask(plugin, () -> {
-                // Process the player's message on the main thread
-                conversationManager.processPlayerMessage(player, playerMessageComponent, hologramManager);
-            });
+        // Handle player reporting state
+        if (conversationManager.getConversationUtils().handleReportingState(player, event)) {
+            return;
+        }
 
-            lastChatTimestamps.put(playerUUID, now);
+        // If the player types 'cancel', end the conversation
+        if (conversationManager.handleCancelCommand(player, PlainTextComponentSerializer.plainText().serialize(playerMessageComponent))) {
+            event.setCancelled(true);
+            return;
         }
+
+        // Schedule the message processing on the main thread
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            // Process the player's message on the main thread
+            conversationManager.processPlayerMessage(player, playerMessageComponent, hologramManager);
+        });
+
+        lastChatTimestamps.put(playerUUID, now);
     }
 
     //Listener for player movement for NPC greetings, and to end conversation if player walks away
     @EventHandler
     public void onPlayerGreeting(PlayerMoveEvent event) {
-        Player player = event.getPlayer();
+        Location from = event.getFrom();
+        Location to = event.getTo();
 
-        // Check if nearby NPCs want to greet the player
-        double radius = 4.0;
-        for (Entity entity : player.getNearbyEntities(radius, radius, radius)) {
-            if (!CitizensAPI.getNPCRegistry().isNPC(entity)) {
-                continue;
+        // Head rotations and moves within the same block can't bring an NPC into range
+        if (from.getBlockX() == to.getBlockX() && from.getBlockY() == to.getBlockY() && from.getBlockZ() == to.getBlockZ()) {
+            return;
+        }
+
+        // Check if nearby NPCs want to greet the player, only looking at the chunks within reach
+        Player player = event.getPlayer();
+        World world = to.getWorld();
+        NPCSpatialIndex npcIndex = plugin.getNpcSpatialIndex();
+        int blockX = to.getBlockX(), blockZ = to.getBlockZ();
+        for (int chunkX = (blockX - GREETING_RADIUS) >> 4; chunkX <= (blockX + GREETING_RADIUS) >> 4; chunkX++) {
+            for (int chunkZ = (blockZ - GREETING_RADIUS) >> 4; chunkZ <= (blockZ + GREETING_RADIUS) >> 4; chunkZ++) {
+                NPC[] npcs = npcIndex.getNPCsInChunk(world, chunkX, chunkZ);
+                if (npcs == null) continue;
+                for (NPC npc : npcs) {
+                    if (isWithinGreetingRange(npc, to)) {
+                        greetPlayer(player, npc);
+                    }
+                }
             }
+        }
+    }
 
-            NPC npc = CitizensAPI.getNPCRegistry().getNPC(entity);
+    private boolean isWithinGreetingRange(NPC npc, Location playerLocation) {
+        if (!npc.isSpawned()) return false;
+        Location npcLocation = npc.getEntity().getLocation();
+        return npcLocation.getWorld() == playerLocation.getWorld()
+                && Math.abs(npcLocation.getX() - playerLocation.getX()) <= GREETING_RADIUS
+                && Math.abs(npcLocation.getY() - playerLocation.getY()) <= GREETING_RADIUS
+                && Math.abs(npcLocation.getZ() - playerLocation.getZ()) <= GREETING_RADIUS;
+    }
 
-            if (npc.isSpawned() && conversationManager.getConversationUtils().isInLineOfSight(npc, player) && conversationManager.getConversationUtils().canComment(npc)) {
-                if (!npcsProcessingGreeting.add(npc.getUniqueId())) {
-                    // This NPC is already processing a greeting, skip to the next NPC
-                    continue;
-                }
-                // Update the cooldown for the NPC
-                conversationManager.npcCommentCooldown.put(npc.getUniqueId(), System.currentTimeMillis());
-
-                // Fetch the prompt from config
-                String prompt = plugin.getConfig().getString("npcs." + npc.getName());
-                if (prompt != null && !prompt.isEmpty()) {
-                    // Get the greeting for the NPC asynchronously
-                    conversationManager.getGreeting(player, npc).thenAccept(greeting -> {
-                        if (greeting != null) {
-                            Bukkit.getScheduler().runTask(plugin, () -> {
-                                // Utilize the sendNPCMessage method to send the greeting
-                                conversationManager.getConversationUtils().sendNPCMessage(player, npc, greeting);
-
-                                // For new players, a hologram appears prompting them to right-click the NPC to interact
-                                if (!player.hasPlayedBefore()) {
-                                    plugin.getHologramManager().showInteractionHologram(npc, player);
-                                }
-
-                                // Mark NPC as processing greeting so this doesn't trigger more than once
-                                npcsProcessingGreeting.remove(npc.getUniqueId());
-                            });
-                        }
-                    });
-                }
+    private void greetPlayer(Player player, NPC npc) {
+        if (npc.isSpawned() && conversationManager.getConversationUtils().isInLineOfSight(npc, player) && conversationManager.getConversationUtils().canComment(npc)) {
+            if (!npcsProcessingGreeting.add(npc.getUniqueId())) {
+                // This NPC is already processing a greeting
+                return;
+            }
+            // Update the cooldown for the NPC
+            conversationManager.npcCommentCooldown.put(npc.getUniqueId(), System.currentTimeMillis());
+
+            // Fetch the prompt from config
+            String prompt = plugin.getConfig().getString("npcs." + npc.getName());
+            if (prompt != null && !prompt.isEmpty()) {
+                // Get the greeting for the NPC asynchronously
+                conversationManager.getGreeting(player, npc).whenComplete((greeting, ex) -> {
+                    if (greeting != null) {
+                        Bukkit.getScheduler().runTask(plugin, () -> {
+                            // Utilize the sendNPCMessage method to send the greeting
+                            conversationManager.getConversationUtils().sendNPCMessage(player, npc, greeting);
+
+                            // For new players, a hologram appears prompting them to right-click the NPC to interact
+                            if (!player.hasPlayedBefore()) {
+                                plugin.getHologramManager().showInteractionHologram(npc, player);
+                            }
+
+                            // Mark NPC as processing greeting so this doesn't trigger more than once
+                            npcsProcessingGreeting.remove(npc.getUniqueId());
+                        });
+                    } else {
+                        // Greeting was dropped or failed, let the NPC try again once its cooldown passes
+                        npcsProcessingGreeting.remove(npc.getUniqueId());
+                    }
+                });
             }
         }
     }
 
+    // Keep the NPC index in step with Citizens, the entity is only placed once the event has gone through
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onNPCSpawn(NPCSpawnEvent event) {
+        NPC npc = event.getNPC();
+        Bukkit.getScheduler().runTask(plugin, () -> plugin.getNpcSpatialIndex().update(npc));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onNPCTeleport(NPCTeleportEvent event) {
+        NPC npc = event.getNPC();
+        Bukkit.getScheduler().runTask(plugin, () -> plugin.getNpcSpatialIndex().update(npc));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onNPCDespawn(NPCDespawnEvent event) {
+        plugin.getNpcSpatialIndex().remove(event.getNPC());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onNPCRemove(NPCRemoveEvent event) {
+        plugin.getNpcSpatialIndex().remove(event.getNPC());
+    }
+
     @EventHandler
     public void onPlayerLeavesConversation(PlayerMoveEvent event) {
         Player player = event.getPlayer();
         UUID playerUUID = player.getUniqueId();
-        NPC npc = conversationManager.playerNPCMap.get(playerUUID);
         Location to = event.getTo();
 
         // Check if the player is in an active conversation
-        if (!this.plugin.getActiveConversations().containsKey(playerUUID)) {
+        ConversationSession session = conversationManager.getSession(playerUUID);
+        if (session == null || !session.isActive()) {
             return;
         }
+        NPC npc = session.getNpc();
 
         // Handle world change
         if (player.getWorld() != npc.getEntity().getWorld()) {
@@ -188,7 +240,8 @@ public class NPCEventListener implements Listener {
     public void onPlayerLeave(PlayerQuitEvent event) {
         UUID playerUUID = event.getPlayer().getUniqueId();
         npcsProcessingGreeting.remove(playerUUID);
-        plugin.playerSemaphores.remove(playerUUID);
+        plugin.playerRequestChains.remove(playerUUID);
+        plugin.getContextManager().clearPlayerContext(playerUUID);
     }
 
 }
\ No newline at end of file
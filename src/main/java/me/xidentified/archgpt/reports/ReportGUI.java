@@ -3,6 +3,7 @@ package me.xidentified.archgpt.reports;
 import lombok.Getter;
 import me.xidentified.archgpt.ArchGPT;
 import me.xidentified.archgpt.storage.model.Report;
+import me.xidentified.archgpt.storage.model.ReportFilter;
 import me.xidentified.archgpt.utils.Messages;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
@@ -19,49 +20,83 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class ReportGUI implements InventoryHolder, Listener {
+    private static final int PAGE_SIZE = 45; // The last row is reserved for navigation
+
     private final ArchGPT plugin;
     private final Inventory inventory;
     @Getter private Map<Integer, Integer> slotToReportIdMap = new HashMap<>();
-    private int currentPage = 0;
-    private final int totalPages;
+    private final ReportFilter filter;
+    private final Deque<Integer> previousPages = new ArrayDeque<>(); // Where each earlier page started
+    private int pageAfterId = 0;
+    private int lastIdOnPage;
+    private boolean hasNextPage;
+    private int totalReports;
+    private boolean loading;
 
     public ReportGUI(ArchGPT plugin) {
+        this(plugin, ReportFilter.NONE);
+    }
+
+    public ReportGUI(ArchGPT plugin, ReportFilter filter) {
         this.plugin = plugin;
-        List<Report> reports = plugin.getReportManager().listReports();
-        int slotsPerPage = 45; // Assuming the last row is reserved for navigation
-        this.totalPages = (int) Math.ceil((double) reports.size() / slotsPerPage);
-        int size = Math.min(54, (slotsPerPage + 9)); // 54 is max inventory size with 9 slots for navigation
+        this.filter = filter;
+        int size = Math.min(54, (PAGE_SIZE + 9)); // 54 is max inventory size with 9 slots for navigation
         this.inventory = Bukkit.createInventory(this, size, Component.text("Reports"));
     }
 
     public void openGUI(Player admin) {
-        List<Report> reports = plugin.getReportManager().listReports();
+        loadPage(admin);
+    }
+
+    // Reads the current page asynchronously, items are only built for its reports once it's back on the main thread
+    private void loadPage(Player admin) {
+        if (loading) return;
+        loading = true;
+
+        int afterId = pageAfterId;
+        plugin.getReportManager().loadPage(filter, afterId, PAGE_SIZE).whenComplete((page, error) ->
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    loading = false;
+                    if (error != null) {
+                        plugin.getLogger().warning("Could not load reports: " + error.getMessage());
+                        return;
+                    }
+                    if (!admin.isOnline() || afterId != pageAfterId) return;
+                    showPage(admin, page);
+                }));
+    }
 
-        if (reports.isEmpty()) {
+    private void showPage(Player admin, ReportPage page) {
+        if (page.isEmpty()) {
+            if (!previousPages.isEmpty()) {
+                // The last reports on this page were deleted, step back
+                pageAfterId = previousPages.pop();
+                loadPage(admin);
+                return;
+            }
             admin.closeInventory();
             plugin.sendMessage(admin, Messages.REPORT_NONE_TO_DISPLAY);
             return;
         }
 
-        populateInventoryWithReports(reports);
-        admin.openInventory(this.inventory);
+        this.lastIdOnPage = page.lastId();
+        this.hasNextPage = page.hasNextPage();
+        this.totalReports = page.totalReports();
+        populateInventoryWithReports(page.reports());
+        if (admin.getOpenInventory().getTopInventory().getHolder() != this) {
+            admin.openInventory(this.inventory);
+        }
     }
 
     private void populateInventoryWithReports(List<Report> reports) {
-        int start = this.currentPage * 45;
-        int end = Math.min(start + 45, reports.size());
-
         this.inventory.clear();
         slotToReportIdMap.clear();
 
-        for (int i = start, slot = 0; i < end; i++, slot++) {
-            Report report = reports.get(i);
+        for (int slot = 0; slot < reports.size(); slot++) {
+            Report report = reports.get(slot);
             ItemStack reportItem = createReportItem(report);
             this.inventory.setItem(slot, reportItem);
             slotToReportIdMap.put(slot, report.getId());
@@ -109,15 +144,12 @@ public class ReportGUI implements InventoryHolder, Listener {
             // Handle report deletion
             Integer reportId = reportGUI.getSlotToReportIdMap().get(clickedSlot);
             if (reportId != null) {
-                plugin.getReportManager().deleteReport(reportId);
-                List<Report> updatedReports = plugin.getReportManager().listReports();
-                if (updatedReports.isEmpty()) {
-                    event.getWhoClicked().closeInventory();
-                    plugin.sendMessage(event.getWhoClicked(), Messages.REPORT_NONE_TO_DISPLAY);
-                } else {
-                    reportGUI.openGUI((Player) event.getWhoClicked());
-                    plugin.sendMessage(event.getWhoClicked(), Messages.REPORT_DELETED);
-                }
+                Player admin = (Player) event.getWhoClicked();
+                plugin.getReportManager().deleteReport(reportId).thenRun(() ->
+                        Bukkit.getScheduler().runTask(plugin, () -> {
+                            plugin.sendMessage(admin, Messages.REPORT_DELETED);
+                            reportGUI.loadPage(admin);
+                        }));
             }
         }
     }
@@ -128,12 +160,16 @@ public class ReportGUI implements InventoryHolder, Listener {
     }
 
     private void handleNavigationClick(ReportGUI reportGUI, int clickedSlot, Player player) {
-        if (clickedSlot == this.inventory.getSize() - 2) { // Previous page button slot
-            reportGUI.currentPage = Math.max(0, reportGUI.currentPage - 1);
-        } else if (clickedSlot == this.inventory.getSize() - 1) { // Next page button slot
-            reportGUI.currentPage = Math.min(reportGUI.totalPages - 1, reportGUI.currentPage + 1);
+        if (reportGUI.loading) return;
+        if (clickedSlot == this.inventory.getSize() - 2 && !reportGUI.previousPages.isEmpty()) { // Previous page button slot
+            reportGUI.pageAfterId = reportGUI.previousPages.pop();
+        } else if (clickedSlot == this.inventory.getSize() - 1 && reportGUI.hasNextPage) { // Next page button slot
+            reportGUI.previousPages.push(reportGUI.pageAfterId);
+            reportGUI.pageAfterId = reportGUI.lastIdOnPage;
+        } else {
+            return;
         }
-        reportGUI.openGUI(player);
+        reportGUI.loadPage(player);
     }
 
     private void addFormattedLore(List<Component> lore, String fieldName, String content) {
@@ -170,20 +206,23 @@ public class ReportGUI implements InventoryHolder, Listener {
     }
 
     private void addNavigationItems() {
-        if (this.totalPages > 1) { // Add navigation items only if more than one page is needed
-            ItemStack prevPageItem = createNavigationItem("Previous Page");
-            ItemStack nextPageItem = createNavigationItem("Next Page");
-
-            this.inventory.setItem(this.inventory.getSize() - 2, prevPageItem); // Slot for previous page
-            this.inventory.setItem(this.inventory.getSize() - 1, nextPageItem); // Slot for next page
+        int page = previousPages.size() + 1;
+        int totalPages = Math.max(page, (int) Math.ceil((double) totalReports / PAGE_SIZE));
+        if (page > 1) {
+            this.inventory.setItem(this.inventory.getSize() - 2, createNavigationItem("Previous Page", page, totalPages)); // Slot for previous page
+        }
+        if (hasNextPage) {
+            this.inventory.setItem(this.inventory.getSize() - 1, createNavigationItem("Next Page", page, totalPages)); // Slot for next page
         }
     }
 
-    private ItemStack createNavigationItem(String name) {
+    private ItemStack createNavigationItem(String name, int page, int totalPages) {
         ItemStack item = new ItemStack(Material.ARROW);
         ItemMeta meta = item.getItemMeta();
         if (meta != null) {
             meta.displayName(Component.text(name, NamedTextColor.GREEN).decoration(TextDecoration.ITALIC, false));
+            meta.lore(List.of(Component.text("Page " + page + " of " + totalPages + " (" + totalReports + " reports)", NamedTextColor.GRAY)
+                    .decoration(TextDecoration.ITALIC, false)));
             item.setItemMeta(meta);
         }
         return item;
@@ -1,13 +1,12 @@
 package me.xidentified.archgpt.reports;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 import me.xidentified.archgpt.ArchGPT;
-import me.xidentified.archgpt.storage.dao.MySQLReportDAO;
 import me.xidentified.archgpt.storage.dao.ReportDAO;
-import me.xidentified.archgpt.storage.dao.SQLiteReportDAO;
 import me.xidentified.archgpt.storage.model.Report;
-import org.bukkit.configuration.ConfigurationSection;
+import me.xidentified.archgpt.storage.model.ReportFilter;
 
 public class ReportManager {
     private final ReportDAO reportDAO;
@@ -16,37 +15,23 @@ public class ReportManager {
     private final Map<UUID, String> selectedReportTypes = new ConcurrentHashMap<>();
 
     public ReportManager(ArchGPT plugin) {
-        String storageType = plugin.getConfig().getString("storage.type", "sqlite");
-        switch (storageType.toLowerCase()) {
-            case "sqlite":
-                this.reportDAO = new SQLiteReportDAO(plugin.getDataFolder());
-                break;
-            case "mysql":
-                ConfigurationSection dbConfig = plugin.getConfig().getConfigurationSection("storage.mysql");
-                String host = dbConfig.getString("host");
-                int port = dbConfig.getInt("port");
-                String database = dbConfig.getString("database");
-                String username = dbConfig.getString("username");
-                String password = dbConfig.getString("password");
-                this.reportDAO = new MySQLReportDAO(host, port, database, username, password);
-                break;
-            default:
-                // Default to SQLite if the specified storage type is not recognized
-                this.reportDAO = new SQLiteReportDAO(plugin.getDataFolder());
-                break;
-        }
+        this.reportDAO = plugin.getStorageManager().getReportDAO();
     }
 
-    public void addReport(Report report) {
-        reportDAO.saveReport(report);
+    public CompletableFuture<Void> addReport(Report report) {
+        return reportDAO.saveReport(report);
     }
 
-    public List<Report> listReports() {
-        return reportDAO.getAllReports();
+    // Reads one page off the main thread, one extra row tells whether another page follows
+    public CompletableFuture<ReportPage> loadPage(ReportFilter filter, int afterId, int pageSize) {
+        return reportDAO.getReports(filter, afterId, pageSize + 1).thenCombine(reportDAO.countReports(filter), (reports, total) -> {
+            boolean hasNextPage = reports.size() > pageSize;
+            return new ReportPage(hasNextPage ? reports.subList(0, pageSize) : reports, hasNextPage, total);
+        });
     }
 
-    public void deleteReport(int reportId) {
-        reportDAO.deleteReport(reportId);
+    public CompletableFuture<Void> deleteReport(int reportId) {
+        return reportDAO.deleteReport(reportId);
     }
 
     public void enterReportingState(UUID playerUUID) {
@@ -69,10 +54,4 @@ public class ReportManager {
         selectedReportTypes.put(playerUUID, reportType);
     }
 
-    public void closeResources() {
-        if (this.reportDAO instanceof MySQLReportDAO) {
-            ((MySQLReportDAO)this.reportDAO).closeConnectionPool();
-        }
-    }
-
 }
@@ -0,0 +1,19 @@
+package me.xidentified.archgpt.reports;
+
+import me.xidentified.archgpt.storage.model.Report;
+
+import java.util.List;
+
+/**
+ * One page of the report GUI along with what's needed to draw its navigation.
+ */
+public record ReportPage(List<Report> reports, boolean hasNextPage, int totalReports) {
+
+    public boolean isEmpty() {
+        return reports.isEmpty();
+    }
+
+    public int lastId() {
+        return reports.isEmpty() ? 0 : reports.get(reports.size() - 1).getId();
+    }
+}
@@ -0,0 +1,244 @@
+package me.xidentified.archgpt.storage;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import me.xidentified.archgpt.storage.dao.ConversationDAO;
+import me.xidentified.archgpt.storage.model.Conversation;
+import me.xidentified.archgpt.storage.model.ConversationDigest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Recent conversations per player and NPC, kept in memory in front of the DAO. Reads load the whole memory window
+ * once, saves are written through to the cached list, and the least recently used pairs are evicted once the
+ * cache holds more than the configured number of messages.
+ */
+public class ConversationCache implements ConversationDAO {
+
+    private record Key(UUID playerUUID, String npcName) {}
+
+    // Newest first, like the DAO. Lists are never modified, a save replaces the whole entry
+    private record Entry(List<Conversation> conversations, long windowMillis) {}
+
+    private final ConversationDAO delegate;
+    private final Logger logger;
+    private final Executor loadExecutor;
+    private final Supplier<Duration> memoryDuration;
+    private final Cache<Key, Entry> entries;
+    // Saves that arrived while their pair was being read, merged into the entry once it is cached
+    private final Map<Key, List<Conversation>> savesDuringLoad = new ConcurrentHashMap<>();
+
+    public ConversationCache(ConversationDAO delegate, Logger logger, Executor loadExecutor,
+                             Supplier<Duration> memoryDuration, long maxMessages) {
+        this.delegate = delegate;
+        this.logger = logger;
+        this.loadExecutor = loadExecutor;
+        this.memoryDuration = memoryDuration;
+        this.entries = CacheBuilder.newBuilder()
+                .maximumWeight(maxMessages)
+                .weigher((Key key, Entry entry) -> 1 + entry.conversations().size())
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public void saveConversation(Conversation conversation) {
+        delegate.saveConversation(conversation);
+        Key key = new Key(conversation.getPlayerUUID(), conversation.getNpcName());
+        Entry updated = entries.asMap().computeIfPresent(key, (k, entry) -> prepend(entry, conversation));
+        if (updated == null) {
+            savesDuringLoad.computeIfPresent(key, (k, saves) -> {
+                saves.add(conversation);
+                return saves;
+            });
+        }
+    }
+
+    @Override
+    public void saveConversations(List<Conversation> conversations) {
+        conversations.forEach(this::saveConversation);
+    }
+
+    @Override
+    public List<Conversation> getConversations(UUID playerUUID, String npcName, Duration duration) {
+        Key key = new Key(playerUUID, npcName);
+        Entry entry = entries.getIfPresent(key);
+        if (entry == null || entry.windowMillis() < duration.toMillis()) {
+            try {
+                entry = entries.get(key, () -> load(key, duration));
+                if (entry.windowMillis() < duration.toMillis()) {
+                    // Cached with a shorter window before the memory duration grew, read it again
+                    entry = load(key, duration);
+                    entries.put(key, entry);
+                }
+                entry = mergeSavesDuringLoad(key, entry);
+            } catch (ExecutionException e) {
+                savesDuringLoad.remove(key);
+                throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : new RuntimeException(e.getCause());
+            } catch (RuntimeException e) {
+                savesDuringLoad.remove(key);
+                throw e;
+            }
+        }
+        return withinWindow(entry.conversations(), duration);
+    }
+
+    /**
+     * Recent conversations from memory only, or null when this pair isn't cached yet. A miss starts loading it
+     * in the background, so the next call can answer without touching the database on the calling thread.
+     */
+    public List<Conversation> getCachedConversations(UUID playerUUID, String npcName, Duration duration) {
+        Key key = new Key(playerUUID, npcName);
+        Entry entry = entries.getIfPresent(key);
+        if (entry == null) {
+            loadExecutor.execute(() -> {
+                try {
+                    mergeSavesDuringLoad(key, entries.get(key, () -> load(key, duration)));
+                } catch (ExecutionException | RuntimeException e) {
+                    savesDuringLoad.remove(key);
+                    logger.warning("Could not load conversations for " + npcName + ": " + e.getMessage());
+                }
+            });
+            return null;
+        }
+        return withinWindow(entry.conversations(), duration);
+    }
+
+    @Override
+    public void clearAllConversations() {
+        delegate.clearAllConversations();
+        entries.invalidateAll();
+        savesDuringLoad.clear();
+    }
+
+    @Override
+    public void clearConversationsForNpc(String npcName) {
+        delegate.clearConversationsForNpc(npcName);
+        entries.asMap().keySet().removeIf(key -> key.npcName().equals(npcName));
+        savesDuringLoad.keySet().removeIf(key -> key.npcName().equals(npcName));
+    }
+
+    @Override
+    public List<Conversation> getConversationsBefore(long cutoffTimestamp, int limit) {
+        return delegate.getConversationsBefore(cutoffTimestamp, limit);
+    }
+
+    @Override
+    public int deleteConversationsBefore(long cutoffTimestamp, int limit) {
+        return delegate.deleteConversationsBefore(cutoffTimestamp, limit);
+    }
+
+    @Override
+    public void rollUpConversations(UUID playerUUID, String npcName, String summary, List<Conversation> rolledUp) {
+        delegate.rollUpConversations(playerUUID, npcName, summary, rolledUp);
+    }
+
+    @Override
+    public String getConversationRollup(UUID playerUUID, String npcName) {
+        return delegate.getConversationRollup(playerUUID, npcName);
+    }
+
+    @Override
+    public ConversationDigest getConversationDigest(UUID playerUUID, String npcName) {
+        return delegate.getConversationDigest(playerUUID, npcName);
+    }
+
+    @Override
+    public void saveConversationDigests(List<ConversationDigest> digests) {
+        delegate.saveConversationDigests(digests);
+    }
+
+    @Override
+    public int deleteConversationDigestsBefore(long cutoffTimestamp) {
+        return delegate.deleteConversationDigestsBefore(cutoffTimestamp);
+    }
+
+    @Override
+    public void compact() {
+        delegate.compact();
+    }
+
+    public long size() {
+        return entries.size();
+    }
+
+    public CacheStats getStats() {
+        return entries.stats();
+    }
+
+    private Entry load(Key key, Duration duration) {
+        // Always cover the whole memory window, so shorter lookups for the same pair are served from memory
+        Duration window = memoryDuration.get();
+        if (window.compareTo(duration) < 0) {
+            window = duration;
+        }
+        savesDuringLoad.put(key, Collections.synchronizedList(new ArrayList<>()));
+        List<Conversation> conversations = delegate.getConversations(key.playerUUID(), key.npcName(), window);
+        return new Entry(List.copyOf(conversations), window.toMillis());
+    }
+
+    /**
+     * Adds the saves that came in while the pair was being read and that the read didn't see. Saves arriving
+     * after this go straight to the cached entry.
+     */
+    private Entry mergeSavesDuringLoad(Key key, Entry loaded) {
+        List<Conversation> saves = savesDuringLoad.remove(key);
+        if (saves == null || saves.isEmpty()) return loaded;
+
+        Entry merged = entries.asMap().computeIfPresent(key, (k, entry) -> {
+            Entry result = entry;
+            synchronized (saves) {
+                for (Conversation save : saves) {
+                    if (!contains(result.conversations(), save)) {
+                        result = prepend(result, save);
+                    }
+                }
+            }
+            return result;
+        });
+        return merged != null ? merged : loaded;
+    }
+
+    // The read may already include a save when it was still waiting in the write queue
+    private static boolean contains(List<Conversation> conversations, Conversation conversation) {
+        for (Conversation cached : conversations) {
+            if (cached.getTimestamp() == conversation.getTimestamp() && cached.getMessage().equals(conversation.getMessage())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Entry prepend(Entry entry, Conversation conversation) {
+        long cutoffTimestamp = Instant.now().toEpochMilli() - entry.windowMillis();
+        List<Conversation> conversations = new ArrayList<>(entry.conversations().size() + 1);
+        conversations.add(conversation);
+        for (Conversation cached : entry.conversations()) {
+            if (cached.getTimestamp() > cutoffTimestamp) {
+                conversations.add(cached);
+            }
+        }
+        return new Entry(List.copyOf(conversations), entry.windowMillis());
+    }
+
+    private static List<Conversation> withinWindow(List<Conversation> conversations, Duration duration) {
+        long cutoffTimestamp = Instant.now().toEpochMilli() - duration.toMillis();
+        int end = 0;
+        while (end < conversations.size() && conversations.get(end).getTimestamp() > cutoffTimestamp) {
+            end++;
+        }
+        return end == conversations.size() ? conversations : conversations.subList(0, end);
+    }
+}
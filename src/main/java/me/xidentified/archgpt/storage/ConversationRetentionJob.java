@@ -0,0 +1,132 @@
+package me.xidentified.archgpt.storage;
+
+import me.xidentified.archgpt.ArchGPT;
+import me.xidentified.archgpt.storage.dao.ConversationDAO;
+import me.xidentified.archgpt.storage.model.Conversation;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Removes conversation rows older than npc_memory_duration in the background. Each run deletes a bounded number of
+ * batches so the writer is never held for long, optionally folding the expired lines into one summary row per
+ * player/NPC pair first, and compacts the database file every so often once rows were removed.
+ */
+public class ConversationRetentionJob {
+    private static final long TICKS_PER_MINUTE = 20L * 60L;
+
+    private record Pair(UUID playerUUID, String npcName) {}
+
+    private final ArchGPT plugin;
+    private final ConversationDAO conversationDAO;
+    private final Function<List<Conversation>, String> summarizer;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean cancelled;
+    private BukkitTask task;
+    private long lastCompaction = System.currentTimeMillis();
+    private long deletedSinceCompaction;
+
+    public ConversationRetentionJob(ArchGPT plugin, ConversationDAO conversationDAO, Function<List<Conversation>, String> summarizer) {
+        this.plugin = plugin;
+        this.conversationDAO = conversationDAO;
+        this.summarizer = summarizer;
+    }
+
+    public void start() {
+        ConfigurationSection config = plugin.getConfig().getConfigurationSection("storage.retention");
+        if (config != null && !config.getBoolean("enabled", true)) return;
+
+        long intervalTicks = Math.max(1, config != null ? config.getLong("interval", 30) : 30) * TICKS_PER_MINUTE;
+        // First run shortly after startup, not while the server is still loading worlds
+        task = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::run, TICKS_PER_MINUTE, intervalTicks);
+    }
+
+    public void cancel() {
+        cancelled = true;
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void run() {
+        if (!running.compareAndSet(false, true)) return; // The previous run is still going
+        try {
+            ConfigurationSection config = plugin.getConfig().getConfigurationSection("storage.retention");
+            int batchSize = Math.max(1, config != null ? config.getInt("batch_size", 1000) : 1000);
+            int maxBatches = Math.max(1, config != null ? config.getInt("max_batches_per_run", 10) : 10);
+            boolean rollup = config != null && config.getBoolean("rollup", false);
+            long compactIntervalMillis = (config != null ? config.getLong("compact_interval", 1440) : 1440) * 60_000L;
+
+            long cutoffTimestamp = Instant.now().toEpochMilli() - plugin.getConfigHandler().getNpcMemoryDuration().toMillis();
+            long removed = 0;
+            for (int batch = 0; batch < maxBatches && !cancelled; batch++) {
+                int batchRemoved = rollup ? rollUpBatch(cutoffTimestamp, batchSize)
+                        : conversationDAO.deleteConversationsBefore(cutoffTimestamp, batchSize);
+                removed += batchRemoved;
+                if (batchRemoved < batchSize) break;
+            }
+            deletedSinceCompaction += removed;
+            if (removed > 0) {
+                plugin.debugLog("Retention removed " + removed + " expired conversation messages");
+            }
+            if (!cancelled) {
+                int digestsRemoved = conversationDAO.deleteConversationDigestsBefore(cutoffTimestamp);
+                if (digestsRemoved > 0) {
+                    plugin.debugLog("Retention removed " + digestsRemoved + " expired conversation digests");
+                }
+            }
+
+            if (!cancelled && compactIntervalMillis > 0 && deletedSinceCompaction > 0
+                    && System.currentTimeMillis() - lastCompaction >= compactIntervalMillis) {
+                long start = System.currentTimeMillis();
+                conversationDAO.compact();
+                lastCompaction = System.currentTimeMillis();
+                deletedSinceCompaction = 0;
+                plugin.debugLog("Compacted conversation storage in " + (lastCompaction - start) + "ms");
+            }
+        } catch (RuntimeException e) {
+            plugin.getLogger().severe("Conversation retention failed: " + e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // Folds the oldest expired rows into their pair's summary, the DAO deletes them in the same transaction
+    private int rollUpBatch(long cutoffTimestamp, int batchSize) {
+        List<Conversation> expired = conversationDAO.getConversationsBefore(cutoffTimestamp, batchSize);
+        Map<Pair, List<Conversation>> byPair = new LinkedHashMap<>();
+        for (Conversation conversation : expired) {
+            byPair.computeIfAbsent(new Pair(conversation.getPlayerUUID(), conversation.getNpcName()), pair -> new ArrayList<>())
+                    .add(conversation);
+        }
+
+        for (Map.Entry<Pair, List<Conversation>> entry : byPair.entrySet()) {
+            Pair pair = entry.getKey();
+            List<Conversation> rolledUp = entry.getValue();
+
+            // The previous summary takes part like an older line, so the rollup keeps covering everything before it
+            List<Conversation> toSummarize = new ArrayList<>(rolledUp.size() + 1);
+            String previousSummary = conversationDAO.getConversationRollup(pair.playerUUID(), pair.npcName());
+            if (previousSummary != null && !previousSummary.isEmpty()) {
+                toSummarize.add(new Conversation(pair.playerUUID(), pair.npcName(), previousSummary, 0L, true));
+            }
+            toSummarize.addAll(rolledUp);
+
+            String summary = summarizer.apply(toSummarize);
+            if (summary == null || summary.isEmpty()) {
+                summary = previousSummary != null ? previousSummary : "";
+            }
+            conversationDAO.rollUpConversations(pair.playerUUID(), pair.npcName(), summary, rolledUp);
+        }
+        return expired.size();
+    }
+}
@@ -0,0 +1,232 @@
+package me.xidentified.archgpt.storage;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.xidentified.archgpt.storage.dao.ConversationDAO;
+import me.xidentified.archgpt.storage.model.Conversation;
+import me.xidentified.archgpt.storage.model.ConversationDigest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind front for a ConversationDAO. Saves only enqueue, a single background writer inserts them in
+ * batches, one transaction per batch, once enough rows are waiting or the flush interval passed. When the
+ * queue is full new rows are dropped and counted rather than stalling the caller, which is usually the main thread.
+ */
+public class ConversationWriteQueue implements ConversationDAO {
+
+    public record WriteQueueStats(int queued, int capacity, long written, long batches, long dropped, long failed) {}
+
+    private final ConversationDAO delegate;
+    private final Logger logger;
+    private final int capacity;
+    private final int batchSize;
+    private final BlockingQueue<Conversation> pending;
+    private final ScheduledExecutorService writer;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    // Rows move from the queue to the batch being written under this lock, so readers always find them in one of the two
+    private final Object transferLock = new Object();
+    private volatile List<Conversation> inFlight = List.of();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public ConversationWriteQueue(ConversationDAO delegate, Logger logger, int capacity, int batchSize, long flushIntervalMillis) {
+        this.delegate = delegate;
+        this.logger = logger;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.pending = new ArrayBlockingQueue<>(capacity);
+        this.writer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ArchGPT-DB-Writer").setDaemon(true).build());
+        writer.scheduleWithFixedDelay(this::drain, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void saveConversation(Conversation conversation) {
+        if (!pending.offer(conversation)) {
+            // Only log every hundredth drop so a stuck database doesn't flood the console
+            if (dropped.getAndIncrement() % 100 == 0) {
+                logger.warning("Conversation write queue is full, dropped " + dropped.get() + " messages so far");
+            }
+            return;
+        }
+        // Enough for a full batch, don't wait for the next flush
+        if (pending.size() >= batchSize && drainScheduled.compareAndSet(false, true)) {
+            writer.execute(this::drain);
+        }
+    }
+
+    @Override
+    public void saveConversations(List<Conversation> conversations) {
+        conversations.forEach(this::saveConversation);
+    }
+
+    // Rows still waiting in the queue or being written are included, so a reply is remembered right after it was saved
+    @Override
+    public List<Conversation> getConversations(UUID playerUUID, String npcName, Duration memoryDuration) {
+        long cutoffTimestamp = Instant.now().toEpochMilli() - memoryDuration.toMillis();
+
+        // Taken before the database is read, so a row committed in between turns up in one place or both
+        List<Conversation> unwritten = new ArrayList<>();
+        synchronized (transferLock) {
+            for (Conversation conversation : inFlight) {
+                if (isFor(conversation, playerUUID, npcName, cutoffTimestamp)) unwritten.add(conversation);
+            }
+            for (Conversation conversation : pending) {
+                if (isFor(conversation, playerUUID, npcName, cutoffTimestamp)) unwritten.add(conversation);
+            }
+        }
+        List<Conversation> conversations = delegate.getConversations(playerUUID, npcName, memoryDuration);
+        if (unwritten.isEmpty()) {
+            return conversations;
+        }
+
+        List<Conversation> merged = new ArrayList<>(unwritten.size() + conversations.size());
+        for (int i = unwritten.size() - 1; i >= 0; i--) { // Newest first, like the DAO
+            Conversation conversation = unwritten.get(i);
+            if (!containsLine(conversations, conversation)) {
+                merged.add(conversation);
+            }
+        }
+        merged.addAll(conversations);
+        return merged;
+    }
+
+    private static boolean isFor(Conversation conversation, UUID playerUUID, String npcName, long cutoffTimestamp) {
+        return conversation.getPlayerUUID().equals(playerUUID) && conversation.getNpcName().equals(npcName)
+                && conversation.getTimestamp() > cutoffTimestamp;
+    }
+
+    // Rows read back from the database have an id, so the same line is matched by its time and text
+    private static boolean containsLine(List<Conversation> conversations, Conversation conversation) {
+        for (Conversation stored : conversations) {
+            if (stored.getTimestamp() == conversation.getTimestamp() && stored.getMessage().equals(conversation.getMessage())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Deletes run on the writer thread too, so a batch in flight can't bring rows back afterwards
+    @Override
+    public void clearAllConversations() {
+        runOnWriter(() -> {
+            pending.clear();
+            delegate.clearAllConversations();
+        });
+    }
+
+    @Override
+    public void clearConversationsForNpc(String npcName) {
+        runOnWriter(() -> {
+            pending.removeIf(conversation -> conversation.getNpcName().equals(npcName));
+            delegate.clearConversationsForNpc(npcName);
+        });
+    }
+
+    @Override
+    public List<Conversation> getConversationsBefore(long cutoffTimestamp, int limit) {
+        return delegate.getConversationsBefore(cutoffTimestamp, limit);
+    }
+
+    @Override
+    public int deleteConversationsBefore(long cutoffTimestamp, int limit) {
+        return delegate.deleteConversationsBefore(cutoffTimestamp, limit);
+    }
+
+    @Override
+    public void rollUpConversations(UUID playerUUID, String npcName, String summary, List<Conversation> rolledUp) {
+        delegate.rollUpConversations(playerUUID, npcName, summary, rolledUp);
+    }
+
+    @Override
+    public String getConversationRollup(UUID playerUUID, String npcName) {
+        return delegate.getConversationRollup(playerUUID, npcName);
+    }
+
+    @Override
+    public ConversationDigest getConversationDigest(UUID playerUUID, String npcName) {
+        return delegate.getConversationDigest(playerUUID, npcName);
+    }
+
+    @Override
+    public void saveConversationDigests(List<ConversationDigest> digests) {
+        delegate.saveConversationDigests(digests);
+    }
+
+    @Override
+    public int deleteConversationDigestsBefore(long cutoffTimestamp) {
+        return delegate.deleteConversationDigestsBefore(cutoffTimestamp);
+    }
+
+    @Override
+    public void compact() {
+        delegate.compact();
+    }
+
+    public WriteQueueStats getStats() {
+        return new WriteQueueStats(pending.size(), capacity, written.get(), batches.get(), dropped.get(), failed.get());
+    }
+
+    // Writes everything still queued and stops the writer, called on disable before the connections close
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warning("Conversation writer did not finish in time");
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        if (!pending.isEmpty()) {
+            logger.warning(pending.size() + " conversation messages could not be saved on shutdown");
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        while (true) {
+            List<Conversation> batch = new ArrayList<>(batchSize);
+            synchronized (transferLock) {
+                if (pending.drainTo(batch, batchSize) == 0) return;
+                inFlight = batch;
+            }
+            try {
+                delegate.saveConversations(batch);
+                written.addAndGet(batch.size());
+                batches.incrementAndGet();
+            } catch (RuntimeException e) {
+                failed.addAndGet(batch.size());
+                logger.severe(e.getMessage());
+            } finally {
+                // Committed rows are found in the database from here on
+                inFlight = List.of();
+            }
+        }
+    }
+
+    private void runOnWriter(Runnable task) {
+        try {
+            writer.submit(task).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the conversation writer", e);
+        } catch (RejectedExecutionException e) {
+            // Already shutting down, run it here instead
+            task.run();
+        }
+    }
+}
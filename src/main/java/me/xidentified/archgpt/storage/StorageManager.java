@@ -0,0 +1,132 @@
+package me.xidentified.archgpt.storage;
+
+import lombok.Getter;
+import me.xidentified.archgpt.ArchGPT;
+import me.xidentified.archgpt.storage.connection.ConnectionProvider;
+import me.xidentified.archgpt.storage.connection.ConnectionStats;
+import me.xidentified.archgpt.storage.connection.HikariConnectionProvider;
+import me.xidentified.archgpt.storage.connection.SQLiteConnectionProvider;
+import me.xidentified.archgpt.storage.dao.*;
+import me.xidentified.archgpt.storage.model.Conversation;
+import me.xidentified.archgpt.storage.schema.ConversationSchema;
+import me.xidentified.archgpt.storage.schema.Migration;
+import me.xidentified.archgpt.storage.schema.ReportSchema;
+import me.xidentified.archgpt.storage.schema.SchemaMigrator;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Opens the database connections once and hands them to the DAOs. MySQL shares one pool between
+ * conversations and reports, SQLite keeps one long-lived provider per database file.
+ */
+public class StorageManager {
+    private final ArchGPT plugin;
+    private final List<ConnectionProvider> connectionProviders = new ArrayList<>();
+    private final ConversationDAO conversationStore;
+    private ConversationRetentionJob retentionJob;
+    @Getter private final ConversationWriteQueue writeQueue;
+    @Getter private final ConversationCache conversationDAO;
+    @Getter private final ReportDAO reportDAO;
+
+    public StorageManager(ArchGPT plugin) {
+        this.plugin = plugin;
+        String storageType = plugin.getConfig().getString("storage.type", "sqlite");
+        if (storageType.equalsIgnoreCase("mysql")) {
+            ConfigurationSection dbConfig = plugin.getConfig().getConfigurationSection("storage.mysql");
+            ConnectionProvider pool = register(new HikariConnectionProvider(
+                    dbConfig.getString("host"),
+                    dbConfig.getInt("port"),
+                    dbConfig.getString("database"),
+                    dbConfig.getString("username"),
+                    dbConfig.getString("password"),
+                    dbConfig.getInt("pool_size", 10)));
+            migrate(pool, ConversationSchema.NAME, ConversationSchema.migrations(true));
+            this.conversationStore = new MySQLConversationDAO(pool);
+            migrate(pool, ReportSchema.NAME, ReportSchema.migrations(true));
+            this.reportDAO = new MySQLReportDAO(pool, plugin.getLogger(), plugin.getAsyncExecutor());
+        } else {
+            // Default to SQLite if the specified storage type is not recognized
+            File storageFolder = new File(plugin.getDataFolder(), "storage");
+            ConnectionProvider conversations = openSQLite(new File(storageFolder, "conversations.db"));
+            migrate(conversations, ConversationSchema.NAME, ConversationSchema.migrations(false));
+            SQLiteConversationDAO sqliteConversations = new SQLiteConversationDAO(conversations);
+            enableIncrementalVacuum(sqliteConversations);
+            this.conversationStore = sqliteConversations;
+            ConnectionProvider reports = openSQLite(new File(storageFolder, "reports.db"));
+            migrate(reports, ReportSchema.NAME, ReportSchema.migrations(false));
+            this.reportDAO = new SQLiteReportDAO(reports, plugin.getLogger(), plugin.getAsyncExecutor());
+        }
+        this.writeQueue = createWriteQueue(plugin, conversationStore);
+
+        // Reads of recent conversations, placeholders in particular, are answered from memory
+        long maxCachedMessages = plugin.getConfig().getLong("storage.memory_cache.max_messages", 5000);
+        this.conversationDAO = new ConversationCache(writeQueue, plugin.getLogger(), plugin.getAsyncExecutor(),
+                () -> plugin.getConfigHandler().getNpcMemoryDuration(), Math.max(1, maxCachedMessages));
+    }
+
+    // Expired rows are pruned straight from the database, the queue and cache only hold rows inside the memory window
+    public void startRetention(Function<List<Conversation>, String> summarizer) {
+        this.retentionJob = new ConversationRetentionJob(plugin, conversationStore, summarizer);
+        retentionJob.start();
+    }
+
+    public List<ConnectionStats> getStats() {
+        return connectionProviders.stream().map(ConnectionProvider::getStats).toList();
+    }
+
+    public void close() {
+        if (retentionJob != null) {
+            retentionJob.cancel();
+        }
+        // Pending conversation and report writes go out before their connections close
+        writeQueue.close();
+        reportDAO.close();
+        connectionProviders.forEach(ConnectionProvider::close);
+        connectionProviders.clear();
+    }
+
+    // NPC replies are saved from the main thread, so they only enqueue and a background writer inserts them in batches
+    private ConversationWriteQueue createWriteQueue(ArchGPT plugin, ConversationDAO conversationDAO) {
+        ConfigurationSection queueConfig = plugin.getConfig().getConfigurationSection("storage.write_queue");
+        int capacity = queueConfig != null ? queueConfig.getInt("capacity", 1000) : 1000;
+        int batchSize = queueConfig != null ? queueConfig.getInt("batch_size", 50) : 50;
+        long flushIntervalMillis = queueConfig != null ? queueConfig.getLong("flush_interval", 1000) : 1000;
+        return new ConversationWriteQueue(conversationDAO, plugin.getLogger(), Math.max(1, capacity), Math.max(1, batchSize),
+                Math.max(50, flushIntervalMillis));
+    }
+
+    // Opt-in, since the one full VACUUM rewrites the file. Done before the write queue starts, so no writes wait on it
+    private void enableIncrementalVacuum(SQLiteConversationDAO conversationDAO) {
+        if (!plugin.getConfig().getBoolean("storage.retention.vacuum_on_startup", false)) return;
+        long start = System.currentTimeMillis();
+        try {
+            if (conversationDAO.enableIncrementalVacuum()) {
+                plugin.getLogger().info("Switched conversations.db to incremental vacuum in " + (System.currentTimeMillis() - start) + "ms");
+            }
+        } catch (RuntimeException e) {
+            plugin.getLogger().warning("Could not switch conversations.db to incremental vacuum: " + e.getMessage());
+        }
+    }
+
+    private void migrate(ConnectionProvider connectionProvider, String schema, List<Migration> migrations) {
+        new SchemaMigrator(connectionProvider, plugin.getLogger(), schema, migrations).migrate();
+    }
+
+    private ConnectionProvider openSQLite(File databaseFile) {
+        try {
+            return register(new SQLiteConnectionProvider(databaseFile));
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not open SQLite database " + databaseFile.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private ConnectionProvider register(ConnectionProvider connectionProvider) {
+        connectionProviders.add(connectionProvider);
+        return connectionProvider;
+    }
+}
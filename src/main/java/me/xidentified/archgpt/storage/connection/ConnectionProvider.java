@@ -0,0 +1,32 @@
+package me.xidentified.archgpt.storage.connection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Hands out database connections and prepared statements to the DAOs. Statements passed to the callbacks
+ * may be cached by the provider, so callers must not close them or keep them after the callback returns.
+ */
+public interface ConnectionProvider extends AutoCloseable {
+
+    // Runs a read-only statement
+    <R> R query(String sql, SQLFunction<PreparedStatement, R> work) throws SQLException;
+
+    // Runs a statement that modifies data
+    <R> R update(String sql, SQLFunction<PreparedStatement, R> work) throws SQLException;
+
+    // Runs several writes on one connection and commits them together, rolling back on failure
+    <R> R transaction(SQLFunction<Connection, R> work) throws SQLException;
+
+    // Runs schema statements such as CREATE TABLE, one per string
+    void execute(String... statements) throws SQLException;
+
+    // Whether the database is MySQL, for the few statements whose syntax differs
+    boolean isMySQL();
+
+    ConnectionStats getStats();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,8 @@
+package me.xidentified.archgpt.storage.connection;
+
+/**
+ * Point-in-time view of a connection provider, shown in /archgpt stats.
+ */
+public record ConnectionStats(String name, int activeConnections, int idleConnections, int totalConnections,
+                              int threadsAwaiting, long queries, long updates) {
+}
@@ -0,0 +1,111 @@
+package me.xidentified.archgpt.storage.connection;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pooled MySQL connections. Prepared statements are cached by the driver per connection,
+ * so preparing the same SQL again is a map lookup instead of a round trip.
+ */
+public class HikariConnectionProvider implements ConnectionProvider {
+    private static final int PREPARED_STATEMENT_CACHE_SIZE = 250;
+
+    private final HikariDataSource dataSource;
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+
+    public HikariConnectionProvider(String host, int port, String database, String username, String password, int maxPoolSize) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("ArchGPT-MySQL");
+        config.setJdbcUrl("jdbc:mysql://" + host + ":" + port + "/" + database + "?useSSL=false");
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(maxPoolSize);
+        config.setMinimumIdle(Math.min(2, maxPoolSize));
+
+        // Let Connector/J keep prepared statements around between uses
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", String.valueOf(PREPARED_STATEMENT_CACHE_SIZE));
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        config.addDataSourceProperty("rewriteBatchedStatements", "true");
+
+        this.dataSource = new HikariDataSource(config);
+    }
+
+    @Override
+    public <R> R query(String sql, SQLFunction<PreparedStatement, R> work) throws SQLException {
+        queries.incrementAndGet();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            return work.apply(stmt);
+        }
+    }
+
+    @Override
+    public <R> R update(String sql, SQLFunction<PreparedStatement, R> work) throws SQLException {
+        updates.incrementAndGet();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            return work.apply(stmt);
+        }
+    }
+
+    @Override
+    public <R> R transaction(SQLFunction<Connection, R> work) throws SQLException {
+        updates.incrementAndGet();
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                R result = work.apply(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    @Override
+    public void execute(String... statements) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    @Override
+    public boolean isMySQL() {
+        return true;
+    }
+
+    @Override
+    public ConnectionStats getStats() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return new ConnectionStats(dataSource.getPoolName(), 0, 0, 0, 0, queries.get(), updates.get());
+        }
+        return new ConnectionStats(dataSource.getPoolName(), pool.getActiveConnections(), pool.getIdleConnections(),
+                pool.getTotalConnections(), pool.getThreadsAwaitingConnection(), queries.get(), updates.get());
+    }
+
+    @Override
+    public void close() {
+        if (!dataSource.isClosed()) {
+            dataSource.close();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package me.xidentified.archgpt.storage.connection;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface SQLFunction<T, R> {
+    R apply(T t) throws SQLException;
+}
@@ -0,0 +1,152 @@
+package me.xidentified.archgpt.storage.connection;
+
+import java.io.File;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Long-lived connections to one SQLite file in WAL mode: a single writer that serializes all modifications and a
+ * separate reader, so lookups are not held up by writes. Each connection keeps its prepared statements open.
+ */
+public class SQLiteConnectionProvider implements ConnectionProvider {
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
+
+    private final String name;
+    private final CachedConnection writer;
+    private final CachedConnection reader;
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+
+    public SQLiteConnectionProvider(File databaseFile) throws SQLException {
+        File parent = databaseFile.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        this.name = "SQLite " + databaseFile.getName();
+        String url = "jdbc:sqlite:" + databaseFile.getAbsolutePath();
+
+        this.writer = new CachedConnection(DriverManager.getConnection(url));
+        try (Statement stmt = writer.connection.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL");
+            stmt.execute("PRAGMA synchronous=NORMAL");
+            stmt.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MILLIS);
+        }
+
+        this.reader = new CachedConnection(DriverManager.getConnection(url));
+        try (Statement stmt = reader.connection.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MILLIS);
+            stmt.execute("PRAGMA query_only=ON");
+        }
+    }
+
+    @Override
+    public <R> R query(String sql, SQLFunction<PreparedStatement, R> work) throws SQLException {
+        queries.incrementAndGet();
+        return reader.run(sql, work);
+    }
+
+    @Override
+    public <R> R update(String sql, SQLFunction<PreparedStatement, R> work) throws SQLException {
+        updates.incrementAndGet();
+        return writer.run(sql, work);
+    }
+
+    @Override
+    public <R> R transaction(SQLFunction<Connection, R> work) throws SQLException {
+        updates.incrementAndGet();
+        writer.lock.lock();
+        try {
+            Connection conn = writer.connection;
+            conn.setAutoCommit(false);
+            try {
+                R result = work.apply(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            writer.lock.unlock();
+        }
+    }
+
+    @Override
+    public void execute(String... statements) throws SQLException {
+        writer.lock.lock();
+        try (Statement stmt = writer.connection.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        } finally {
+            writer.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isMySQL() {
+        return false;
+    }
+
+    @Override
+    public ConnectionStats getStats() {
+        int active = (writer.lock.isLocked() ? 1 : 0) + (reader.lock.isLocked() ? 1 : 0);
+        int waiting = writer.lock.getQueueLength() + reader.lock.getQueueLength();
+        return new ConnectionStats(name, active, 2 - active, 2, waiting, queries.get(), updates.get());
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+        reader.close();
+    }
+
+    private static final class CachedConnection {
+        private final Connection connection;
+        private final ReentrantLock lock = new ReentrantLock(true);
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private CachedConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        private <R> R run(String sql, SQLFunction<PreparedStatement, R> work) throws SQLException {
+            lock.lock();
+            try {
+                PreparedStatement stmt = statements.get(sql);
+                if (stmt == null) {
+                    stmt = connection.prepareStatement(sql);
+                    statements.put(sql, stmt);
+                }
+                try {
+                    return work.apply(stmt);
+                } finally {
+                    stmt.clearParameters();
+                    stmt.clearBatch();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void close() {
+            lock.lock();
+            try {
+                for (PreparedStatement stmt : statements.values()) {
+                    stmt.close();
+                }
+                statements.clear();
+                connection.close();
+            } catch (SQLException ignored) {
+                // Closing on shutdown, nothing left to do with the connection
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package me.xidentified.archgpt.storage.dao;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.xidentified.archgpt.storage.model.Report;
+import me.xidentified.archgpt.storage.model.ReportFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Runs a backend's report queries off the calling thread. Reads go to the shared worker pool, every write goes
+ * through one writer thread per backend. Reports submitted while a batch is being written are collected and
+ * inserted together in the next transaction, so a burst of reports costs a handful of commits instead of one each.
+ */
+public abstract class AsyncReportDAO implements ReportDAO {
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private record PendingReport(Report report, CompletableFuture<Void> future) {}
+
+    protected final Logger logger;
+    private final Executor readExecutor;
+    private final ExecutorService writer;
+    private final Queue<PendingReport> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    protected AsyncReportDAO(Logger logger, Executor readExecutor, String writerName) {
+        this.logger = logger;
+        this.readExecutor = readExecutor;
+        this.writer = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat(writerName).setDaemon(true).build());
+    }
+
+    // Inserts all reports in one transaction, throws if none of them were saved
+    protected abstract void insertReports(List<Report> reports);
+
+    protected abstract List<Report> queryReports(ReportFilter filter, int afterId, int limit);
+
+    protected abstract int queryReportCount(ReportFilter filter);
+
+    protected abstract void deleteReportById(int reportId);
+
+    @Override
+    public CompletableFuture<Void> saveReport(Report report) {
+        // Rejected up front, the column is NOT NULL and the row would only fail the batch it lands in
+        if (report.getReportType() == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("report has no type"));
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        pending.add(new PendingReport(report, future));
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Shutting down, write it from here instead
+                drain();
+            }
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<List<Report>> getReports(ReportFilter filter, int afterId, int limit) {
+        return CompletableFuture.supplyAsync(() -> queryReports(filter, afterId, limit), readExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Integer> countReports(ReportFilter filter) {
+        return CompletableFuture.supplyAsync(() -> queryReportCount(filter), readExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteReport(int reportId) {
+        return CompletableFuture.runAsync(() -> deleteReportById(reportId), writer);
+    }
+
+    // Writes whatever is still queued and stops the writer, called before the connections close
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warning("Report writer did not finish in time");
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        List<PendingReport> batch = new ArrayList<>();
+        while (true) {
+            PendingReport next;
+            while (batch.size() < MAX_BATCH_SIZE && (next = pending.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.isEmpty()) return;
+
+            try {
+                insertReports(batch.stream().map(PendingReport::report).toList());
+                batch.forEach(pendingReport -> pendingReport.future().complete(null));
+            } catch (RuntimeException e) {
+                if (batch.size() == 1) {
+                    batch.get(0).future().completeExceptionally(e);
+                } else {
+                    // One bad row rolls back the whole batch, so each report is tried again on its own
+                    logger.warning("Could not save " + batch.size() + " reports together, saving them one by one: " + e.getMessage());
+                    batch.forEach(this::insertAlone);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void insertAlone(PendingReport pendingReport) {
+        try {
+            insertReports(List.of(pendingReport.report()));
+            pendingReport.future().complete(null);
+        } catch (RuntimeException e) {
+            pendingReport.future().completeExceptionally(e);
+        }
+    }
+}
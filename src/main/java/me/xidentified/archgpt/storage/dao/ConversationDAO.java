@@ -1,6 +1,7 @@
 package me.xidentified.archgpt.storage.dao;
 
 import me.xidentified.archgpt.storage.model.Conversation;
+import me.xidentified.archgpt.storage.model.ConversationDigest;
 
 import java.time.Duration;
 import java.util.List;
@@ -8,7 +9,16 @@ import java.util.UUID;
 
 public interface ConversationDAO {
     void saveConversation(Conversation conversation);
+    void saveConversations(List<Conversation> conversations);
     List<Conversation> getConversations(UUID playerUUID, String npcName, Duration memoryDuration);
     void clearAllConversations();
     void clearConversationsForNpc(String npcName);
+    List<Conversation> getConversationsBefore(long cutoffTimestamp, int limit);
+    int deleteConversationsBefore(long cutoffTimestamp, int limit);
+    void rollUpConversations(UUID playerUUID, String npcName, String summary, List<Conversation> rolledUp);
+    String getConversationRollup(UUID playerUUID, String npcName);
+    ConversationDigest getConversationDigest(UUID playerUUID, String npcName);
+    void saveConversationDigests(List<ConversationDigest> digests);
+    int deleteConversationDigestsBefore(long cutoffTimestamp);
+    void compact();
 }
@@ -1,128 +1,116 @@
 package me.xidentified.archgpt.storage.dao;
 
-import com.zaxxer.hikari.HikariConfig;
-import com.zaxxer.hikari.HikariDataSource;
+import me.xidentified.archgpt.storage.connection.ConnectionProvider;
 import me.xidentified.archgpt.storage.model.Report;
+import me.xidentified.archgpt.storage.model.ReportFilter;
 import net.kyori.adventure.text.Component;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-
-public class MySQLReportDAO implements ReportDAO {
-    private final HikariDataSource dataSource;
-    public MySQLReportDAO(String host, int port, String database, String username, String password) {
-        HikariConfig config = new HikariConfig();
-        config.setJdbcUrl("jdbc:mysql://" + host + ":" + port + "/" + database + "?useSSL=false");
-        config.setUsername(username);
-        config.setPassword(password);
-
-        this.dataSource = new HikariDataSource(config);
-
-        // Initialize the database (create tables etc.)
-        initialize();
-    }
-    private void initialize() {
-        try (Connection conn = dataSource.getConnection();
-             Statement stmt = conn.createStatement()) {
-            String sql = "CREATE TABLE IF NOT EXISTS reports (" +
-                    "id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "playerName VARCHAR(255) NOT NULL," +
-                    "npcName VARCHAR(255) NOT NULL," +
-                    "reportType VARCHAR(255) NOT NULL," +
-                    "feedback TEXT," +
-                    "npcResponse TEXT," +
-                    "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ");";
-            stmt.execute(sql);
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        }
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+public class MySQLReportDAO extends AsyncReportDAO {
+    private final ConnectionProvider connectionProvider;
+    public MySQLReportDAO(ConnectionProvider connectionProvider, Logger logger, Executor readExecutor) {
+        super(logger, readExecutor, "ArchGPT-MySQL-Report-Writer");
+        this.connectionProvider = connectionProvider;
     }
 
     @Override
-    public void saveReport(Report report) {
-        if (report.getReportType() == null) {
-            // Handle null reportType, e.g., log an error or set a default value
-            System.out.println("Error: reportType was null!");
-        }
-
+    protected void insertReports(List<Report> reports) {
         String sql = "INSERT INTO reports (playerName, npcName, reportType, feedback, npcResponse, timestamp) VALUES(?,?,?,?,?,?)";
 
-        try (Connection conn = this.dataSource.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, report.getPlayerName());
-            pstmt.setString(2, report.getNpcName());
-            pstmt.setString(3, report.getReportType());
-            pstmt.setString(4, report.getFeedback());
-            pstmt.setString(5, report.getNpcResponse());
-            pstmt.setTimestamp(6, Timestamp.valueOf(report.getTimestamp()));
-            pstmt.executeUpdate();
+        try {
+            connectionProvider.transaction(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (Report report : reports) {
+                        pstmt.setString(1, report.getPlayerName());
+                        pstmt.setString(2, report.getNpcName());
+                        pstmt.setString(3, report.getReportType());
+                        pstmt.setString(4, report.getFeedback());
+                        pstmt.setString(5, report.getNpcResponse());
+                        pstmt.setTimestamp(6, Timestamp.valueOf(report.getTimestamp()));
+                        pstmt.addBatch();
+                    }
+                    return pstmt.executeBatch();
+                }
+            });
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            throw new RuntimeException("Error saving reports: " + e.getMessage(), e);
         }
     }
 
     @Override
-    public List<Report> getAllReports() {
+    protected List<Report> queryReports(ReportFilter filter, int afterId, int limit) {
         List<Report> reports = new ArrayList<>();
-        String sql = "SELECT * FROM reports";
-
-        try (Connection conn = dataSource.getConnection();
-             Statement stmt  = conn.createStatement();
-             ResultSet rs    = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                int id = rs.getInt("id"); // Fetch the report ID
-                String playerName = rs.getString("playerName");
-                String npcName = rs.getString("npcName");
-                String reportType = rs.getString("reportType");
-                String feedback = rs.getString("feedback");
-                String npcResponse = rs.getString("npcResponse");
-                LocalDateTime timestamp = rs.getTimestamp("timestamp").toLocalDateTime();
 
-                // Pass the fetched ID to the Report constructor
-                Report report = new Report(
-                        id,
-                        playerName,
-                        npcName,
-                        reportType,
-                        Component.text(feedback),
-                        npcResponse,
-                        timestamp);
-
-                reports.add(report);
-            }
+        try {
+            connectionProvider.query(ReportQueries.pageQuery(filter), stmt -> {
+                stmt.setInt(1, afterId);
+                int index = ReportQueries.bindFilter(stmt, filter, 2);
+                stmt.setInt(index, limit);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        reports.add(readReport(rs));
+                    }
+                }
+                return reports;
+            });
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            logger.severe("Error reading reports: " + e.getMessage());
         }
         return reports;
     }
 
     @Override
-    public void deleteReport(int reportId) {
-        String sql = "DELETE FROM reports WHERE id = ?";
-
-        try (Connection conn = this.dataSource.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, reportId);
-            pstmt.executeUpdate();
-
+    protected int queryReportCount(ReportFilter filter) {
+        try {
+            return connectionProvider.query(ReportQueries.countQuery(filter), stmt -> {
+                ReportQueries.bindFilter(stmt, filter, 1);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            });
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            logger.severe("Error counting reports: " + e.getMessage());
+            return 0;
         }
     }
 
-    @Override
-    public void loadReports() {
-        // This method is not needed for MySQL as the getAllReports() method already handles loading.
+    private Report readReport(ResultSet rs) throws SQLException {
+        int id = rs.getInt("id"); // Fetch the report ID
+        String playerName = rs.getString("playerName");
+        String npcName = rs.getString("npcName");
+        String reportType = rs.getString("reportType");
+        String feedback = rs.getString("feedback");
+        String npcResponse = rs.getString("npcResponse");
+        LocalDateTime timestamp = rs.getTimestamp("timestamp").toLocalDateTime();
+
+        // Pass the fetched ID to the Report constructor
+        return new Report(
+                id,
+                playerName,
+                npcName,
+                reportType,
+                Component.text(feedback),
+                npcResponse,
+                timestamp);
     }
 
-    public void closeConnectionPool() {
-        if (dataSource != null && !dataSource.isClosed()) {
-            dataSource.close();
+    @Override
+    protected void deleteReportById(int reportId) {
+        String sql = "DELETE FROM reports WHERE id = ?";
+
+        try {
+            connectionProvider.update(sql, pstmt -> {
+                pstmt.setInt(1, reportId);
+                return pstmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            logger.severe("Error deleting report " + reportId + ": " + e.getMessage());
         }
     }
 }
@@ -0,0 +1,56 @@
+package me.xidentified.archgpt.storage.dao;
+
+import me.xidentified.archgpt.storage.connection.ConnectionProvider;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps NPC names to their row in npc_names. Ids never change once assigned, so every name is looked up at most once.
+ */
+public class NpcNameRegistry {
+    private final ConnectionProvider connectionProvider;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    public NpcNameRegistry(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+    }
+
+    // Id for a name that is about to be written, registering it if it's new
+    public int getOrCreateId(String npcName) throws SQLException {
+        Integer id = findId(npcName);
+        if (id != null) return id;
+
+        String insert = connectionProvider.isMySQL()
+                ? "INSERT IGNORE INTO npc_names (name) VALUES (?)"
+                : "INSERT OR IGNORE INTO npc_names (name) VALUES (?)";
+        connectionProvider.update(insert, stmt -> {
+            stmt.setString(1, npcName);
+            return stmt.executeUpdate();
+        });
+        id = findId(npcName);
+        if (id == null) {
+            throw new SQLException("Could not register NPC name " + npcName);
+        }
+        return id;
+    }
+
+    // Id for a name that is only read, or null if nothing was ever saved for it
+    public Integer findId(String npcName) throws SQLException {
+        Integer cached = ids.get(npcName);
+        if (cached != null) return cached;
+
+        Integer id = connectionProvider.query("SELECT id FROM npc_names WHERE name = ?", stmt -> {
+            stmt.setString(1, npcName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt("id") : null;
+            }
+        });
+        if (id != null) {
+            ids.put(npcName, id);
+        }
+        return id;
+    }
+}
@@ -2,12 +2,17 @@ package me.xidentified.archgpt.storage.dao;
 
 
 import me.xidentified.archgpt.storage.model.Report;
+import me.xidentified.archgpt.storage.model.ReportFilter;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+// Every call returns right away, the database work happens on the DAO's own threads
 public interface ReportDAO {
-    void saveReport(Report report);
-    List<Report> getAllReports();
-    void deleteReport(int reportId);
-    void loadReports();
+    CompletableFuture<Void> saveReport(Report report);
+    // Up to limit reports matching the filter with an id above afterId, in id order
+    CompletableFuture<List<Report>> getReports(ReportFilter filter, int afterId, int limit);
+    CompletableFuture<Integer> countReports(ReportFilter filter);
+    CompletableFuture<Void> deleteReport(int reportId);
+    void close();
 }
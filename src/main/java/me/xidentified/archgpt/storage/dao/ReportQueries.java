@@ -0,0 +1,40 @@
+package me.xidentified.archgpt.storage.dao;
+
+import me.xidentified.archgpt.storage.model.ReportFilter;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * SQL for paging through reports, shared by both backends. Pages are keyed by the last id seen rather than an
+ * offset, so every page is a range scan on the primary key or one of the (column, id) indexes.
+ */
+final class ReportQueries {
+
+    private ReportQueries() {
+    }
+
+    static String pageQuery(ReportFilter filter) {
+        return "SELECT * FROM reports WHERE id > ?" + conditions(filter) + " ORDER BY id LIMIT ?";
+    }
+
+    static String countQuery(ReportFilter filter) {
+        return "SELECT COUNT(*) FROM reports WHERE 1 = 1" + conditions(filter);
+    }
+
+    // Binds the filter values starting at the given parameter index and returns the next free index
+    static int bindFilter(PreparedStatement stmt, ReportFilter filter, int index) throws SQLException {
+        if (filter.reportType() != null) stmt.setString(index++, filter.reportType());
+        if (filter.npcName() != null) stmt.setString(index++, filter.npcName());
+        if (filter.playerName() != null) stmt.setString(index++, filter.playerName());
+        return index;
+    }
+
+    private static String conditions(ReportFilter filter) {
+        StringBuilder sql = new StringBuilder();
+        if (filter.reportType() != null) sql.append(" AND reportType = ?");
+        if (filter.npcName() != null) sql.append(" AND npcName = ?");
+        if (filter.playerName() != null) sql.append(" AND playerName = ?");
+        return sql.toString();
+    }
+}
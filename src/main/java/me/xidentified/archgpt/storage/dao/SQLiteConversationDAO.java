@@ -1,62 +1,75 @@
 package me.xidentified.archgpt.storage.dao;
 
+import me.xidentified.archgpt.storage.connection.ConnectionProvider;
 import me.xidentified.archgpt.storage.model.Conversation;
+import me.xidentified.archgpt.storage.model.ConversationDigest;
+import me.xidentified.archgpt.storage.schema.UUIDCodec;
 
-import java.io.File;
 import java.sql.*;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
+// Tables are created and upgraded by ConversationSchema before this DAO is used
 public class SQLiteConversationDAO implements ConversationDAO {
-    private final String url;
+    private static final int INCREMENTAL_AUTO_VACUUM = 2;
+    private static final int MAX_IDS_PER_DELETE = 500; // Older SQLite builds allow 999 bound parameters
 
-    public SQLiteConversationDAO(File sqliteFile) {
-        this.url = "jdbc:sqlite:" + sqliteFile.getAbsolutePath();
-        initializeDatabase();
-        addIndices();
-    }
+    private final ConnectionProvider connectionProvider;
+    private final NpcNameRegistry npcNames;
 
-    private void addIndices() {
-        try (Connection conn = DriverManager.getConnection(url);
-             Statement stmt = conn.createStatement()) {
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_player_uuid ON conversations (player_uuid);");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_npc_name ON conversations (npc_name);");
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+    public SQLiteConversationDAO(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+        this.npcNames = new NpcNameRegistry(connectionProvider);
     }
 
-    private void initializeDatabase() {
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement stmt = conn.prepareStatement(
-                     "CREATE TABLE IF NOT EXISTS conversations (" +
-                             "player_uuid TEXT, " +
-                             "npc_name TEXT, " +
-                             "message TEXT, " +
-                             "is_from_npc BOOLEAN, " +
-                             "timestamp INTEGER)")) {
-            stmt.executeUpdate();
+    @Override
+    public void saveConversation(Conversation conversation) {
+        try {
+            int npcId = npcNames.getOrCreateId(conversation.getNpcName());
+            connectionProvider.update(
+                    "INSERT INTO conversations (player_uuid, npc_id, message, timestamp, is_from_npc) VALUES (?, ?, ?, ?, ?)", stmt -> {
+                stmt.setBytes(1, UUIDCodec.toBytes(conversation.getPlayerUUID()));
+                stmt.setInt(2, npcId);
+                stmt.setString(3, conversation.getMessage());
+                stmt.setLong(4, conversation.getTimestamp());
+                stmt.setBoolean(5, conversation.isFromNPC());
+                return stmt.executeUpdate();
+            });
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
+    // Inserts all rows in one transaction, throws so the caller knows the batch was lost
     @Override
-    public void saveConversation(Conversation conversation) {
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement stmt = conn.prepareStatement(
-                     "INSERT INTO conversations (player_uuid, npc_name, message, timestamp, is_from_npc) VALUES (?, ?, ?, ?, ?)")) {
-            stmt.setString(1, conversation.getPlayerUUID().toString());
-            stmt.setString(2, conversation.getNpcName());
-            stmt.setString(3, conversation.getMessage());
-            stmt.setLong(4, conversation.getTimestamp());
-            stmt.setBoolean(5, conversation.isFromNPC());
-            stmt.executeUpdate();
+    public void saveConversations(List<Conversation> conversations) {
+        try {
+            // Resolved before the transaction, new names are committed on their own
+            int[] npcIds = new int[conversations.size()];
+            for (int i = 0; i < npcIds.length; i++) {
+                npcIds[i] = npcNames.getOrCreateId(conversations.get(i).getNpcName());
+            }
+            connectionProvider.transaction(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO conversations (player_uuid, npc_id, message, timestamp, is_from_npc) VALUES (?, ?, ?, ?, ?)")) {
+                    for (int i = 0; i < npcIds.length; i++) {
+                        Conversation conversation = conversations.get(i);
+                        stmt.setBytes(1, UUIDCodec.toBytes(conversation.getPlayerUUID()));
+                        stmt.setInt(2, npcIds[i]);
+                        stmt.setString(3, conversation.getMessage());
+                        stmt.setLong(4, conversation.getTimestamp());
+                        stmt.setBoolean(5, conversation.isFromNPC());
+                        stmt.addBatch();
+                    }
+                    return stmt.executeBatch();
+                }
+            });
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new RuntimeException("Error saving conversations: " + e.getMessage(), e);
         }
     }
 
@@ -66,20 +79,27 @@ public class SQLiteConversationDAO implements ConversationDAO {
         long durationMillis = memoryDuration.toMillis();
         long cutoffTimestamp = Instant.now().toEpochMilli() - durationMillis;
 
-        String query = "SELECT * FROM conversations WHERE player_uuid = ? AND npc_name = ? AND timestamp > ? ORDER BY timestamp DESC";
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, playerUUID.toString());
-            stmt.setString(2, npcName);
-            stmt.setLong(3, cutoffTimestamp);
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    String message = rs.getString("message");
-                    long timestamp = rs.getLong("timestamp");
-                    boolean isFromNPC = rs.getBoolean("is_from_npc");
-                    conversations.add(new Conversation(playerUUID, npcName, message, timestamp, isFromNPC));
-                }
+        // Range scan on idx_conversations_lookup
+        String query = "SELECT message, timestamp, is_from_npc FROM conversations WHERE player_uuid = ? AND npc_id = ? AND timestamp > ? ORDER BY timestamp DESC";
+        try {
+            Integer npcId = npcNames.findId(npcName);
+            if (npcId == null) {
+                return conversations;
             }
+            connectionProvider.query(query, stmt -> {
+                stmt.setBytes(1, UUIDCodec.toBytes(playerUUID));
+                stmt.setInt(2, npcId);
+                stmt.setLong(3, cutoffTimestamp);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        String message = rs.getString("message");
+                        long timestamp = rs.getLong("timestamp");
+                        boolean isFromNPC = rs.getBoolean("is_from_npc");
+                        conversations.add(new Conversation(playerUUID, npcName, message, timestamp, isFromNPC));
+                    }
+                }
+                return conversations;
+            });
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -88,9 +108,9 @@ public class SQLiteConversationDAO implements ConversationDAO {
 
     @Override
     public void clearAllConversations() {
-        try (Connection conn = DriverManager.getConnection(url);
-             Statement stmt = conn.createStatement()) {
-            stmt.execute("DELETE FROM conversations");
+        try {
+            connectionProvider.update("DELETE FROM conversations", PreparedStatement::executeUpdate);
+            connectionProvider.update("DELETE FROM conversation_digests", PreparedStatement::executeUpdate);
         } catch (SQLException e) {
             throw new RuntimeException("Error clearing conversations: " + e.getMessage(), e);
         }
@@ -98,14 +118,217 @@ public class SQLiteConversationDAO implements ConversationDAO {
 
     @Override
     public void clearConversationsForNpc(String npcName) {
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement stmt = conn.prepareStatement(
-                     "DELETE FROM conversations WHERE npc_name = ?")) {
-            stmt.setString(1, npcName);
-            stmt.executeUpdate();
+        try {
+            Integer npcId = npcNames.findId(npcName);
+            if (npcId == null) return;
+            connectionProvider.update("DELETE FROM conversations WHERE npc_id = ?", stmt -> {
+                stmt.setInt(1, npcId);
+                return stmt.executeUpdate();
+            });
+            connectionProvider.update("DELETE FROM conversation_digests WHERE npc_id = ?", stmt -> {
+                stmt.setInt(1, npcId);
+                return stmt.executeUpdate();
+            });
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
+    // Oldest expired rows first, so repeated batches walk forward through the table
+    @Override
+    public List<Conversation> getConversationsBefore(long cutoffTimestamp, int limit) {
+        try {
+            return connectionProvider.query(
+                    "SELECT c.id, c.player_uuid, n.name, c.message, c.timestamp, c.is_from_npc FROM conversations c " +
+                            "JOIN npc_names n ON n.id = c.npc_id WHERE c.timestamp < ? ORDER BY c.timestamp LIMIT ?", stmt -> {
+                stmt.setLong(1, cutoffTimestamp);
+                stmt.setInt(2, limit);
+                List<Conversation> conversations = new ArrayList<>();
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        conversations.add(new Conversation(rs.getLong("id"), UUIDCodec.fromBytes(rs.getBytes("player_uuid")),
+                                rs.getString("name"), rs.getString("message"), rs.getLong("timestamp"), rs.getBoolean("is_from_npc")));
+                    }
+                }
+                return conversations;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error reading expired conversations: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int deleteConversationsBefore(long cutoffTimestamp, int limit) {
+        try {
+            return connectionProvider.update(
+                    "DELETE FROM conversations WHERE id IN (SELECT id FROM conversations WHERE timestamp < ? ORDER BY timestamp LIMIT ?)", stmt -> {
+                stmt.setLong(1, cutoffTimestamp);
+                stmt.setInt(2, limit);
+                return stmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error deleting expired conversations: " + e.getMessage(), e);
+        }
+    }
+
+    // Replaces the pair's rollup with the new summary and deletes the rolled up rows in the same transaction
+    @Override
+    public void rollUpConversations(UUID playerUUID, String npcName, String summary, List<Conversation> rolledUp) {
+        if (rolledUp.isEmpty()) return;
+        long lastTimestamp = rolledUp.get(rolledUp.size() - 1).getTimestamp();
+        byte[] playerKey = UUIDCodec.toBytes(playerUUID);
+        try {
+            int npcId = npcNames.getOrCreateId(npcName);
+            connectionProvider.transaction(conn -> {
+                try (PreparedStatement upsert = conn.prepareStatement(
+                        "INSERT INTO conversation_rollups (player_uuid, npc_id, summary, message_count, last_timestamp) VALUES (?, ?, ?, ?, ?) " +
+                                "ON CONFLICT (player_uuid, npc_id) DO UPDATE SET summary = excluded.summary, " +
+                                "message_count = message_count + excluded.message_count, last_timestamp = excluded.last_timestamp")) {
+                    upsert.setBytes(1, playerKey);
+                    upsert.setInt(2, npcId);
+                    upsert.setString(3, summary);
+                    upsert.setInt(4, rolledUp.size());
+                    upsert.setLong(5, lastTimestamp);
+                    upsert.executeUpdate();
+                }
+                // By id, so rows saved in the same millisecond that weren't rolled up stay. The batch size is
+                // configurable, so the ids go out in chunks that stay under the driver's bound parameter limit
+                int deleted = 0;
+                for (int from = 0; from < rolledUp.size(); from += MAX_IDS_PER_DELETE) {
+                    List<Conversation> chunk = rolledUp.subList(from, Math.min(from + MAX_IDS_PER_DELETE, rolledUp.size()));
+                    String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+                    try (PreparedStatement delete = conn.prepareStatement(
+                            "DELETE FROM conversations WHERE id IN (" + placeholders + ")")) {
+                        for (int i = 0; i < chunk.size(); i++) {
+                            delete.setLong(i + 1, chunk.get(i).getId());
+                        }
+                        deleted += delete.executeUpdate();
+                    }
+                }
+                return deleted;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error rolling up conversations: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getConversationRollup(UUID playerUUID, String npcName) {
+        try {
+            Integer npcId = npcNames.findId(npcName);
+            if (npcId == null) return null;
+            return connectionProvider.query("SELECT summary FROM conversation_rollups WHERE player_uuid = ? AND npc_id = ?", stmt -> {
+                stmt.setBytes(1, UUIDCodec.toBytes(playerUUID));
+                stmt.setInt(2, npcId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? rs.getString("summary") : null;
+                }
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public ConversationDigest getConversationDigest(UUID playerUUID, String npcName) {
+        try {
+            Integer npcId = npcNames.findId(npcName);
+            if (npcId == null) return null;
+            return connectionProvider.query("SELECT state, updated_at FROM conversation_digests WHERE player_uuid = ? AND npc_id = ?", stmt -> {
+                stmt.setBytes(1, UUIDCodec.toBytes(playerUUID));
+                stmt.setInt(2, npcId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? new ConversationDigest(playerUUID, npcName, rs.getString("state"), rs.getLong("updated_at")) : null;
+                }
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error reading conversation digest: " + e.getMessage(), e);
+        }
+    }
+
+    // Upserts all digests in one transaction
+    @Override
+    public void saveConversationDigests(List<ConversationDigest> digests) {
+        if (digests.isEmpty()) return;
+        try {
+            int[] npcIds = new int[digests.size()];
+            for (int i = 0; i < npcIds.length; i++) {
+                npcIds[i] = npcNames.getOrCreateId(digests.get(i).npcName());
+            }
+            connectionProvider.transaction(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO conversation_digests (player_uuid, npc_id, state, updated_at) VALUES (?, ?, ?, ?) " +
+                                "ON CONFLICT (player_uuid, npc_id) DO UPDATE SET state = excluded.state, updated_at = excluded.updated_at")) {
+                    for (int i = 0; i < npcIds.length; i++) {
+                        ConversationDigest digest = digests.get(i);
+                        stmt.setBytes(1, UUIDCodec.toBytes(digest.playerUUID()));
+                        stmt.setInt(2, npcIds[i]);
+                        stmt.setString(3, digest.state());
+                        stmt.setLong(4, digest.updatedAt());
+                        stmt.addBatch();
+                    }
+                    return stmt.executeBatch();
+                }
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error saving conversation digests: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int deleteConversationDigestsBefore(long cutoffTimestamp) {
+        try {
+            return connectionProvider.update("DELETE FROM conversation_digests WHERE updated_at < ?", stmt -> {
+                stmt.setLong(1, cutoffTimestamp);
+                return stmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error deleting expired conversation digests: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Switches the file to incremental auto-vacuum if it isn't yet. That takes one full VACUUM, which rewrites the
+     * whole file, so it is only run at startup when enabled. Returns whether the file was rewritten.
+     */
+    public boolean enableIncrementalVacuum() {
+        try {
+            if (getAutoVacuum() == INCREMENTAL_AUTO_VACUUM) return false;
+            connectionProvider.execute("PRAGMA auto_vacuum=INCREMENTAL", "VACUUM");
+            return true;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error enabling incremental vacuum: " + e.getMessage(), e);
+        }
+    }
+
+    // Releases the free pages if the file uses incremental auto-vacuum, never rewrites the whole file
+    @Override
+    public void compact() {
+        try {
+            if (getAutoVacuum() == INCREMENTAL_AUTO_VACUUM) {
+                // The pragma frees one page per step, so the rows are read to the end
+                connectionProvider.update("PRAGMA incremental_vacuum", stmt -> {
+                    int freedPages = 0;
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            freedPages++;
+                        }
+                    }
+                    return freedPages;
+                });
+            }
+            connectionProvider.execute("PRAGMA optimize");
+        } catch (SQLException e) {
+            throw new RuntimeException("Error compacting conversations: " + e.getMessage(), e);
+        }
+    }
+
+    private int getAutoVacuum() throws SQLException {
+        return connectionProvider.query("PRAGMA auto_vacuum", stmt -> {
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        });
+    }
 }
@@ -1,113 +1,112 @@
 package me.xidentified.archgpt.storage.dao;
 
+import me.xidentified.archgpt.storage.connection.ConnectionProvider;
 import me.xidentified.archgpt.storage.model.Report;
+import me.xidentified.archgpt.storage.model.ReportFilter;
 import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
 
-import java.io.File;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
 
-public class SQLiteReportDAO implements ReportDAO {
-    private final String dbPath;
+public class SQLiteReportDAO extends AsyncReportDAO {
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-    public SQLiteReportDAO(File dataFolder) {
-        File storageFolder = new File(dataFolder, "storage");
-        if (!storageFolder.exists()) {
-            storageFolder.mkdirs();
-        }
-        this.dbPath = new File(storageFolder, "reports.db").getPath();
-        initialize();
-    }
+    private final ConnectionProvider connectionProvider;
 
-    private void initialize() {
-        try (Connection conn = this.connect();
-             Statement stmt = conn.createStatement()) {
-            String sql = "CREATE TABLE IF NOT EXISTS reports (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "playerName TEXT NOT NULL," +
-                    "npcName TEXT NOT NULL," +
-                    "reportType TEXT NOT NULL," +
-                    "feedback TEXT," +
-                    "npcResponse TEXT," +
-                    "timestamp TEXT NOT NULL" +
-                    ");";
-            stmt.execute(sql);
-        } catch (SQLException e) {
-            Bukkit.getLogger().warning((e.getMessage()));
-        }
+    public SQLiteReportDAO(ConnectionProvider connectionProvider, Logger logger, Executor readExecutor) {
+        super(logger, readExecutor, "ArchGPT-SQLite-Report-Writer");
+        this.connectionProvider = connectionProvider;
     }
 
-    private Connection connect() {
-        String url = "jdbc:sqlite:" + this.dbPath;
-        Connection conn = null;
+    @Override
+    protected void insertReports(List<Report> reports) {
+        String sql = "INSERT INTO reports (playerName, npcName, reportType, feedback, npcResponse, timestamp) VALUES(?,?,?,?,?,?)";
+
         try {
-            conn = DriverManager.getConnection(url);
+            connectionProvider.transaction(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (Report report : reports) {
+                        pstmt.setString(1, report.getPlayerName());
+                        pstmt.setString(2, report.getNpcName());
+                        pstmt.setString(3, report.getReportType());
+                        pstmt.setString(4, report.getFeedback());
+                        pstmt.setString(5, report.getNpcResponse());
+                        pstmt.setString(6, report.getFormattedTimestamp());
+                        pstmt.addBatch();
+                    }
+                    return pstmt.executeBatch();
+                }
+            });
         } catch (SQLException e) {
-            Bukkit.getLogger().warning((e.getMessage()));
+            throw new RuntimeException("Error saving reports: " + e.getMessage(), e);
         }
-        return conn;
     }
 
     @Override
-    public void saveReport(Report report) {
-        String sql = "INSERT INTO reports (playerName, npcName, reportType, feedback, npcResponse, timestamp) VALUES(?,?,?,?,?,?)";
+    protected List<Report> queryReports(ReportFilter filter, int afterId, int limit) {
+        List<Report> reports = new ArrayList<>();
 
-        try (Connection conn = this.connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, report.getPlayerName());
-            pstmt.setString(2, report.getNpcName());
-            pstmt.setString(3, report.getReportType());
-            pstmt.setString(4, report.getFeedback());
-            pstmt.setString(5, report.getNpcResponse());
-            pstmt.setString(6, report.getFormattedTimestamp());
-            pstmt.executeUpdate();
+        try {
+            connectionProvider.query(ReportQueries.pageQuery(filter), stmt -> {
+                stmt.setInt(1, afterId);
+                int index = ReportQueries.bindFilter(stmt, filter, 2);
+                stmt.setInt(index, limit);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        reports.add(readReport(rs));
+                    }
+                }
+                return reports;
+            });
         } catch (SQLException e) {
             Bukkit.getLogger().warning((e.getMessage()));
         }
+        return reports;
     }
 
     @Override
-    public List<Report> getAllReports() {
-        List<Report> reports = new ArrayList<>();
-        String sql = "SELECT * FROM reports";
-
-        try (Connection conn = this.connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                int id = rs.getInt("id");
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-                LocalDateTime timestamp = LocalDateTime.parse(rs.getString("timestamp"), formatter);
-                reports.add(new Report(
-                        id, // Include the ID in the Report object
-                        rs.getString("playerName"),
-                        rs.getString("npcName"),
-                        rs.getString("reportType"),
-                        Component.text(rs.getString("feedback")),
-                        rs.getString("npcResponse"),
-                        timestamp
-                ));
-            }
+    protected int queryReportCount(ReportFilter filter) {
+        try {
+            return connectionProvider.query(ReportQueries.countQuery(filter), stmt -> {
+                ReportQueries.bindFilter(stmt, filter, 1);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            });
         } catch (SQLException e) {
             Bukkit.getLogger().warning((e.getMessage()));
+            return 0;
         }
-        return reports;
+    }
+
+    private Report readReport(ResultSet rs) throws SQLException {
+        LocalDateTime timestamp = LocalDateTime.parse(rs.getString("timestamp"), TIMESTAMP_FORMAT);
+        return new Report(
+                rs.getInt("id"), // Include the ID in the Report object
+                rs.getString("playerName"),
+                rs.getString("npcName"),
+                rs.getString("reportType"),
+                Component.text(rs.getString("feedback")),
+                rs.getString("npcResponse"),
+                timestamp
+        );
     }
 
     @Override
-    public void deleteReport(int reportId) {
+    protected void deleteReportById(int reportId) {
         String sql = "DELETE FROM reports WHERE id = ?";
 
-        try (Connection conn = this.connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, reportId);
-            int affectedRows = pstmt.executeUpdate();
+        try {
+            int affectedRows = connectionProvider.update(sql, pstmt -> {
+                pstmt.setInt(1, reportId);
+                return pstmt.executeUpdate();
+            });
 
             if (affectedRows == 0) {
                 Bukkit.getLogger().info("No report found with id: " + reportId);
@@ -119,8 +118,4 @@ public class SQLiteReportDAO implements ReportDAO {
             Bukkit.getLogger().warning((e.getMessage()));
         }
     }
-
-    @Override
-    public void loadReports() {
-        // This method is not needed for SQLite as the getAllReports() method already handles loading.
-    }}
+}
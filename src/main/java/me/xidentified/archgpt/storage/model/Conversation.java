@@ -6,6 +6,7 @@ import java.util.UUID;
 
 @Getter
 public class Conversation {
+    private final long id; // Row id, 0 for conversations that weren't read back from storage
     private final UUID playerUUID;
     private final String npcName;
     private final String message;
@@ -13,6 +14,11 @@ public class Conversation {
     private final boolean isFromNPC;
 
     public Conversation(UUID playerUUID, String npcName, String message, long timestamp, boolean isFromNPC) {
+        this(0L, playerUUID, npcName, message, timestamp, isFromNPC);
+    }
+
+    public Conversation(long id, UUID playerUUID, String npcName, String message, long timestamp, boolean isFromNPC) {
+        this.id = id;
         this.playerUUID = playerUUID;
         this.npcName = npcName;
         this.message = message;
@@ -0,0 +1,8 @@
+package me.xidentified.archgpt.storage.model;
+
+import java.util.UUID;
+
+/**
+ * The stored rolling digest of a player/NPC pair. The state is opaque to storage, it is written and read back as is.
+ */
+public record ConversationDigest(UUID playerUUID, String npcName, String state, long updatedAt) {}
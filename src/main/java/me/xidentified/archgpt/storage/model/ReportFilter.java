@@ -0,0 +1,20 @@
+package me.xidentified.archgpt.storage.model;
+
+/**
+ * Narrows a report listing down. Null fields match every report.
+ */
+public record ReportFilter(String reportType, String npcName, String playerName) {
+    public static final ReportFilter NONE = new ReportFilter(null, null, null);
+
+    public ReportFilter withReportType(String reportType) {
+        return new ReportFilter(reportType, npcName, playerName);
+    }
+
+    public ReportFilter withNpcName(String npcName) {
+        return new ReportFilter(reportType, npcName, playerName);
+    }
+
+    public ReportFilter withPlayerName(String playerName) {
+        return new ReportFilter(reportType, npcName, playerName);
+    }
+}
@@ -0,0 +1,219 @@
+package me.xidentified.archgpt.storage.schema;
+
+import java.sql.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * History of the conversation tables.
+ * <p>
+ * Version 1 is the original layout with text UUIDs and NPC names on every row. Version 2 stores UUIDs as 16 bytes,
+ * interns NPC names into npc_names and gives each row a surrogate id, so two lines saved in the same millisecond no
+ * longer collide. Memory lookups become a range scan on (player_uuid, npc_id, timestamp). Version 3 adds the
+ * rolling digest of each pair, kept up to date as lines are saved.
+ */
+public final class ConversationSchema {
+    public static final String NAME = "conversations";
+
+    private static final int COPY_BATCH_SIZE = 1000;
+
+    private ConversationSchema() {
+    }
+
+    public static List<Migration> migrations(boolean mysql) {
+        return mysql ? List.of(MYSQL_LEGACY, MYSQL_COMPACT_KEYS, MYSQL_DIGESTS)
+                : List.of(SQLITE_LEGACY, SQLITE_COMPACT_KEYS, SQLITE_DIGESTS);
+    }
+
+    private static final Migration SQLITE_LEGACY = Migration.sql(1, "Original conversation tables",
+            "CREATE TABLE IF NOT EXISTS conversations (" +
+                    "player_uuid TEXT, " +
+                    "npc_name TEXT, " +
+                    "message TEXT, " +
+                    "is_from_npc BOOLEAN, " +
+                    "timestamp INTEGER)",
+            "CREATE TABLE IF NOT EXISTS conversation_rollups (" +
+                    "player_uuid TEXT, " +
+                    "npc_name TEXT, " +
+                    "summary TEXT, " +
+                    "message_count INTEGER, " +
+                    "last_timestamp INTEGER, " +
+                    "PRIMARY KEY (player_uuid, npc_name))");
+
+    private static final Migration MYSQL_LEGACY = Migration.sql(1, "Original conversation tables",
+            "CREATE TABLE IF NOT EXISTS conversations (" +
+                    "player_uuid VARCHAR(36), " +
+                    "npc_name VARCHAR(255), " +
+                    "message TEXT, " +
+                    "timestamp BIGINT, " +
+                    "is_from_npc BOOLEAN, " +
+                    "PRIMARY KEY (player_uuid, timestamp))",
+            "CREATE TABLE IF NOT EXISTS conversation_rollups (" +
+                    "player_uuid VARCHAR(36), " +
+                    "npc_name VARCHAR(255), " +
+                    "summary TEXT, " +
+                    "message_count INT, " +
+                    "last_timestamp BIGINT, " +
+                    "PRIMARY KEY (player_uuid, npc_name))");
+
+    // Old SQLite versions have no unhex(), so the rows are copied through Java
+    private static final Migration SQLITE_COMPACT_KEYS = new Migration(2, "Binary UUIDs, interned NPC names and surrogate ids", conn -> {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS npc_names (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "name TEXT NOT NULL UNIQUE)");
+            stmt.execute("INSERT OR IGNORE INTO npc_names (name) " +
+                    "SELECT DISTINCT npc_name FROM conversations WHERE npc_name IS NOT NULL " +
+                    "UNION SELECT DISTINCT npc_name FROM conversation_rollups WHERE npc_name IS NOT NULL");
+            stmt.execute("CREATE TABLE conversations_v2 (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "player_uuid BLOB NOT NULL, " +
+                    "npc_id INTEGER NOT NULL, " +
+                    "message TEXT, " +
+                    "is_from_npc BOOLEAN, " +
+                    "timestamp INTEGER NOT NULL)");
+            stmt.execute("CREATE TABLE conversation_rollups_v2 (" +
+                    "player_uuid BLOB NOT NULL, " +
+                    "npc_id INTEGER NOT NULL, " +
+                    "summary TEXT, " +
+                    "message_count INTEGER, " +
+                    "last_timestamp INTEGER, " +
+                    "PRIMARY KEY (player_uuid, npc_id))");
+        }
+
+        Map<String, Integer> npcIds = loadNpcIds(conn);
+        copyRows(conn, npcIds,
+                "SELECT player_uuid, npc_name, message, is_from_npc, timestamp FROM conversations ORDER BY timestamp",
+                "INSERT INTO conversations_v2 (player_uuid, npc_id, message, is_from_npc, timestamp) VALUES (?, ?, ?, ?, ?)",
+                (rs, insert) -> {
+                    insert.setString(3, rs.getString("message"));
+                    insert.setBoolean(4, rs.getBoolean("is_from_npc"));
+                    insert.setLong(5, rs.getLong("timestamp"));
+                });
+        copyRows(conn, npcIds,
+                "SELECT player_uuid, npc_name, summary, message_count, last_timestamp FROM conversation_rollups",
+                "INSERT INTO conversation_rollups_v2 (player_uuid, npc_id, summary, message_count, last_timestamp) VALUES (?, ?, ?, ?, ?)",
+                (rs, insert) -> {
+                    insert.setString(3, rs.getString("summary"));
+                    insert.setInt(4, rs.getInt("message_count"));
+                    insert.setLong(5, rs.getLong("last_timestamp"));
+                });
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE conversations");
+            stmt.execute("DROP TABLE conversation_rollups");
+            stmt.execute("ALTER TABLE conversations_v2 RENAME TO conversations");
+            stmt.execute("ALTER TABLE conversation_rollups_v2 RENAME TO conversation_rollups");
+            stmt.execute("CREATE INDEX idx_conversations_lookup ON conversations (player_uuid, npc_id, timestamp DESC)");
+            stmt.execute("CREATE INDEX idx_conversations_timestamp ON conversations (timestamp)");
+        }
+        return null;
+    });
+
+    // DDL commits on its own in MySQL, the leftover copy tables are dropped first so an interrupted run can start over
+    private static final Migration MYSQL_COMPACT_KEYS = Migration.sql(2, "Binary UUIDs, interned NPC names and surrogate ids",
+            "CREATE TABLE IF NOT EXISTS npc_names (" +
+                    "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                    "name VARCHAR(255) NOT NULL, " +
+                    "UNIQUE KEY uk_npc_names_name (name))",
+            "INSERT IGNORE INTO npc_names (name) " +
+                    "SELECT DISTINCT npc_name FROM conversations WHERE npc_name IS NOT NULL " +
+                    "UNION SELECT DISTINCT npc_name FROM conversation_rollups WHERE npc_name IS NOT NULL",
+            "DROP TABLE IF EXISTS conversations_v2",
+            "DROP TABLE IF EXISTS conversation_rollups_v2",
+            "CREATE TABLE conversations_v2 (" +
+                    "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "player_uuid BINARY(16) NOT NULL, " +
+                    "npc_id INT NOT NULL, " +
+                    "message TEXT, " +
+                    "is_from_npc BOOLEAN, " +
+                    "timestamp BIGINT NOT NULL, " +
+                    "INDEX idx_conversations_lookup (player_uuid, npc_id, timestamp DESC), " +
+                    "INDEX idx_conversations_timestamp (timestamp))",
+            "CREATE TABLE conversation_rollups_v2 (" +
+                    "player_uuid BINARY(16) NOT NULL, " +
+                    "npc_id INT NOT NULL, " +
+                    "summary TEXT, " +
+                    "message_count INT, " +
+                    "last_timestamp BIGINT, " +
+                    "PRIMARY KEY (player_uuid, npc_id))",
+            "INSERT INTO conversations_v2 (player_uuid, npc_id, message, is_from_npc, timestamp) " +
+                    "SELECT UNHEX(REPLACE(c.player_uuid, '-', '')), n.id, c.message, c.is_from_npc, c.timestamp " +
+                    "FROM conversations c JOIN npc_names n ON n.name = c.npc_name ORDER BY c.timestamp",
+            "INSERT INTO conversation_rollups_v2 (player_uuid, npc_id, summary, message_count, last_timestamp) " +
+                    "SELECT UNHEX(REPLACE(r.player_uuid, '-', '')), n.id, r.summary, r.message_count, r.last_timestamp " +
+                    "FROM conversation_rollups r JOIN npc_names n ON n.name = r.npc_name",
+            "RENAME TABLE conversations TO conversations_v1, conversations_v2 TO conversations, " +
+                    "conversation_rollups TO conversation_rollups_v1, conversation_rollups_v2 TO conversation_rollups",
+            "DROP TABLE conversations_v1",
+            "DROP TABLE conversation_rollups_v1");
+
+    private static final Migration SQLITE_DIGESTS = Migration.sql(3, "Rolling conversation digests",
+            "CREATE TABLE IF NOT EXISTS conversation_digests (" +
+                    "player_uuid BLOB NOT NULL, " +
+                    "npc_id INTEGER NOT NULL, " +
+                    "state TEXT NOT NULL, " +
+                    "updated_at INTEGER NOT NULL, " +
+                    "PRIMARY KEY (player_uuid, npc_id))");
+
+    private static final Migration MYSQL_DIGESTS = Migration.sql(3, "Rolling conversation digests",
+            "CREATE TABLE IF NOT EXISTS conversation_digests (" +
+                    "player_uuid BINARY(16) NOT NULL, " +
+                    "npc_id INT NOT NULL, " +
+                    "state TEXT NOT NULL, " +
+                    "updated_at BIGINT NOT NULL, " +
+                    "PRIMARY KEY (player_uuid, npc_id))");
+
+    @FunctionalInterface
+    private interface RowCopier {
+        void copy(ResultSet row, PreparedStatement insert) throws SQLException;
+    }
+
+    private static Map<String, Integer> loadNpcIds(Connection conn) throws SQLException {
+        Map<String, Integer> npcIds = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name FROM npc_names")) {
+            while (rs.next()) {
+                npcIds.put(rs.getString("name"), rs.getInt("id"));
+            }
+        }
+        return npcIds;
+    }
+
+    // Rows without a valid UUID or NPC name could never be looked up again, so they are left behind
+    private static void copyRows(Connection conn, Map<String, Integer> npcIds, String select, String insert, RowCopier copier) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(select);
+             PreparedStatement insertStmt = conn.prepareStatement(insert)) {
+            int pending = 0;
+            while (rs.next()) {
+                Integer npcId = npcIds.get(rs.getString("npc_name"));
+                UUID playerUUID = parseUUID(rs.getString("player_uuid"));
+                if (npcId == null || playerUUID == null) continue;
+
+                insertStmt.setBytes(1, UUIDCodec.toBytes(playerUUID));
+                insertStmt.setInt(2, npcId);
+                copier.copy(rs, insertStmt);
+                insertStmt.addBatch();
+                if (++pending == COPY_BATCH_SIZE) {
+                    insertStmt.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                insertStmt.executeBatch();
+            }
+        }
+    }
+
+    private static UUID parseUUID(String value) {
+        if (value == null) return null;
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
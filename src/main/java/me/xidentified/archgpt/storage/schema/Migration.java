@@ -0,0 +1,23 @@
+package me.xidentified.archgpt.storage.schema;
+
+import me.xidentified.archgpt.storage.connection.SQLFunction;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * One step of a schema's history. Versions are applied in ascending order, each exactly once.
+ */
+public record Migration(int version, String description, SQLFunction<Connection, ?> step) {
+
+    public static Migration sql(int version, String description, String... statements) {
+        return new Migration(version, description, conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : statements) {
+                    stmt.execute(sql);
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,45 @@
+package me.xidentified.archgpt.storage.schema;
+
+import java.util.List;
+
+/**
+ * History of the reports table. Version 2 adds (column, id) indexes so filtered pages of the report GUI are range
+ * scans in id order.
+ */
+public final class ReportSchema {
+    public static final String NAME = "reports";
+
+    private ReportSchema() {
+    }
+
+    public static List<Migration> migrations(boolean mysql) {
+        return mysql ? List.of(MYSQL_LEGACY, PAGE_INDEXES) : List.of(SQLITE_LEGACY, PAGE_INDEXES);
+    }
+
+    private static final Migration SQLITE_LEGACY = Migration.sql(1, "Original reports table",
+            "CREATE TABLE IF NOT EXISTS reports (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "playerName TEXT NOT NULL," +
+                    "npcName TEXT NOT NULL," +
+                    "reportType TEXT NOT NULL," +
+                    "feedback TEXT," +
+                    "npcResponse TEXT," +
+                    "timestamp TEXT NOT NULL" +
+                    ")");
+
+    private static final Migration MYSQL_LEGACY = Migration.sql(1, "Original reports table",
+            "CREATE TABLE IF NOT EXISTS reports (" +
+                    "id INT AUTO_INCREMENT PRIMARY KEY," +
+                    "playerName VARCHAR(255) NOT NULL," +
+                    "npcName VARCHAR(255) NOT NULL," +
+                    "reportType VARCHAR(255) NOT NULL," +
+                    "feedback TEXT," +
+                    "npcResponse TEXT," +
+                    "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ")");
+
+    private static final Migration PAGE_INDEXES = Migration.sql(2, "Indexes for filtered report pages",
+            "CREATE INDEX idx_reports_type ON reports (reportType, id)",
+            "CREATE INDEX idx_reports_npc ON reports (npcName, id)",
+            "CREATE INDEX idx_reports_player ON reports (playerName, id)");
+}
@@ -0,0 +1,72 @@
+package me.xidentified.archgpt.storage.schema;
+
+import me.xidentified.archgpt.storage.connection.ConnectionProvider;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Brings one schema up to date. Applied versions are recorded per schema in schema_version, so the conversation
+ * and report tables can share a MySQL database and still migrate independently.
+ * <p>
+ * SQLite runs each migration and its version row in one transaction. MySQL commits DDL implicitly, so a migration
+ * interrupted there must be written to be safe to run again.
+ */
+public class SchemaMigrator {
+    private final ConnectionProvider connectionProvider;
+    private final Logger logger;
+    private final String schema;
+    private final List<Migration> migrations;
+
+    public SchemaMigrator(ConnectionProvider connectionProvider, Logger logger, String schema, List<Migration> migrations) {
+        this.connectionProvider = connectionProvider;
+        this.logger = logger;
+        this.schema = schema;
+        this.migrations = migrations.stream().sorted(Comparator.comparingInt(Migration::version)).toList();
+    }
+
+    public void migrate() {
+        try {
+            connectionProvider.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "schema_name VARCHAR(64) NOT NULL, " +
+                    "version INT NOT NULL, " +
+                    "description VARCHAR(255), " +
+                    "applied_at BIGINT, " +
+                    "PRIMARY KEY (schema_name, version))");
+
+            int current = currentVersion();
+            for (Migration migration : migrations) {
+                if (migration.version() <= current) continue;
+
+                logger.info("Migrating " + schema + " schema to version " + migration.version() + ": " + migration.description());
+                connectionProvider.transaction(conn -> {
+                    migration.step().apply(conn);
+                    try (PreparedStatement stmt = conn.prepareStatement(
+                            "INSERT INTO schema_version (schema_name, version, description, applied_at) VALUES (?, ?, ?, ?)")) {
+                        stmt.setString(1, schema);
+                        stmt.setInt(2, migration.version());
+                        stmt.setString(3, migration.description());
+                        stmt.setLong(4, System.currentTimeMillis());
+                        return stmt.executeUpdate();
+                    }
+                });
+                current = migration.version();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not migrate the " + schema + " schema: " + e.getMessage(), e);
+        }
+    }
+
+    private int currentVersion() throws SQLException {
+        return connectionProvider.query("SELECT MAX(version) FROM schema_version WHERE schema_name = ?", stmt -> {
+            stmt.setString(1, schema);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        });
+    }
+}
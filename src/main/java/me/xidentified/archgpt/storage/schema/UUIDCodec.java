@@ -0,0 +1,25 @@
+package me.xidentified.archgpt.storage.schema;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Stores UUIDs as 16 raw bytes instead of their 36 character text form.
+ */
+public final class UUIDCodec {
+
+    private UUIDCodec() {
+    }
+
+    public static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -10,8 +10,6 @@ public class ArchGPTConstants {
 
     public static final double MAX_DISTANCE_LINE_OF_SIGHT = 4.0;
 
-    public static final int MAX_CONVERSATION_STATE_SIZE = 8;
-
     public static final long GREETING_COOLDOWN_MS = 300000; // 5 min default
 
     public static final long CHAT_COOLDOWN_MS = 3000;
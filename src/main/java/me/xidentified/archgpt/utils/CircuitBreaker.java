@@ -0,0 +1,112 @@
+package me.xidentified.archgpt.utils;
+
+import java.util.logging.Logger;
+
+/**
+ * Tracks the outcome of recent calls to an endpoint and fails fast once too many of them go wrong.
+ * After the open period a single trial call is let through, and its result decides whether to close again.
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final Logger logger;
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long openDurationMillis;
+    private final boolean[] outcomes; // Ring buffer of the most recent calls, true means failed
+    private int recordedCalls;
+    private int failedCalls;
+    private int nextIndex;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name, Logger logger, double failureRateThreshold, int minimumCalls,
+                          int windowSize, long openDurationMillis) {
+        this.name = name;
+        this.logger = logger;
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = Math.max(1, minimumCalls);
+        this.openDurationMillis = openDurationMillis;
+        this.outcomes = new boolean[Math.max(this.minimumCalls, windowSize)];
+    }
+
+    // Returns false while the breaker is open, callers should fail fast instead of calling the endpoint
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDurationMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void recordSuccess() {
+        if (state == State.HALF_OPEN) {
+            close();
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void recordFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recordedCalls >= minimumCalls
+                && (double) failedCalls / recordedCalls >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return recordedCalls == 0 ? 0 : (double) failedCalls / recordedCalls;
+    }
+
+    private void record(boolean failed) {
+        if (recordedCalls == outcomes.length) {
+            // Window is full, forget the oldest outcome
+            if (outcomes[nextIndex]) failedCalls--;
+        } else {
+            recordedCalls++;
+        }
+        outcomes[nextIndex] = failed;
+        if (failed) failedCalls++;
+        nextIndex = (nextIndex + 1) % outcomes.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        trialInFlight = false;
+        logger.warning("Circuit breaker for " + name + " opened, failing fast for " + openDurationMillis + "ms");
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recordedCalls = 0;
+        failedCalls = 0;
+        nextIndex = 0;
+        trialInFlight = false;
+        logger.info("Circuit breaker for " + name + " closed, requests are flowing again");
+    }
+}
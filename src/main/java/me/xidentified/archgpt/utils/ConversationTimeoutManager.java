@@ -25,42 +25,36 @@ public class ConversationTimeoutManager {
 
         // Schedule the timeout task
         ScheduledFuture<?> timeoutTask = executorService.schedule(() -> {
-            synchronized (plugin.getNpcChatStatesCache()) {
-                Player player = plugin.getServer().getPlayer(playerUUID);
-                if (player != null) {
-                    plugin.sendMessage(player, Messages.CONVERSATION_ENDED_INACTIVITY);
-                    // Clean up the conversation caches
-                    plugin.getNpcChatStatesCache().invalidate(playerUUID);
-                    plugin.getActiveConversations().remove(playerUUID);
-                    plugin.getPlayerCooldowns().remove(playerUUID);
-                    plugin.getConversationTokenCounters().remove(playerUUID);
+            // Whoever ends the conversation first wins, so a cancel and a timeout never both run
+            if (!plugin.getConversationManager().endConversation(playerUUID)) return;
 
-                    plugin.getHologramManager().removePlayerHologram(playerUUID);
-                }
+            Player player = plugin.getServer().getPlayer(playerUUID);
+            if (player != null) {
+                plugin.sendMessage(player, Messages.CONVERSATION_ENDED_INACTIVITY);
             }
+            plugin.getPlayerCooldowns().remove(playerUUID);
+            plugin.getConversationTokenCounters().remove(playerUUID);
         }, conversationTimeoutMillis, TimeUnit.MILLISECONDS);
 
-        // Store the timeout task in the map
-        conversationTimeoutTasks.put(playerUUID, timeoutTask);
+        // Store the timeout task in the map, replacing any previous one
+        ScheduledFuture<?> previousTask = conversationTimeoutTasks.put(playerUUID, timeoutTask);
+        if (previousTask != null) {
+            previousTask.cancel(false);
+        }
     }
 
     public void resetConversationTimeout(UUID playerUUID) {
         plugin.debugLog("Conversation Timer reset for " + playerUUID);
-        cancelConversationTimeout(playerUUID);
         startConversationTimeout(playerUUID);
     }
 
     public void cancelConversationTimeout(UUID playerUUID) {
         plugin.debugLog("Player " + playerUUID + " canceled the conversation");
 
-        // Get the existing conversation timeout task for the player
-        synchronized (plugin.getNpcChatStatesCache()) {
-            ScheduledFuture<?> timeoutTask = conversationTimeoutTasks.remove(playerUUID);
-
-            // Cancel the task if it exists and is not yet executed
-            if (timeoutTask != null && !timeoutTask.isDone()) {
-                timeoutTask.cancel(true);
-            }
+        // Cancel the task if it exists and is not yet executed, never interrupting a timeout that is already ending the conversation
+        ScheduledFuture<?> timeoutTask = conversationTimeoutTasks.remove(playerUUID);
+        if (timeoutTask != null && !timeoutTask.isDone()) {
+            timeoutTask.cancel(false);
         }
     }
 
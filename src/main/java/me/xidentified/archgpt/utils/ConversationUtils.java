@@ -3,6 +3,7 @@ package me.xidentified.archgpt.utils;
 import me.xidentified.archgpt.ArchGPT;
 import me.xidentified.archgpt.ArchGPTConfig;
 import me.xidentified.archgpt.NPCConversationManager;
+import me.xidentified.archgpt.context.ContextSnapshot;
 import me.xidentified.archgpt.context.EnvironmentalContextProvider;
 import me.xidentified.archgpt.context.PlayerContextProvider;
 import me.xidentified.archgpt.storage.model.Report;
@@ -10,6 +11,7 @@ import net.citizensnpcs.api.npc.NPC;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
 import org.apache.commons.lang3.StringUtils;
+import org.bukkit.Bukkit;
 import org.bukkit.FluidCollisionMode;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
@@ -19,6 +21,7 @@ import org.bukkit.util.Vector;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class ConversationUtils {
     private final ArchGPT plugin;
@@ -31,18 +34,26 @@ public class ConversationUtils {
         this.manager = manager;
     }
 
-    // Fetches the current context surrounding the NPC
-    public String getCombinedContext(String npcName, Player player) {
+    /**
+     * Describes the context surrounding the NPC from a snapshot taken on the main thread. Must be called on the main
+     * thread, which reads the prompt; the text is built from the snapshot on the worker pool.
+     */
+    public CompletableFuture<String> getCombinedContext(String npcName, Player player, ContextSnapshot snapshot) {
         // Fetch specific NPC prompt or use the default if none is set
         String npcPrompt = npcName.isEmpty() ? configHandler.getDefaultPrompt() : configHandler.getNpcPrompt(npcName, player);
-
-        EnvironmentalContextProvider envContext = new EnvironmentalContextProvider(plugin, player);
-        PlayerContextProvider playerContext = new PlayerContextProvider(player);
-        String environmentalContext = envContext.getFormattedContext(npcPrompt);
-        String playerSpecificContext = playerContext.getFormattedContext("");
         String tokenContext = "Use no more than " + configHandler.getMaxResponseLength() + " completion_tokens in your response.";
 
-        return environmentalContext + " " + playerSpecificContext + " " + tokenContext;
+        return CompletableFuture.supplyAsync(() -> {
+            EnvironmentalContextProvider envContext = new EnvironmentalContextProvider(plugin, snapshot, plugin.getContextManager().getEnvironmentScanner());
+            PlayerContextProvider playerContext = new PlayerContextProvider(snapshot);
+            String environmentalContext = envContext.getFormattedContext(npcPrompt);
+            String playerSpecificContext = playerContext.getFormattedContext("");
+            return environmentalContext + " " + playerSpecificContext + " " + tokenContext;
+        }, plugin.getAsyncExecutor()).exceptionally(ex -> {
+            // The NPC can still talk without knowing its surroundings
+            plugin.getLogger().warning("Could not describe the surroundings of " + npcName + ": " + ex.getMessage());
+            return npcPrompt + " " + tokenContext;
+        });
     }
 
     public boolean isInLineOfSight(NPC npc, Player player) {
@@ -96,18 +107,25 @@ public class ConversationUtils {
             Component feedback = Component.text(msg);
 
             String reportType = plugin.getReportManager().getSelectedReportType(playerUUID);
-            NPC npc = manager.playerNPCMap.get(playerUUID);
+            NPC npc = manager.getConversationNPC(playerUUID);
             String npcLastMessage = npc.data().get("last_message");
             if (npcLastMessage == null) {
                 npcLastMessage = "Unknown NPC Message";
             }
             int newReportId = -1;
             Report report = new Report(newReportId, player.getName(), npc.getName(), reportType, feedback, npcLastMessage, LocalDateTime.now());
-            plugin.getReportManager().addReport(report);
             plugin.getReportManager().exitReportingState(playerUUID);
-            plugin.sendMessage(player, Messages.REPORT_SUBMITTED.formatted(
-                    Placeholder.unparsed("cancel", Objects.requireNonNull(plugin.getConfig().getString("conversation_end_phrase")))
-            ));
+            String endPhrase = Objects.requireNonNull(plugin.getConfig().getString("conversation_end_phrase"));
+            // Saved by the report writer, chat handling doesn't wait for the database
+            plugin.getReportManager().addReport(report).whenComplete((saved, error) -> {
+                if (error != null) {
+                    plugin.getLogger().warning("Could not save report from " + player.getName() + ": " + error.getMessage());
+                    return;
+                }
+                // Completed on the report writer, the confirmation goes out from the main thread
+                Bukkit.getScheduler().runTask(plugin, () ->
+                        plugin.sendMessage(player, Messages.REPORT_SUBMITTED.formatted(Placeholder.unparsed("cancel", endPhrase))));
+            });
             event.setCancelled(true);
             return true;
         }
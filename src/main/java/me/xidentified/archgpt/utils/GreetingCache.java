@@ -0,0 +1,85 @@
+package me.xidentified.archgpt.utils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a small pool of generated greetings per NPC, surroundings and locale. Greetings are stored with
+ * a player placeholder, so one response can be reused for everyone walking past.
+ */
+public class GreetingCache {
+    public static final String PLAYER_PLACEHOLDER = "{player}";
+
+    private final Cache<String, List<String>> greetingPools;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public GreetingCache(int maxEntries, long ttlMillis) {
+        this.greetingPools = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public static String key(int npcId, int contextFingerprint, String locale) {
+        return npcId + ":" + Integer.toHexString(contextFingerprint) + ":" + locale;
+    }
+
+    /**
+     * Picks a cached greeting for the player, or returns null while the pool is still
+     * being filled and a fresh greeting should be generated.
+     */
+    public String get(String key, String playerName, int poolSize) {
+        List<String> pool = greetingPools.getIfPresent(key);
+        if (pool == null || pool.size() < poolSize) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        String template = pool.get(ThreadLocalRandom.current().nextInt(pool.size()));
+        return fill(template, playerName);
+    }
+
+    public void add(String key, String greetingTemplate, int poolSize) {
+        greetingPools.asMap().compute(key, (k, pool) -> {
+            List<String> updated = pool == null ? new ArrayList<>() : new ArrayList<>(pool);
+            if (updated.size() < poolSize && !updated.contains(greetingTemplate)) {
+                updated.add(greetingTemplate);
+            }
+            return Collections.unmodifiableList(updated);
+        });
+    }
+
+    public static String fill(String greetingTemplate, String playerName) {
+        return greetingTemplate.replace(PLAYER_PLACEHOLDER, playerName);
+    }
+
+    // Drops the greetings of one NPC, e.g. after its prompt was changed
+    public void invalidateNpc(int npcId) {
+        String prefix = npcId + ":";
+        greetingPools.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    public void invalidateAll() {
+        greetingPools.invalidateAll();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long size() {
+        return greetingPools.size();
+    }
+}
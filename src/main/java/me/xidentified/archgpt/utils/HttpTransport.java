@@ -0,0 +1,103 @@
+package me.xidentified.archgpt.utils;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The one HTTP client every outgoing call of the plugin goes through. Sharing it means connections to the MCP
+ * server and the translation endpoint are kept alive and reused, and HTTP/2 servers get all requests multiplexed
+ * over a single connection. Servers that only speak HTTP/1.1 are downgraded automatically.
+ * <p>
+ * Each call names the endpoint it is for, so request counts, failures and latency can be told apart.
+ */
+public class HttpTransport {
+    public record EndpointStats(String endpoint, long requests, long failures, long inFlight,
+                                long averageMillis, long maxMillis) {}
+
+    private static final class EndpointMetrics {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong inFlight = new AtomicLong();
+        private final AtomicLong totalMillis = new AtomicLong();
+        private final AtomicLong maxMillis = new AtomicLong();
+    }
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final Map<String, EndpointMetrics> metrics = new ConcurrentHashMap<>();
+
+    public HttpTransport(Executor executor, long connectTimeoutMillis, long requestTimeoutMillis) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .executor(executor)
+                .build();
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+    }
+
+    // Starts a request with the default timeout, callers that need a different one set it themselves
+    public HttpRequest.Builder newRequest() {
+        return HttpRequest.newBuilder().timeout(requestTimeout);
+    }
+
+    /**
+     * Sends without blocking. Every response is handed to the caller, who decides what its status means. The
+     * endpoint stats count connection errors, timeouts and 4xx/5xx responses as failures.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(String endpoint, HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> bodyHandler) {
+        EndpointMetrics endpointMetrics = metrics.computeIfAbsent(endpoint, name -> new EndpointMetrics());
+        endpointMetrics.requests.incrementAndGet();
+        endpointMetrics.inFlight.incrementAndGet();
+        long start = System.currentTimeMillis();
+
+        return client.sendAsync(request, bodyHandler).whenComplete((response, error) -> {
+            long elapsed = System.currentTimeMillis() - start;
+            endpointMetrics.inFlight.decrementAndGet();
+            endpointMetrics.totalMillis.addAndGet(elapsed);
+            endpointMetrics.maxMillis.accumulateAndGet(elapsed, Math::max);
+            if (error != null || response.statusCode() >= 400) {
+                endpointMetrics.failures.incrementAndGet();
+            }
+        });
+    }
+
+    // For callers that are already on a background thread and want the response in place
+    public <T> HttpResponse<T> send(String endpoint, HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        try {
+            return sendAsync(endpoint, request, bodyHandler).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    public List<EndpointStats> getStats() {
+        return metrics.entrySet().stream()
+                .map(entry -> {
+                    EndpointMetrics endpointMetrics = entry.getValue();
+                    long requests = endpointMetrics.requests.get();
+                    long completed = requests - endpointMetrics.inFlight.get();
+                    return new EndpointStats(entry.getKey(), requests, endpointMetrics.failures.get(),
+                            endpointMetrics.inFlight.get(),
+                            completed <= 0 ? 0 : endpointMetrics.totalMillis.get() / completed,
+                            endpointMetrics.maxMillis.get());
+                })
+                .sorted(Comparator.comparing(EndpointStats::endpoint))
+                .toList();
+    }
+}
@@ -0,0 +1,128 @@
+package me.xidentified.archgpt.utils;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads a streamed MCP response line by line. Accepts server-sent events ("data: {...}") as well as
+ * plain chunked JSON lines, and hands out complete sentences as soon as they are available.
+ */
+public class McpStreamSubscriber implements Flow.Subscriber<String> {
+    private static final Pattern SENTENCE_BOUNDARY = Pattern.compile("(?<=[.!?])\\s+");
+
+    private final Consumer<String> onPartialText;
+    private final Consumer<String> onSentence;
+    private final StringBuilder fullText = new StringBuilder();
+    private final StringBuilder pendingSentence = new StringBuilder();
+
+    public McpStreamSubscriber(Consumer<String> onPartialText, Consumer<String> onSentence) {
+        this.onPartialText = onPartialText;
+        this.onSentence = onSentence;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(String line) {
+        String trimmed = line.trim();
+
+        // Skip blank separators, SSE comments/keep-alives and event metadata
+        if (trimmed.isEmpty() || trimmed.startsWith(":") || trimmed.startsWith("event:")
+                || trimmed.startsWith("id:") || trimmed.startsWith("retry:")) {
+            return;
+        }
+
+        // Keep the payload's own spacing, plain text chunks rely on it
+        String payload = line;
+        if (trimmed.startsWith("data:")) {
+            payload = line.substring(line.indexOf("data:") + 5);
+            if (payload.startsWith(" ")) {
+                payload = payload.substring(1);
+            }
+        }
+        if (payload.trim().equals("[DONE]")) {
+            return;
+        }
+
+        String chunk = extractChunkText(payload);
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+
+        fullText.append(chunk);
+        pendingSentence.append(chunk);
+        onPartialText.accept(fullText.toString());
+        flushCompleteSentences();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // The HTTP client fails the response future, which is where errors are handled
+    }
+
+    @Override
+    public void onComplete() {
+        String remainder = pendingSentence.toString().trim();
+        pendingSentence.setLength(0);
+        if (!remainder.isEmpty()) {
+            onSentence.accept(remainder);
+        }
+    }
+
+    public String getFullText() {
+        return fullText.toString().trim();
+    }
+
+    private String extractChunkText(String payload) {
+        try {
+            JsonElement element = JsonParser.parseString(payload);
+            if (!element.isJsonObject()) {
+                return element.isJsonPrimitive() ? element.getAsString() : null;
+            }
+            JsonObject object = element.getAsJsonObject();
+            if (object.has("delta")) {
+                return object.get("delta").getAsString();
+            }
+            // A final "output" event repeats the whole text, only use it if nothing was streamed
+            if (object.has("output") && fullText.length() == 0) {
+                return object.get("output").getAsString();
+            }
+            return null;
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+            // Plain text chunk
+            return payload;
+        }
+    }
+
+    private void flushCompleteSentences() {
+        Matcher matcher = SENTENCE_BOUNDARY.matcher(pendingSentence);
+        int lastBoundary = -1;
+        int remainderStart = -1;
+        while (matcher.find()) {
+            lastBoundary = matcher.start();
+            remainderStart = matcher.end();
+        }
+        if (lastBoundary < 0) {
+            return;
+        }
+
+        String complete = pendingSentence.substring(0, lastBoundary).trim();
+        String remainder = pendingSentence.substring(remainderStart);
+        pendingSentence.setLength(0);
+        pendingSentence.append(remainder);
+
+        if (!complete.isEmpty()) {
+            onSentence.accept(complete);
+        }
+    }
+}
@@ -48,6 +48,10 @@ public class Messages {
     public static final Message CONVERSATION_ENDED_CHANGED_WORLDS = new MessageBuilder("conversation.ended_changed_worlds")
             .withDefault("<prefix_warning>Conversation ended because you changed worlds.")
             .build();
+    public static final Message CONVERSATION_REPLY_CUT_OFF = new MessageBuilder("conversation.reply_cut_off")
+            .withDefault("<prefix_warning>{npc:name} was cut off mid-sentence.")
+            .withPlaceholder("npc")
+            .build();
     public static final Message CONVERSATION_ENDED_WALKED_AWAY = new MessageBuilder("conversation.ended_walked_away")
             .withDefault("<prefix_warning>Conversation ended because you walked away.")
             .build();
@@ -104,6 +108,81 @@ public class Messages {
             .withPlaceholder("plugin-ver")
             .withPlaceholder("java-ver")
             .build();
+    public static final Message STATS_HEADER = new MessageBuilder("archgpt.stats.header")
+            .withDefault("<prefix>ArchGPT runtime statistics:")
+            .build();
+    public static final Message STATS_REQUESTS = new MessageBuilder("archgpt.stats.requests")
+            .withDefault("<prefix_warning>MCP requests: <gray>{running}/{limit} running, {conversations} conversations and {greetings} greetings queued</gray>\n<prefix_warning>Queue: <gray>{submitted} submitted, {dropped} dropped, average wait {avg_wait}ms, longest wait {max_wait}ms</gray>")
+            .withPlaceholder("running")
+            .withPlaceholder("limit")
+            .withPlaceholder("conversations")
+            .withPlaceholder("greetings")
+            .withPlaceholder("submitted")
+            .withPlaceholder("dropped")
+            .withPlaceholder("avg_wait")
+            .withPlaceholder("max_wait")
+            .build();
+    public static final Message STATS_CIRCUIT_BREAKER = new MessageBuilder("archgpt.stats.circuit-breaker")
+            .withDefault("<prefix_warning>MCP circuit breaker: <gray>{state}, {failure_rate}% of recent requests failed</gray>")
+            .withPlaceholder("state")
+            .withPlaceholder("failure_rate")
+            .build();
+    public static final Message STATS_HTTP = new MessageBuilder("archgpt.stats.http")
+            .withDefault("<prefix_warning>HTTP {endpoint}: <gray>{requests} requests, {failures} failed, {in_flight} in flight, {avg}ms avg, {max}ms max</gray>")
+            .withPlaceholder("endpoint")
+            .withPlaceholder("requests")
+            .withPlaceholder("failures")
+            .withPlaceholder("in_flight")
+            .withPlaceholder("avg")
+            .withPlaceholder("max")
+            .build();
+    public static final Message STATS_GREETING_CACHE = new MessageBuilder("archgpt.stats.greeting-cache")
+            .withDefault("<prefix_warning>Greeting cache: <gray>{entries} situations cached, {hits} greetings reused ({hit_rate}% hit rate)</gray>")
+            .withPlaceholder("entries")
+            .withPlaceholder("hits")
+            .withPlaceholder("hit_rate")
+            .build();
+    public static final Message STATS_TRANSLATION_CACHE = new MessageBuilder("archgpt.stats.translation-cache")
+            .withDefault("<prefix_warning>Translation cache: <gray>{entries} translations cached, {hit_rate}% hit rate, {coalesced} requests shared</gray>")
+            .withPlaceholder("entries")
+            .withPlaceholder("hit_rate")
+            .withPlaceholder("coalesced")
+            .build();
+    public static final Message STATS_TRANSLATION = new MessageBuilder("archgpt.stats.translation")
+            .withDefault("<prefix_warning>Translation ({mode}): <gray>{texts} texts in {requests} calls, {hop_avg}ms avg hop. Non-English replies: translated {translated_turns} ({translated_avg}ms avg), by provider {provider_turns} ({provider_avg}ms avg, {fallbacks} fallbacks)</gray>")
+            .withPlaceholder("mode")
+            .withPlaceholder("texts")
+            .withPlaceholder("requests")
+            .withPlaceholder("hop_avg")
+            .withPlaceholder("translated_turns")
+            .withPlaceholder("translated_avg")
+            .withPlaceholder("provider_turns")
+            .withPlaceholder("provider_avg")
+            .withPlaceholder("fallbacks")
+            .build();
+    public static final Message STATS_STORAGE = new MessageBuilder("archgpt.stats.storage")
+            .withDefault("<prefix_warning>{name}: <gray>{active}/{total} connections busy, {waiting} waiting, {queries} queries, {updates} updates</gray>")
+            .withPlaceholder("name")
+            .withPlaceholder("active")
+            .withPlaceholder("total")
+            .withPlaceholder("waiting")
+            .withPlaceholder("queries")
+            .withPlaceholder("updates")
+            .build();
+    public static final Message STATS_CONVERSATION_CACHE = new MessageBuilder("archgpt.stats.conversation-cache")
+            .withDefault("<prefix_warning>Conversation cache: <gray>{entries} conversations, {hit_rate}% hit rate</gray>")
+            .withPlaceholder("entries")
+            .withPlaceholder("hit_rate")
+            .build();
+    public static final Message STATS_WRITE_QUEUE = new MessageBuilder("archgpt.stats.write-queue")
+            .withDefault("<prefix_warning>Conversation writes: <gray>{queued}/{capacity} queued, {written} saved in {batches} batches, {dropped} dropped, {failed} failed</gray>")
+            .withPlaceholder("queued")
+            .withPlaceholder("capacity")
+            .withPlaceholder("written")
+            .withPlaceholder("batches")
+            .withPlaceholder("dropped")
+            .withPlaceholder("failed")
+            .build();
     public static final Message CLEAR_STORAGE_SUCCESS = new MessageBuilder("archgpt.clearconversations.success")
             .withDefault("<prefix>All conversation history successfully deleted.")
             .build();
@@ -0,0 +1,143 @@
+package me.xidentified.archgpt.utils;
+
+import me.xidentified.archgpt.ArchGPT;
+import net.citizensnpcs.api.CitizensAPI;
+import net.citizensnpcs.api.npc.NPC;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+import java.util.*;
+
+/**
+ * Chunk-bucketed index of spawned NPCs that have an ArchGPT prompt, so proximity checks only look at the chunks
+ * around a player. Changes are applied on the main thread; lookups read an immutable per-world snapshot of sorted
+ * chunk keys and never allocate when no NPC is around.
+ */
+public class NPCSpatialIndex {
+    private static final long REFRESH_INTERVAL_TICKS = 40L; // Catches NPCs that walked into another chunk
+
+    private record TrackedNPC(NPC npc, UUID worldId, long chunkKey) {}
+
+    private record WorldIndex(long[] chunkKeys, NPC[][] buckets) {}
+
+    private final ArchGPT plugin;
+    private final Map<Integer, TrackedNPC> trackedNPCs = new HashMap<>(); // Only touched on the main thread
+    private final Set<UUID> dirtyWorlds = new HashSet<>();
+    private volatile Map<UUID, WorldIndex> worldIndexes = Map.of();
+
+    public NPCSpatialIndex(ArchGPT plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this::refresh, 1L, REFRESH_INTERVAL_TICKS);
+    }
+
+    // Re-reads every NPC, used periodically and after the config changed
+    public void refresh() {
+        Set<Integer> seen = new HashSet<>();
+        for (NPC npc : CitizensAPI.getNPCRegistry()) {
+            seen.add(npc.getId());
+            track(npc);
+        }
+        Iterator<Map.Entry<Integer, TrackedNPC>> iterator = trackedNPCs.entrySet().iterator();
+        while (iterator.hasNext()) {
+            TrackedNPC tracked = iterator.next().getValue();
+            if (!seen.contains(tracked.npc().getId())) {
+                dirtyWorlds.add(tracked.worldId());
+                iterator.remove();
+            }
+        }
+        rebuildDirtyWorlds();
+    }
+
+    public void update(NPC npc) {
+        track(npc);
+        rebuildDirtyWorlds();
+    }
+
+    public void remove(NPC npc) {
+        TrackedNPC tracked = trackedNPCs.remove(npc.getId());
+        if (tracked != null) {
+            dirtyWorlds.add(tracked.worldId());
+            rebuildDirtyWorlds();
+        }
+    }
+
+    /**
+     * NPCs whose last known chunk is the given one, or null. The returned array must not be modified.
+     */
+    public NPC[] getNPCsInChunk(World world, int chunkX, int chunkZ) {
+        WorldIndex index = worldIndexes.get(world.getUID());
+        if (index == null) return null;
+        int slot = Arrays.binarySearch(index.chunkKeys(), chunkKey(chunkX, chunkZ));
+        return slot >= 0 ? index.buckets()[slot] : null;
+    }
+
+    public int size() {
+        return trackedNPCs.size();
+    }
+
+    private void track(NPC npc) {
+        TrackedNPC previous = trackedNPCs.get(npc.getId());
+        Entity entity = npc.isSpawned() ? npc.getEntity() : null;
+        String prompt = plugin.getConfig().getString("npcs." + npc.getName());
+
+        if (entity == null || prompt == null || prompt.isEmpty()) {
+            if (previous != null) {
+                trackedNPCs.remove(npc.getId());
+                dirtyWorlds.add(previous.worldId());
+            }
+            return;
+        }
+
+        Location location = entity.getLocation();
+        UUID worldId = location.getWorld().getUID();
+        long chunkKey = chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        if (previous != null && previous.worldId().equals(worldId) && previous.chunkKey() == chunkKey && previous.npc() == npc) {
+            return;
+        }
+
+        trackedNPCs.put(npc.getId(), new TrackedNPC(npc, worldId, chunkKey));
+        dirtyWorlds.add(worldId);
+        if (previous != null) {
+            dirtyWorlds.add(previous.worldId());
+        }
+    }
+
+    private void rebuildDirtyWorlds() {
+        if (dirtyWorlds.isEmpty()) return;
+
+        Map<UUID, WorldIndex> rebuilt = new HashMap<>(worldIndexes);
+        for (UUID worldId : dirtyWorlds) {
+            TreeMap<Long, List<NPC>> buckets = new TreeMap<>();
+            for (TrackedNPC tracked : trackedNPCs.values()) {
+                if (tracked.worldId().equals(worldId)) {
+                    buckets.computeIfAbsent(tracked.chunkKey(), key -> new ArrayList<>()).add(tracked.npc());
+                }
+            }
+
+            if (buckets.isEmpty()) {
+                rebuilt.remove(worldId);
+                continue;
+            }
+
+            long[] chunkKeys = new long[buckets.size()];
+            NPC[][] npcs = new NPC[buckets.size()][];
+            int slot = 0;
+            for (Map.Entry<Long, List<NPC>> bucket : buckets.entrySet()) {
+                chunkKeys[slot] = bucket.getKey();
+                npcs[slot] = bucket.getValue().toArray(new NPC[0]);
+                slot++;
+            }
+            rebuilt.put(worldId, new WorldIndex(chunkKeys, npcs));
+        }
+        dirtyWorlds.clear();
+        worldIndexes = Map.copyOf(rebuilt);
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
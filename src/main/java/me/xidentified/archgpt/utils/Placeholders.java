@@ -51,13 +51,18 @@ public class Placeholders extends PlaceholderExpansion {
         };
     }
 
+    // Called on every scoreboard refresh, so it only reads the in-memory conversation cache
     private String getMostRecentMessage(OfflinePlayer player) {
+        if (!isInConversation(player)) {
+            return "No recent messages";
+        }
         UUID playerUUID = player.getUniqueId();
         String npcName = getCurrentNPCName(player);
         Duration memoryDuration = Duration.ofHours(1);
 
-        List<Conversation> conversations = plugin.getConversationDAO().getConversations(playerUUID, npcName, memoryDuration);
-        if (conversations.isEmpty()) {
+        List<Conversation> conversations = plugin.getStorageManager().getConversationDAO()
+                .getCachedConversations(playerUUID, npcName, memoryDuration);
+        if (conversations == null || conversations.isEmpty()) {
             return "No recent messages";
         }
 
@@ -72,7 +77,7 @@ public class Placeholders extends PlaceholderExpansion {
 
     private String getCurrentNPCName(OfflinePlayer player) {
         if (isInConversation(player)) {
-            NPC npc = plugin.getConversationManager().playerNPCMap.get(player.getUniqueId());
+            NPC npc = plugin.getConversationManager().getConversationNPC(player.getUniqueId());
             if (npc != null) return npc.getName();
         }
         return "None";
@@ -0,0 +1,217 @@
+package me.xidentified.archgpt.utils;
+
+import me.xidentified.archgpt.ChatRequestHandler.RequestType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for outbound LLM requests. Caps how many requests run at once across all players,
+ * rate limits them with a token bucket, and serves conversation turns before greetings.
+ * Greetings are the first to be dropped when the queue backs up.
+ */
+public class RequestScheduler {
+    private final Executor executor;
+    private final int maxConcurrent;
+    private final double permitsPerSecond;
+    private final double burst;
+    private final int maxQueueSize;
+    private final int maxQueuedForGreeting; // Greetings are refused once this many requests wait
+    private final long greetingMaxWaitMillis;
+
+    private final PriorityQueue<QueuedRequest<?>> queue = new PriorityQueue<>(
+            Comparator.<QueuedRequest<?>>comparingInt(request -> priorityOf(request.type))
+                    .thenComparingLong(request -> request.sequence));
+    private long nextSequence;
+    private int running;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    private boolean wakeupScheduled;
+
+    // Statistics
+    private long submittedCount;
+    private long droppedCount;
+    private long startedCount;
+    private long totalWaitMillis;
+    private long maxWaitMillis;
+
+    public RequestScheduler(Executor executor, int maxConcurrent, double permitsPerSecond, double burst,
+                            int maxQueueSize, long greetingMaxWaitMillis) {
+        this.executor = executor;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.maxQueueSize = Math.max(1, maxQueueSize);
+        this.maxQueuedForGreeting = Math.max(1, this.maxQueueSize / 2);
+        this.greetingMaxWaitMillis = greetingMaxWaitMillis;
+        this.tokens = this.burst;
+    }
+
+    /**
+     * Queues a request and starts it once a concurrency slot and a rate limit token are free.
+     * The returned future fails with a {@link RejectedExecutionException} if the request is dropped.
+     */
+    public <T> CompletableFuture<T> submit(RequestType type, Supplier<CompletableFuture<T>> task) {
+        QueuedRequest<T> request = new QueuedRequest<>(type, task);
+        QueuedRequest<?> evicted = null;
+
+        synchronized (this) {
+            submittedCount++;
+            if (type == RequestType.GREETING && queue.size() >= maxQueuedForGreeting) {
+                // Under load greetings are refused outright, they're nice to have
+                droppedCount++;
+                request.result.completeExceptionally(new RejectedExecutionException("Request queue is busy, greeting dropped"));
+                return request.result;
+            }
+            if (queue.size() >= maxQueueSize) {
+                evicted = evictNewestGreeting();
+                if (evicted == null) {
+                    droppedCount++;
+                    request.result.completeExceptionally(new RejectedExecutionException("Request queue is full"));
+                    return request.result;
+                }
+                droppedCount++;
+            }
+            request.sequence = nextSequence++;
+            queue.add(request);
+        }
+
+        if (evicted != null) {
+            evicted.result.completeExceptionally(new RejectedExecutionException("Greeting dropped to make room for a conversation"));
+        }
+        dispatch();
+        return request.result;
+    }
+
+    public synchronized SchedulerStats getStats() {
+        int queuedConversations = 0;
+        for (QueuedRequest<?> request : queue) {
+            if (request.type == RequestType.CONVERSATION) queuedConversations++;
+        }
+        return new SchedulerStats(running, maxConcurrent, queuedConversations, queue.size() - queuedConversations,
+                submittedCount, droppedCount, startedCount == 0 ? 0 : totalWaitMillis / startedCount, maxWaitMillis);
+    }
+
+    private void dispatch() {
+        List<QueuedRequest<?>> ready = new ArrayList<>();
+        List<QueuedRequest<?>> expired = new ArrayList<>();
+
+        synchronized (this) {
+            refillTokens();
+            while (running < maxConcurrent && !queue.isEmpty()) {
+                QueuedRequest<?> next = queue.peek();
+                if (next.type == RequestType.GREETING && waitedMillis(next) > greetingMaxWaitMillis) {
+                    // The player has likely walked on by now
+                    queue.poll();
+                    droppedCount++;
+                    expired.add(next);
+                    continue;
+                }
+                if (permitsPerSecond > 0 && tokens < 1) {
+                    scheduleWakeup();
+                    break;
+                }
+                if (permitsPerSecond > 0) tokens--;
+                queue.poll();
+                running++;
+                startedCount++;
+                long waited = waitedMillis(next);
+                totalWaitMillis += waited;
+                maxWaitMillis = Math.max(maxWaitMillis, waited);
+                ready.add(next);
+            }
+        }
+
+        for (QueuedRequest<?> request : expired) {
+            request.result.completeExceptionally(new RejectedExecutionException("Greeting waited too long in the request queue"));
+        }
+        for (QueuedRequest<?> request : ready) {
+            start(request);
+        }
+    }
+
+    private <T> void start(QueuedRequest<T> request) {
+        CompletableFuture<T> future;
+        try {
+            future = request.task.get();
+        } catch (Throwable throwable) {
+            future = CompletableFuture.failedFuture(throwable);
+        }
+
+        future.whenComplete((value, ex) -> {
+            synchronized (this) {
+                running--;
+            }
+            dispatch();
+            if (ex != null) {
+                request.result.completeExceptionally(ex);
+            } else {
+                request.result.complete(value);
+            }
+        });
+    }
+
+    private void refillTokens() {
+        if (permitsPerSecond <= 0) return;
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1_000_000_000.0 * permitsPerSecond);
+        lastRefillNanos = now;
+    }
+
+    private void scheduleWakeup() {
+        if (wakeupScheduled) return;
+        wakeupScheduled = true;
+        long delayMillis = Math.max(1, (long) Math.ceil((1 - tokens) / permitsPerSecond * 1000));
+        CompletableFuture.runAsync(() -> {
+            synchronized (this) {
+                wakeupScheduled = false;
+            }
+            dispatch();
+        }, CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS, executor));
+    }
+
+    private QueuedRequest<?> evictNewestGreeting() {
+        QueuedRequest<?> newest = null;
+        for (QueuedRequest<?> request : queue) {
+            if (request.type == RequestType.GREETING && (newest == null || request.sequence > newest.sequence)) {
+                newest = request;
+            }
+        }
+        if (newest != null) {
+            queue.remove(newest);
+        }
+        return newest;
+    }
+
+    private static long waitedMillis(QueuedRequest<?> request) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - request.enqueuedAt);
+    }
+
+    private static int priorityOf(RequestType type) {
+        return type == RequestType.CONVERSATION ? 0 : 1;
+    }
+
+    private static class QueuedRequest<T> {
+        private final RequestType type;
+        private final Supplier<CompletableFuture<T>> task;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final long enqueuedAt = System.nanoTime();
+        private long sequence;
+
+        private QueuedRequest(RequestType type, Supplier<CompletableFuture<T>> task) {
+            this.type = type;
+            this.task = task;
+        }
+    }
+
+    public record SchedulerStats(int running, int maxConcurrent, int queuedConversations, int queuedGreetings,
+                                 long submitted, long dropped, long averageWaitMillis, long maxWaitMillis) {
+    }
+}
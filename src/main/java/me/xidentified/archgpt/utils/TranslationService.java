@@ -1,61 +1,424 @@
 package me.xidentified.archgpt.utils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import me.xidentified.archgpt.ArchGPTConfig;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 public class TranslationService {
-    private final HttpClient httpClient = HttpClient.newHttpClient();
+    // Function words that make up a large share of any English sentence and rarely appear in other languages
+    private static final Set<String> ENGLISH_MARKERS = Set.of(
+            "the", "and", "is", "are", "you", "your", "to", "of", "in", "that", "it", "for", "with", "this",
+            "what", "was", "have", "my", "me", "be", "not", "but", "would", "will", "can", "there");
+    private static final double ENGLISH_MARKER_SHARE = 0.2;
+    private static final int MIN_WORDS_TO_JUDGE = 4;
+
+    private final HttpTransport httpTransport;
     private final String libreTranslateAPIEndpoint;
     private final Logger logger;
 
-    public TranslationService(String libreTranslateAPIEndpoint, Logger logger) {
+    // Translations of the same text into the same language, shared by every player with that locale
+    private record CacheKey(String textHash, String targetLang) {}
+
+    private static final class CachedTranslation {
+        private final String text;
+        private final long createdAt;
+        private final AtomicInteger hits;
+
+        private CachedTranslation(String text, long createdAt, int hits) {
+            this.text = text;
+            this.createdAt = createdAt;
+            this.hits = new AtomicInteger(hits);
+        }
+    }
+
+    private final boolean cacheEnabled;
+    private final long cacheTtlMillis;
+    private final Cache<CacheKey, CachedTranslation> cache;
+    private final Map<CacheKey, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final File cacheFile; // Null unless hot entries are kept across restarts
+    private final int persistMaxEntries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    // Texts waiting for the next batched call, per target language. Guarded by the map itself
+    private record PendingText(String text, CompletableFuture<String> result) {}
+
+    private final long batchWindowMillis; // 0 sends every text on its own
+    private final int batchMaxSize;
+    private final Map<String, List<PendingText>> pendingBatches = new HashMap<>();
+    private final ScheduledExecutorService batchScheduler;
+
+    // Compares the translation hop with replies the MCP server wrote in the player's language directly
+    public record TranslationStats(long translatedTexts, long translationRequests, long averageHopMillis,
+                                   long translatedTurns, long averageTranslatedTurnMillis,
+                                   long providerTurns, long averageProviderTurnMillis, long providerFallbacks) {}
+
+    private final AtomicLong translatedTexts = new AtomicLong();
+    private final AtomicLong translationRequests = new AtomicLong();
+    private final AtomicLong hopMillis = new AtomicLong();
+    private final AtomicLong translatedTurns = new AtomicLong();
+    private final AtomicLong translatedTurnMillis = new AtomicLong();
+    private final AtomicLong providerTurns = new AtomicLong();
+    private final AtomicLong providerTurnMillis = new AtomicLong();
+    private final AtomicLong providerFallbacks = new AtomicLong();
+
+    public TranslationService(String libreTranslateAPIEndpoint, Logger logger, ArchGPTConfig config,
+                              HttpTransport httpTransport, File cacheFile) {
         this.libreTranslateAPIEndpoint = libreTranslateAPIEndpoint;
+        this.httpTransport = httpTransport;
         this.logger = logger;
+        this.cacheEnabled = config.isTranslationCacheEnabled();
+        this.cacheTtlMillis = config.getTranslationCacheTtlMillis();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(config.getTranslationCacheMaxEntries())
+                .expireAfterWrite(cacheTtlMillis, TimeUnit.MILLISECONDS)
+                .build();
+        this.cacheFile = config.isTranslationCachePersist() ? cacheFile : null;
+        this.persistMaxEntries = config.getTranslationCachePersistMaxEntries();
+        this.batchWindowMillis = config.getTranslationBatchWindowMillis();
+        this.batchMaxSize = config.getTranslationBatchMaxSize();
+        this.batchScheduler = batchWindowMillis > 0
+                ? Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("ArchGPT-Translation-Batcher").setDaemon(true).build())
+                : null;
+        loadCache();
     }
 
+    /**
+     * Translates from the cache when possible. Identical requests that arrive while one is already on its way share
+     * its result instead of sending their own.
+     */
     public CompletableFuture<String> translateText(String text, String targetLang) {
-        return CompletableFuture.supplyAsync(() -> {
-            String fullEndpoint = libreTranslateAPIEndpoint + "/translate";
+        if (!cacheEnabled) {
+            return requestTranslation(text, targetLang);
+        }
 
-            JsonObject requestBody = new JsonObject();
-            requestBody.addProperty("q", text);
-            requestBody.addProperty("source", "en");
-            requestBody.addProperty("target", targetLang);
+        CacheKey key = new CacheKey(hash(text), targetLang);
+        CachedTranslation cached = cache.getIfPresent(key);
+        if (cached != null && System.currentTimeMillis() - cached.createdAt < cacheTtlMillis) {
+            hits.incrementAndGet();
+            cached.hits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached.text);
+        }
 
-            String jsonRequestBody = requestBody.toString();
-            logger.info("Sending translation request: " + jsonRequestBody + " to " + fullEndpoint);
+        CompletableFuture<String> translation = new CompletableFuture<>();
+        CompletableFuture<String> pending = inFlight.putIfAbsent(key, translation);
+        if (pending != null) {
+            coalesced.incrementAndGet();
+            return pending;
+        }
 
-            HttpRequest request = HttpRequest.newBuilder()
+        misses.incrementAndGet();
+        requestTranslation(text, targetLang).whenComplete((translatedText, error) -> {
+            // Cached before the in-flight entry goes away, so no request slips through in between
+            if (translatedText != null) {
+                cache.put(key, new CachedTranslation(translatedText, System.currentTimeMillis(), 0));
+            }
+            inFlight.remove(key, translation);
+            if (error != null) {
+                translation.completeExceptionally(error);
+            } else {
+                translation.complete(translatedText);
+            }
+        });
+        return translation;
+    }
+
+    private CompletableFuture<String> requestTranslation(String text, String targetLang) {
+        long start = System.currentTimeMillis();
+        CompletableFuture<String> translation = batchScheduler != null
+                ? enqueue(text, targetLang)
+                : sendTranslations(List.of(text), targetLang).thenApply(translated -> translated.get(0));
+        return translation.whenComplete((translatedText, error) -> {
+            if (translatedText != null) {
+                translatedTexts.incrementAndGet();
+                hopMillis.addAndGet(System.currentTimeMillis() - start);
+            }
+        });
+    }
+
+    /**
+     * Collects texts for the same language during the batch window and sends them in one call. A batch goes out
+     * early once it reaches the maximum size.
+     */
+    private CompletableFuture<String> enqueue(String text, String targetLang) {
+        PendingText pendingText = new PendingText(text, new CompletableFuture<>());
+        boolean first;
+        boolean full;
+        synchronized (pendingBatches) {
+            List<PendingText> batch = pendingBatches.computeIfAbsent(targetLang, lang -> new ArrayList<>());
+            batch.add(pendingText);
+            first = batch.size() == 1;
+            full = batch.size() >= batchMaxSize;
+        }
+
+        try {
+            if (full) {
+                batchScheduler.execute(() -> flushBatch(targetLang));
+            } else if (first) {
+                // A flush left over from a batch that went out early only sends the next one a little sooner
+                batchScheduler.schedule(() -> flushBatch(targetLang), batchWindowMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            // Shutting down, send it from here instead
+            flushBatch(targetLang);
+        }
+        return pendingText.result();
+    }
+
+    private void flushBatch(String targetLang) {
+        List<PendingText> batch;
+        synchronized (pendingBatches) {
+            batch = pendingBatches.remove(targetLang);
+        }
+        if (batch == null || batch.isEmpty()) return;
+
+        sendTranslations(batch.stream().map(PendingText::text).toList(), targetLang).whenComplete((translated, error) -> {
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(translated != null ? translated.get(i) : null);
+            }
+        });
+    }
+
+    // One call for all texts. Entries are null for texts that could not be translated
+    private CompletableFuture<List<String>> sendTranslations(List<String> texts, String targetLang) {
+        String fullEndpoint = libreTranslateAPIEndpoint + "/translate";
+
+        JsonObject requestBody = new JsonObject();
+        if (texts.size() == 1) {
+            requestBody.addProperty("q", texts.get(0));
+        } else {
+            // LibreTranslate answers an array of texts with an array of translations in the same order
+            JsonArray q = new JsonArray();
+            texts.forEach(q::add);
+            requestBody.add("q", q);
+        }
+        requestBody.addProperty("source", "en");
+        requestBody.addProperty("target", targetLang);
+
+        HttpRequest request;
+        try {
+            request = httpTransport.newRequest()
                     .uri(URI.create(fullEndpoint))
                     .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonRequestBody, StandardCharsets.UTF_8))
+                    .POST(HttpRequest.BodyPublishers.ofString(requestBody.toString(), StandardCharsets.UTF_8))
                     .build();
+        } catch (IllegalArgumentException e) {
+            logger.severe("Translation Service Error: invalid endpoint " + fullEndpoint);
+            return CompletableFuture.completedFuture(untranslated(texts.size()));
+        }
+
+        long start = System.currentTimeMillis();
+        translationRequests.incrementAndGet();
+        return httpTransport.sendAsync("translation", request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        logger.severe("Translation Service Error: " + error.getMessage());
+                        return untranslated(texts.size());
+                    }
+
+                    List<String> translated = new ArrayList<>(texts.size());
+                    try {
+                        logger.info("Translated " + texts.size() + " texts (" + texts.stream().mapToInt(String::length).sum()
+                                + " characters) to " + targetLang + " in " + (System.currentTimeMillis() - start) + "ms");
+                        JsonObject responseObject = JsonParser.parseString(response.body()).getAsJsonObject();
+
+                        if (!responseObject.has("translatedText")) {
+                            logger.warning("Translation API Response missing 'translatedText': " + response.body());
+                        } else if (responseObject.get("translatedText").isJsonArray()) {
+                            JsonArray translations = responseObject.getAsJsonArray("translatedText");
+                            for (int i = 0; i < texts.size(); i++) {
+                                translated.add(i < translations.size() ? translations.get(i).getAsString() : null);
+                            }
+                        } else if (texts.size() == 1) {
+                            translated.add(responseObject.get("translatedText").getAsString());
+                        } else {
+                            logger.warning("Translation API did not answer a batch of " + texts.size() + " texts with an array");
+                        }
+                    } catch (RuntimeException e) {
+                        logger.severe("Translation Service Error: " + e.getMessage());
+                    }
+
+                    while (translated.size() < texts.size()) {
+                        translated.add(null);
+                    }
+                    return translated;
+                });
+    }
 
-            try {
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                logger.info("Translation API Response: " + response.body());
-                JsonObject responseObject = JsonParser.parseString(response.body()).getAsJsonObject();
-
-                if (responseObject.has("translatedText")) {
-                    return responseObject.get("translatedText").getAsString();
-                } else {
-                    logger.warning("Translation API Response missing 'translatedText': " + response.body());
-                    return null;
-                }
-            } catch (Exception e) {
-                logger.severe("Translation Service Error: " + e.getMessage());
-                return null;
+    private static List<String> untranslated(int count) {
+        List<String> translated = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            translated.add(null);
+        }
+        return translated;
+    }
+
+    /**
+     * Rough check whether a reply came back in English anyway, based on how many of its words are common English
+     * function words. Short replies are given the benefit of the doubt.
+     */
+    public static boolean looksEnglish(String text) {
+        String[] words = words(text);
+        int counted = 0;
+        int markers = 0;
+        for (String word : words) {
+            if (word.isEmpty()) continue;
+            counted++;
+            if (ENGLISH_MARKERS.contains(word)) {
+                markers++;
             }
-        });
+        }
+        return counted >= MIN_WORDS_TO_JUDGE && markers >= counted * ENGLISH_MARKER_SHARE;
+    }
+
+    // Whether looksEnglish has enough words to go on, shorter texts are never taken for English
+    public static boolean canJudgeLanguage(String text) {
+        int counted = 0;
+        for (String word : words(text)) {
+            if (!word.isEmpty() && ++counted >= MIN_WORDS_TO_JUDGE) return true;
+        }
+        return false;
+    }
+
+    private static String[] words(String text) {
+        return text.toLowerCase(Locale.ROOT).split("[^\\p{L}']+");
+    }
+
+    // Time from the player's message to the finished reply, for players who don't play in English
+    public void recordTurn(boolean providerTranslated, long millis) {
+        if (providerTranslated) {
+            providerTurns.incrementAndGet();
+            providerTurnMillis.addAndGet(millis);
+        } else {
+            translatedTurns.incrementAndGet();
+            translatedTurnMillis.addAndGet(millis);
+        }
     }
 
-}
\ No newline at end of file
+    // A reply that was meant to come back in the player's language but had to be translated after all
+    public void recordProviderFallback() {
+        providerFallbacks.incrementAndGet();
+    }
+
+    public TranslationStats getStats() {
+        return new TranslationStats(translatedTexts.get(), translationRequests.get(),
+                average(hopMillis.get(), translatedTexts.get()),
+                translatedTurns.get(), average(translatedTurnMillis.get(), translatedTurns.get()),
+                providerTurns.get(), average(providerTurnMillis.get(), providerTurns.get()),
+                providerFallbacks.get());
+    }
+
+    private static long average(long total, long count) {
+        return count == 0 ? 0 : total / count;
+    }
+
+    // Sends whatever is still waiting for its batch window, called on disable
+    public void close() {
+        if (batchScheduler == null) return;
+        batchScheduler.shutdown();
+        List<String> languages;
+        synchronized (pendingBatches) {
+            languages = new ArrayList<>(pendingBatches.keySet());
+        }
+        languages.forEach(this::flushBatch);
+    }
+
+    public long getCacheSize() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    // Keeps the most reused translations for the next start, called on disable
+    public void saveCache() {
+        if (cacheFile == null) return;
+
+        long now = System.currentTimeMillis();
+        JsonArray entries = new JsonArray();
+        cache.asMap().entrySet().stream()
+                .filter(entry -> entry.getValue().hits.get() > 0 && now - entry.getValue().createdAt < cacheTtlMillis)
+                .sorted(Comparator.comparingInt((Map.Entry<CacheKey, CachedTranslation> entry) -> entry.getValue().hits.get()).reversed())
+                .limit(persistMaxEntries)
+                .forEach(entry -> {
+                    JsonObject json = new JsonObject();
+                    json.addProperty("hash", entry.getKey().textHash());
+                    json.addProperty("target", entry.getKey().targetLang());
+                    json.addProperty("text", entry.getValue().text);
+                    json.addProperty("created", entry.getValue().createdAt);
+                    json.addProperty("hits", entry.getValue().hits.get());
+                    entries.add(json);
+                });
+
+        try (Writer writer = Files.newBufferedWriter(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(entries.toString());
+        } catch (IOException e) {
+            logger.warning("Could not save the translation cache: " + e.getMessage());
+        }
+    }
+
+    private void loadCache() {
+        if (cacheFile == null || !cacheFile.exists()) return;
+
+        long now = System.currentTimeMillis();
+        try (Reader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+            for (JsonElement element : JsonParser.parseReader(reader).getAsJsonArray()) {
+                JsonObject json = element.getAsJsonObject();
+                long createdAt = json.get("created").getAsLong();
+                if (now - createdAt >= cacheTtlMillis) continue;
+
+                // Loaded entries only get what's left of their lifetime
+                CacheKey key = new CacheKey(json.get("hash").getAsString(), json.get("target").getAsString());
+                cache.put(key, new CachedTranslation(json.get("text").getAsString(), createdAt, json.get("hits").getAsInt()));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Could not load the translation cache: " + e.getMessage());
+        }
+    }
+
+    private static String hash(String text) {
+        return Hashing.sha256().hashString(text, StandardCharsets.UTF_8).toString();
+    }
+}